@@ -2,27 +2,24 @@ package linegenerator.commandline;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.Arrays;
 
+import linegenerator.core.CompositionSearch;
+import linegenerator.core.ICompositionSearchListener;
 import linegenerator.core.IMethodLibraryReaderListener;
 import linegenerator.core.Method;
-import linegenerator.core.TextMethodLibraryReader;
+import linegenerator.core.MethodLibrary;
+import linegenerator.core.MethodLibraryReader;
 import linegenerator.core.MethodType;
 import linegenerator.core.SimpleComposition;
 import linegenerator.core.Stage;
 import linegenerator.core.exceptions.CompositionDefinitionException;
-import linegenerator.core.exceptions.DoesNotEndInRoundsException;
-import linegenerator.core.exceptions.FalseGridException;
 import linegenerator.core.exceptions.MethodDefinitionException;
 
-public class CompositionGenerator implements IMethodLibraryReaderListener {
+public class CompositionGenerator implements IMethodLibraryReaderListener, ICompositionSearchListener {
     
     private static final int MAX_CHANGES = 5300;
 	private static final String PLAIN_CALL = "p";
@@ -31,12 +28,26 @@ public class CompositionGenerator implements IMethodLibraryReaderListener {
 	private static final String ARGUMENT_METHODS = "methods";
     private static final String ARGUMENT_OUTPUT_FILE = "outputfile";
     private static final String ARGUMENT_PEAL_PROVER_OUTPUT = "forpealprover";
+    private static final String ARGUMENT_THREADS = "threads";
+    private static final String ARGUMENT_COMPRESS = "compress";
+    private static final String ARGUMENT_RESUME = "resume";
+    private static final String CHECKPOINT_EXTENSION = ".checkpoint";
+    private static final long CHECKPOINT_INTERVAL = 60000;
     
     private BufferedReader m_Reader = new BufferedReader(new InputStreamReader(System.in));
     
-    private Method[] m_MethodLibrary;
+    private MethodLibrary m_MethodLibrary;
     private File m_OutputFile;
 	private boolean m_ForPealProver;
+	private boolean m_Compress;
+	private int m_Threads;
+	private boolean m_Resume;
+	private File m_CheckpointFile;
+	private SearchCheckpoint m_Checkpoint;
+	private CompositionResultWriter m_Writer;
+	private CompositionSearch m_Search;
+	private int m_NumFound;
+	private IOException m_WriteError;
 
     /**
      * @param args
@@ -46,6 +57,9 @@ public class CompositionGenerator implements IMethodLibraryReaderListener {
         String methodDefinitionFile = null;
         String outputFile = null;
         boolean forPealProver = false;
+        int threads = 1;
+        boolean compress = false;
+        boolean resume = false;
         
         String argument;
         for (int i = 0; i < pr_Arguments.length; i++) {
@@ -64,6 +78,22 @@ public class CompositionGenerator implements IMethodLibraryReaderListener {
 	                if (i + 1 < pr_Arguments.length) {
 	                	forPealProver = pr_Arguments[++i].toLowerCase().matches("true|yes");
 	                }
+	            } else if (argument.equals(ARGUMENT_COMPRESS)) {
+	                if (i + 1 < pr_Arguments.length) {
+	                	compress = pr_Arguments[++i].toLowerCase().matches("true|yes");
+	                }
+	            } else if (argument.equals(ARGUMENT_RESUME)) {
+	                if (i + 1 < pr_Arguments.length) {
+	                	resume = pr_Arguments[++i].toLowerCase().matches("true|yes");
+	                }
+	            } else if (argument.equals(ARGUMENT_THREADS)) {
+	                if (i + 1 < pr_Arguments.length) {
+	                    try {
+	                        threads = Integer.parseInt(pr_Arguments[++i]);
+	                    } catch (NumberFormatException e) {
+	                        System.err.println("Invalid number of threads: " + pr_Arguments[i]);
+	                    }
+	                }
 	            }
             }
         }
@@ -73,7 +103,7 @@ public class CompositionGenerator implements IMethodLibraryReaderListener {
         	outputUsage();
         } else {
 	        try {
-				new CompositionGenerator(outputFile, methodDefinitionFile, forPealProver).run();
+				new CompositionGenerator(outputFile, methodDefinitionFile, forPealProver, compress, threads, resume).run();
 			} catch (MethodDefinitionException | IOException e) {
 				System.err.println(e.getMessage());
 				outputUsage();
@@ -91,15 +121,25 @@ public class CompositionGenerator implements IMethodLibraryReaderListener {
         System.out.println("\tPath to the method definition file.");
         System.out.println(BOB_CALL + ARGUMENT_OUTPUT_FILE);
         System.out.println("\tThe file to write true compositions to.");
+        System.out.println(BOB_CALL + ARGUMENT_COMPRESS + " <true|false>");
+        System.out.println("\tWhether to gzip the composition file.");
+        System.out.println(BOB_CALL + ARGUMENT_THREADS + " <number>");
+        System.out.println("\tThe number of threads to search on (default 1). The compositions are written in the same order whatever the number.");
+        System.out.println(BOB_CALL + ARGUMENT_RESUME + " <true|false>");
+        System.out.println("\tWhether to carry on the search from the last checkpoint saved alongside the output file.");
         
     }
     
-    public CompositionGenerator(final String pr_OutputFile, final String pr_MethodLibraryPath, final boolean pr_ForPealProver) throws MethodDefinitionException, IOException {
+    public CompositionGenerator(final String pr_OutputFile, final String pr_MethodLibraryPath, final boolean pr_ForPealProver, final boolean pr_Compress, final int pr_Threads, final boolean pr_Resume) throws MethodDefinitionException, IOException {
         System.out.println("Reading method definition file...");
-        TextMethodLibraryReader libraryReader = new TextMethodLibraryReader();
-        m_MethodLibrary = libraryReader.read(new File(pr_MethodLibraryPath));
+        MethodLibraryReader libraryReader = MethodLibraryReader.forFile(new File(pr_MethodLibraryPath));
+        m_MethodLibrary = libraryReader.readLibrary(new File(pr_MethodLibraryPath));
     	m_OutputFile = new File(pr_OutputFile);
     	m_ForPealProver = pr_ForPealProver;
+    	m_Compress = pr_Compress;
+    	m_Threads = pr_Threads;
+    	m_Resume = pr_Resume;
+    	m_CheckpointFile = new File(pr_OutputFile + CHECKPOINT_EXTENSION);
     }
     
     public void run()
@@ -110,26 +150,27 @@ public class CompositionGenerator implements IMethodLibraryReaderListener {
         System.out.println("= Version 1.0.0");
         System.out.println("====================================\n");
 
-        final String methodName = getInput("Name");
-        final Stage stage = Stage.getStage(getInput("Stage (number of bells)"));
-        
-        java.util.List<Method> methods = new ArrayList<Method>();
-        for (Method m : m_MethodLibrary) {
-            if (m.getName().equals(methodName) && 
-                m.getStage() == stage) {
-                methods.add(m);
-            }
+        SearchCheckpoint checkpoint = null;
+        if (m_Resume) {
+        	try {
+        		checkpoint = SearchCheckpoint.read(m_CheckpointFile);
+        	} catch (IOException e) {
+        		System.err.println("Unable to read checkpoint: " + e.getMessage());
+        		return;
+        	}
+        	m_ForPealProver = checkpoint.isForPealProver();
+        	m_Compress = checkpoint.isCompressed();
         }
         
+        final String methodName = (checkpoint != null) ? checkpoint.getMethodName() : getInput("Name");
+        final Stage stage = (checkpoint != null) ? Stage.getStage("" + checkpoint.getBells()) : Stage.getStage(getInput("Stage (number of bells)"));
+        
+        final java.util.List<Method> methods = m_MethodLibrary.getMethods(methodName, stage);
+        
         Method method = null;
         if (methods.size() > 1) {
-        	final MethodType type = MethodType.getMethodType(getInput("Type"));
-        	for (Method m : methods) {
-        		if (m.getMethodType() == type) {
-        			method = m;
-        			break;
-                }
-        	}
+        	final MethodType type = MethodType.getMethodType((checkpoint != null) ? checkpoint.getMethodType() : getInput("Type"));
+        	method = m_MethodLibrary.getMethod(methodName, stage, type);
         } else if (methods.size() == 1) {
         	method = methods.get(0);
         }
@@ -141,13 +182,6 @@ public class CompositionGenerator implements IMethodLibraryReaderListener {
         
         System.out.println(String.format("\nGenerating composition for %s", method));
         
-        HashMap<String, Method> map = new HashMap<>();
-        map.put("", method);
-        
-        SimpleComposition comp = new SimpleComposition(map, 0);
-        comp.setFirstMethod(method);
-        
-        
         ArrayList<String> calls = new ArrayList<String>();
         calls.add(PLAIN_CALL);
         calls.add(BOB_CALL);
@@ -155,73 +189,67 @@ public class CompositionGenerator implements IMethodLibraryReaderListener {
         	calls.add(SINGLE_CALL);
         }
 
-        @SuppressWarnings("unchecked")
-		List<String> compList = (List<String>) calls.clone();
-        ArrayList<String> newCompList;
-        final Set<SimpleComposition> trueComps = new HashSet<>();
-        String currentCallList = "";
+        m_Search = new CompositionSearch(method, calls, MAX_CHANGES);
+        m_Search.setThreads(m_Threads);
+        m_Search.setCheckpointInterval(CHECKPOINT_INTERVAL);
+        m_Search.addListener(this);
+        m_NumFound = 0;
+        m_WriteError = null;
+        
+        if (checkpoint != null) {
+        	if (checkpoint.getMaxChanges() != MAX_CHANGES || !Arrays.equals(checkpoint.getCalls(), calls.toArray())) {
+        		System.err.println("Checkpoint was saved by a different search.");
+        		return;
+        	}
+        	m_Search.setResumePath(checkpoint.getPath());
+        	m_NumFound = checkpoint.getNumFound();
+        	m_Checkpoint = checkpoint;
+        	System.out.println(String.format("Resuming from checkpoint (%d found so far).", m_NumFound));
+        } else {
+        	m_Checkpoint = new SearchCheckpoint(method.getName(), 
+        	                                    stage.getBells(), 
+        	                                    method.getMethodType().getCode(), 
+        	                                    MAX_CHANGES, 
+        	                                    calls.toArray(new String[calls.size()]), 
+        	                                    m_ForPealProver, 
+        	                                    m_Compress);
+        }
         
         try {
 
-        	if (!m_ForPealProver) {
-        		writeMessage("[" + method.getName() + "," + method.getStage().getBells() + "]\n", true);
+        	if (checkpoint != null) {
+        		m_Writer = new CompositionResultWriter(m_OutputFile, method, m_ForPealProver, m_Compress, checkpoint.getOutputLength());
         	} else {
-        		writeMessage("! Generated compositions...", true);
+        		m_Writer = new CompositionResultWriter(m_OutputFile, method, m_ForPealProver, m_Compress);
         	}
         	
-        	while (compList.size() > 0) {
-        		
-        		newCompList = new ArrayList<String>();
-
-        		for (String callList : compList) {
-		        	
-	        		for (String call : calls) {
-			        	
-				        try {
-				        	
-				        	currentCallList = callList + call;
-//				        	System.out.println(String.format("Trying composition %s...", currentCallList));
-					    	comp = new SimpleComposition(map, 0);
-					    	comp.setPadPlainLeads(false);
-					        comp.setFirstMethod(method);
-					    	comp.addRows(currentCallList);
-					    	
-				        	if (comp.isTrue()) {
-				        		trueComps.add(comp);
-				        		System.out.println(String.format("Found #%d: %d changes (%s). [%d branches remaining]", trueComps.size(), comp.getChanges(), currentCallList, compList.size()));
-				        		
-				        		if (!m_ForPealProver) {
-				        			writeMessage(comp.toString() + 
-				        					     "# Peal Prover: " + currentCallList.replaceAll("\\-", " b").replaceAll("p", " p").replaceAll("s", " s") + "\n");
-				        		} else {
-				        			writeMessage("!c1 = {" + currentCallList.replaceAll("\\-", " b").replaceAll("p", " p").replaceAll("s", " s") + " }");
-				        		}
-				        		
-				        	}
-				        	
-				        } catch (DoesNotEndInRoundsException e) {
-//				        	System.out.println(String.format("Composition %s does not yet end in rounds.", currentCallList));
-				        	if (comp.getChanges() > MAX_CHANGES) {
-				        		System.out.println(String.format("Number of changes exceeds 5300, giving up composition %s", currentCallList));
-				        	} else {
-//					        	System.out.println("Maybe next time...");
-					        	newCompList.add(currentCallList);
-				        	}
-				        } catch (FalseGridException e) {
-//				        	System.out.println(String.format("Composition %s is false. Forgetting it :-(", currentCallList));
-						}
-				    	
-			        }
-	        		
-	        	}
-	        	
-	        	compList = newCompList;
-	        	
-	        	System.out.println(String.format("%d more branches to try...", compList.size()));
+        	// Finish the file if the generator is stopped before the search ends
+        	final Thread closeWriter = new Thread() {
+        		@Override
+        		public void run() {
+        			try {
+        				m_Writer.close();
+        			} catch (IOException e) {
+        				System.err.println("Error writing to composition file: " + e.getMessage());
+        			}
+        		}
+        	};
+        	Runtime.getRuntime().addShutdownHook(closeWriter);
+        	
+        	try {
+        		m_Search.run();
+        	} finally {
+        		m_Writer.close();
+        		Runtime.getRuntime().removeShutdownHook(closeWriter);
         	}
-
-        	if (m_ForPealProver) {
-        		writeMessage("composition = { c1 }");
+        	
+        	if (m_WriteError != null) {
+        		throw m_WriteError;
+        	}
+        	
+        	// The search is complete, so there is nothing to resume
+        	if (m_CheckpointFile.exists() && !m_CheckpointFile.delete()) {
+        		System.err.println("Unable to delete checkpoint: " + m_CheckpointFile);
         	}
         	
 	    } catch (CompositionDefinitionException e) {
@@ -231,18 +259,6 @@ public class CompositionGenerator implements IMethodLibraryReaderListener {
 	    }
     }
     
-    private void writeMessage(final String pr_Message, final boolean pr_Overwrite) throws IOException
-    {
-    	FileWriter writer = new FileWriter(m_OutputFile, !pr_Overwrite);
-		writer.write(pr_Message + "\n");
-		writer.close();
-    }
-    
-    private void writeMessage(final String pr_Message) throws IOException
-    {
-    	writeMessage(pr_Message, false);
-    }
-    
     private String getInput(final String pr_Prompt)
     {
         System.out.print(pr_Prompt + ": ");
@@ -256,6 +272,35 @@ public class CompositionGenerator implements IMethodLibraryReaderListener {
         return null;
     }
 
+    @Override
+    public void compositionFound(final SimpleComposition pr_Composition, final String pr_Calls) {
+    	
+    	m_NumFound++;
+    	System.out.println(String.format("Found #%d: %d changes (%s).", m_NumFound, pr_Composition.getChanges(), pr_Calls));
+    	
+    	try {
+    		m_Writer.write(pr_Composition, pr_Calls);
+    	} catch (IOException e) {
+    		m_WriteError = e;
+    		m_Search.stop();
+    	}
+    }
+
+    @Override
+    public void checkpointReached(final int[] pr_Path) {
+    	try {
+    		m_Checkpoint.update(pr_Path, m_NumFound, m_Writer.checkpoint());
+    		m_Checkpoint.write(m_CheckpointFile);
+    	} catch (IOException e) {
+    		System.err.println("Unable to write checkpoint: " + e.getMessage());
+    	}
+    }
+
+    @Override
+    public void compositionAbandoned(final String pr_Calls, final int pr_Changes) {
+    	System.out.println(String.format("Number of changes exceeds %d, giving up composition %s", MAX_CHANGES, pr_Calls));
+    }
+
     @Override
     public void methodLibraryErrorFound(String pr_Message) {
         System.err.println(pr_Message);
@@ -0,0 +1,183 @@
+package linegenerator.commandline;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+import linegenerator.core.Method;
+import linegenerator.core.SimpleComposition;
+
+/**
+ * Writes the compositions found by the generator to a file, either in the native
+ * composition format or as Peal Prover input, optionally gzip compressed.
+ *
+ * The file is held open for the whole search and written through a buffer, which is
+ * flushed after every batch of compositions, when a batch has been waiting too long
+ * and whenever {@link #flush()} is called.
+ *
+ * At a checkpoint ({@link #checkpoint()}) the file is flushed and, if compressed, the
+ * current gzip member is finished, and then forced to disk, so that a search resumed
+ * from the checkpoint can cut the file back to that point and carry on writing after
+ * it.
+ *
+ * @author Tom
+ */
+public class CompositionResultWriter {
+
+    /** The number of compositions written between flushes. */
+    private static final int BATCH_SIZE = 100;
+
+    /** The longest time (in milliseconds) a composition is held in the buffer. */
+    private static final long FLUSH_INTERVAL = 10000;
+
+    /** The size of the buffer (in characters). */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileOutputStream m_File;
+    private final boolean m_Compress;
+    private final boolean m_ForPealProver;
+    private OutputStream m_WriterStream;
+    private Writer m_Writer;
+    private int m_Unflushed;
+    private long m_LastFlush;
+    private boolean m_IsClosed;
+
+    /**
+     * Constructor, which creates (or overwrites) the file and writes its header.
+     * @param pr_File the file to write to
+     * @param pr_Method the method the compositions are of
+     * @param pr_ForPealProver whether to write Peal Prover input
+     * @param pr_Compress whether to gzip the file
+     * @throws IOException if the file can't be written
+     */
+    public CompositionResultWriter(final File pr_File,
+                                   final Method pr_Method,
+                                   final boolean pr_ForPealProver,
+                                   final boolean pr_Compress) throws IOException {
+        this(pr_File, pr_Method, pr_ForPealProver, pr_Compress, -1);
+    }
+
+    /**
+     * Constructor.
+     * @param pr_File the file to write to
+     * @param pr_Method the method the compositions are of
+     * @param pr_ForPealProver whether to write Peal Prover input
+     * @param pr_Compress whether to gzip the file
+     * @param pr_Checkpoint the length of the file returned by {@link #checkpoint()}, to
+     *                      cut the file back to and carry on from, or -1 to start again
+     * @throws IOException if the file can't be written
+     */
+    public CompositionResultWriter(final File pr_File,
+                                   final Method pr_Method,
+                                   final boolean pr_ForPealProver,
+                                   final boolean pr_Compress,
+                                   final long pr_Checkpoint) throws IOException {
+        m_File = new FileOutputStream(pr_File, pr_Checkpoint >= 0);
+        if (pr_Checkpoint >= 0) {
+            m_File.getChannel().truncate(pr_Checkpoint);
+        }
+        m_Compress = pr_Compress;
+        m_ForPealProver = pr_ForPealProver;
+        m_Writer = createWriter();
+        m_LastFlush = System.currentTimeMillis();
+
+        if (pr_Checkpoint >= 0) {
+            return;
+        } else if (!m_ForPealProver) {
+            writeLine("[" + pr_Method.getName() + "," + pr_Method.getStage().getBells() + "]\n");
+        } else {
+            writeLine("! Generated compositions...");
+        }
+    }
+
+    /**
+     * Writes a composition, flushing the buffer if a batch is complete.
+     * @param pr_Composition the composition
+     * @param pr_Calls the calls of the composition in shorthand
+     * @throws IOException if the file can't be written
+     */
+    public synchronized void write(final SimpleComposition pr_Composition, final String pr_Calls) throws IOException {
+
+        final String calls = pr_Calls.replaceAll("\\-", " b").replaceAll("p", " p").replaceAll("s", " s");
+        if (!m_ForPealProver) {
+            writeLine(pr_Composition.toString() + "# Peal Prover: " + calls + "\n");
+        } else {
+            writeLine("!c1 = {" + calls + " }");
+        }
+
+        if (++m_Unflushed >= BATCH_SIZE || System.currentTimeMillis() - m_LastFlush >= FLUSH_INTERVAL) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes everything buffered so far to the file.
+     * @throws IOException if the file can't be written
+     */
+    public synchronized void flush() throws IOException {
+        if (!m_IsClosed) {
+            m_Writer.flush();
+        }
+        m_Unflushed = 0;
+        m_LastFlush = System.currentTimeMillis();
+    }
+
+    /**
+     * Writes everything buffered so far to the file, and forces it to disk, so that the
+     * search can be resumed from this point.
+     * @return the length of the file
+     * @throws IOException if the file can't be written
+     */
+    public synchronized long checkpoint() throws IOException {
+        flush();
+        if (m_Compress) {
+            ((GZIPOutputStream) m_WriterStream).finish();
+        }
+        // The checkpoint must not record more of the file than would survive a crash
+        m_File.getChannel().force(false);
+        final long length = m_File.getChannel().position();
+        if (m_Compress) {
+            m_Writer = createWriter();
+        }
+        return length;
+    }
+
+    /**
+     * Writes the end of the file and closes it.
+     * @throws IOException if the file can't be written
+     */
+    public synchronized void close() throws IOException {
+        if (!m_IsClosed) {
+            if (m_ForPealProver) {
+                writeLine("composition = { c1 }");
+            }
+            m_IsClosed = true;
+            m_Writer.close();
+        }
+    }
+
+    /**
+     * Creates the writer, starting a new gzip member if the file is compressed.
+     * @return the writer
+     * @throws IOException if the file can't be written
+     */
+    private Writer createWriter() throws IOException {
+        m_WriterStream = m_File;
+        if (m_Compress) {
+            // Sync flushing, so that each batch can be read back if the search is killed
+            m_WriterStream = new GZIPOutputStream(m_File, BUFFER_SIZE, true);
+        }
+        return new BufferedWriter(new OutputStreamWriter(m_WriterStream), BUFFER_SIZE);
+    }
+
+    private void writeLine(final String pr_Line) throws IOException {
+        m_Writer.write(pr_Line);
+        m_Writer.write("\n");
+    }
+
+}
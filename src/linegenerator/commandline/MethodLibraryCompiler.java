@@ -0,0 +1,84 @@
+package linegenerator.commandline;
+
+import java.io.File;
+import java.io.IOException;
+
+import linegenerator.core.BinaryMethodLibrary;
+import linegenerator.core.IMethodLibraryReaderListener;
+import linegenerator.core.Method;
+import linegenerator.core.MethodLibraryReader;
+import linegenerator.core.exceptions.MethodDefinitionException;
+
+/**
+ * Compiles a text or XML method library to a binary library (see
+ * {@link BinaryMethodLibrary}), which can be given to the generators in its place.
+ * 
+ * @author Tom
+ */
+public class MethodLibraryCompiler implements IMethodLibraryReaderListener {
+	
+    private static final String ARGUMENT_METHODS = "definitions";
+    private static final String ARGUMENT_OUTPUT_FILE = "output";
+
+	public static void main(String[] pr_Arguments) {
+
+        String methodDefinitionFile = null;
+        String outputFile = null;
+        
+        String argument;
+        for (int i = 0; i < pr_Arguments.length; i++) {
+            argument = pr_Arguments[i];
+            if (argument.startsWith("-")) {
+                argument = argument.substring(1).toLowerCase();
+                if (argument.equals(ARGUMENT_METHODS)) {
+                    if (i + 1 < pr_Arguments.length) {
+                        methodDefinitionFile = pr_Arguments[++i];
+                    }
+                } else if (argument.equals(ARGUMENT_OUTPUT_FILE)) {
+                    if (i + 1 < pr_Arguments.length) {
+                        outputFile = pr_Arguments[++i];
+                    }
+                }
+            }
+        }
+        
+        if (methodDefinitionFile == null) {
+            System.out.println("Usage:\n");
+            System.out.println("-" + ARGUMENT_METHODS + " <file>");
+            System.out.println("\tPath to the text or XML method definition file.");
+            System.out.println("-" + ARGUMENT_OUTPUT_FILE + " <file>");
+            System.out.println("\tThe compiled library to write (default: the definition file with the extension " + BinaryMethodLibrary.FILE_EXTENSION + ").");
+            return;
+        }
+        
+        if (outputFile == null) {
+            final int extension = methodDefinitionFile.lastIndexOf('.');
+            outputFile = (extension > 0 ? methodDefinitionFile.substring(0, extension) : methodDefinitionFile) + BinaryMethodLibrary.FILE_EXTENSION;
+        }
+		
+		final MethodLibraryReader reader = MethodLibraryReader.forFile(new File(methodDefinitionFile));
+		reader.addListener(new MethodLibraryCompiler());
+		try {
+			final Method[] methods = reader.read(new File(methodDefinitionFile));
+			if (methods == null) {
+			    return;
+			}
+			BinaryMethodLibrary.write(methods, new File(outputFile));
+			System.out.println(String.format("Compiled %d method(s) to %s.", methods.length, outputFile));
+		} catch (MethodDefinitionException | IOException e) {
+			System.err.println(e.getMessage());
+		}
+
+	}
+
+    @Override
+    public void methodLibraryErrorFound(String pr_Message) {
+        System.err.println(pr_Message);
+    }
+
+    @Override
+    public void methodLibraryWarningFound(String pr_Message) {
+        System.out.println("[WARNING] " + pr_Message);
+    }
+
+}
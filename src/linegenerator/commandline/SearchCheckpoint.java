@@ -0,0 +1,205 @@
+package linegenerator.commandline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The state of a composition search saved so that it can be resumed: the search it
+ * belongs to, how far the search had got and how much of the composition file had
+ * been written at that point.
+ *
+ * Checkpoints are written to a small binary file. Each is written to a temporary file
+ * and synced to disk first and then moved over the last in a single step, so a crash
+ * at any point leaves either the previous checkpoint or the new one in place. Where the file system can't
+ * replace a file in one step the move falls back to an ordinary one.
+ *
+ * @author Tom
+ */
+public class SearchCheckpoint {
+
+    /** Identifies a checkpoint file. */
+    private static final int MAGIC = 0x4C47434B;
+
+    /** The version of the file format. */
+    private static final int VERSION = 1;
+
+    private String m_MethodName;
+    private int m_Bells;
+    private String m_MethodType;
+    private int m_MaxChanges;
+    private String[] m_Calls;
+    private boolean m_ForPealProver;
+    private boolean m_Compress;
+    private int m_NumFound;
+    private long m_OutputLength;
+    private int[] m_Path;
+
+    /**
+     * Constructor.
+     * @param pr_MethodName the name of the method searched
+     * @param pr_Bells the number of bells
+     * @param pr_MethodType the code of the method type
+     * @param pr_MaxChanges the number of changes after which touches are given up
+     * @param pr_Calls the calls tried at each lead end, in order
+     * @param pr_ForPealProver whether the compositions are written for Peal Prover
+     * @param pr_Compress whether the composition file is compressed
+     */
+    public SearchCheckpoint(final String pr_MethodName,
+                            final int pr_Bells,
+                            final String pr_MethodType,
+                            final int pr_MaxChanges,
+                            final String[] pr_Calls,
+                            final boolean pr_ForPealProver,
+                            final boolean pr_Compress) {
+        m_MethodName = pr_MethodName;
+        m_Bells = pr_Bells;
+        m_MethodType = pr_MethodType;
+        m_MaxChanges = pr_MaxChanges;
+        m_Calls = pr_Calls;
+        m_ForPealProver = pr_ForPealProver;
+        m_Compress = pr_Compress;
+        m_Path = new int[0];
+    }
+
+    /**
+     * Reads a checkpoint from a file.
+     * @param pr_File the file
+     * @return the checkpoint
+     * @throws IOException if the file can't be read or isn't a checkpoint
+     */
+    public static SearchCheckpoint read(final File pr_File) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(pr_File)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a search checkpoint: " + pr_File);
+            }
+            final String methodName = input.readUTF();
+            final int bells = input.readByte();
+            final String methodType = input.readUTF();
+            final int maxChanges = input.readInt();
+            final String[] calls = new String[input.readByte()];
+            for (int i = 0; i < calls.length; i++) {
+                calls[i] = input.readUTF();
+            }
+            final boolean forPealProver = input.readBoolean();
+            final boolean compress = input.readBoolean();
+
+            final SearchCheckpoint checkpoint = new SearchCheckpoint(methodName, bells, methodType, maxChanges, calls, forPealProver, compress);
+            checkpoint.m_NumFound = input.readInt();
+            checkpoint.m_OutputLength = input.readLong();
+            checkpoint.m_Path = new int[input.readInt()];
+            for (int i = 0; i < checkpoint.m_Path.length; i++) {
+                checkpoint.m_Path[i] = input.readByte();
+            }
+            return checkpoint;
+        }
+    }
+
+    /**
+     * Writes the checkpoint to a file, replacing any checkpoint already there.
+     * @param pr_File the file
+     * @throws IOException if the file can't be written
+     */
+    public void write(final File pr_File) throws IOException {
+        final File temporaryFile = new File(pr_File.getPath() + ".tmp");
+        final FileOutputStream file = new FileOutputStream(temporaryFile);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(m_MethodName);
+            output.writeByte(m_Bells);
+            output.writeUTF(m_MethodType);
+            output.writeInt(m_MaxChanges);
+            output.writeByte(m_Calls.length);
+            for (String call : m_Calls) {
+                output.writeUTF(call);
+            }
+            output.writeBoolean(m_ForPealProver);
+            output.writeBoolean(m_Compress);
+            output.writeInt(m_NumFound);
+            output.writeLong(m_OutputLength);
+            output.writeInt(m_Path.length);
+            for (int call : m_Path) {
+                output.writeByte(call);
+            }
+            // Otherwise the move may reach the disk before the contents
+            output.flush();
+            file.getFD().sync();
+        }
+        try {
+            Files.move(temporaryFile.toPath(), pr_File.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaryFile.toPath(), pr_File.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public String getMethodName() {
+        return m_MethodName;
+    }
+
+    public int getBells() {
+        return m_Bells;
+    }
+
+    public String getMethodType() {
+        return m_MethodType;
+    }
+
+    public int getMaxChanges() {
+        return m_MaxChanges;
+    }
+
+    public String[] getCalls() {
+        return m_Calls;
+    }
+
+    public boolean isForPealProver() {
+        return m_ForPealProver;
+    }
+
+    public boolean isCompressed() {
+        return m_Compress;
+    }
+
+    /**
+     * @return the number of compositions found before the checkpoint
+     */
+    public int getNumFound() {
+        return m_NumFound;
+    }
+
+    /**
+     * @return the length of the composition file at the checkpoint
+     */
+    public long getOutputLength() {
+        return m_OutputLength;
+    }
+
+    /**
+     * @return the calls of the next lead to be tried
+     */
+    public int[] getPath() {
+        return m_Path;
+    }
+
+    /**
+     * Records how far the search has got.
+     * @param pr_Path the calls of the next lead to be tried
+     * @param pr_NumFound the number of compositions found so far
+     * @param pr_OutputLength the length of the composition file
+     */
+    public void update(final int[] pr_Path, final int pr_NumFound, final long pr_OutputLength) {
+        m_Path = pr_Path;
+        m_NumFound = pr_NumFound;
+        m_OutputLength = pr_OutputLength;
+    }
+
+}
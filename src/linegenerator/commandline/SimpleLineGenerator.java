@@ -1,27 +1,35 @@
 package linegenerator.commandline;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import linegenerator.core.AbstractComposition;
 import linegenerator.core.AbstractCompositionVisitor;
+import linegenerator.core.AbstractLineRenderer;
 import linegenerator.core.AbstractMethodGenerator;
-import linegenerator.core.CompositionReader;
+import linegenerator.core.BuildManifest;
+import linegenerator.core.CompositionProver;
 import linegenerator.core.CompositionWriter;
+import linegenerator.core.IMethodGenerationListener;
 import linegenerator.core.IMethodLibraryReaderListener;
+import linegenerator.core.LineBook;
 import linegenerator.core.LineFactory;
 import linegenerator.core.Method;
 import linegenerator.core.MethodDescriptionFactory;
+import linegenerator.core.MethodGeneratorPool;
 import linegenerator.core.MethodGridFactory;
+import linegenerator.core.MethodLibrary;
 import linegenerator.core.MethodLibraryReader;
 import linegenerator.core.NeatCompositionWriter;
-import linegenerator.core.TextMethodLibraryReader;
+import linegenerator.core.PdfLineRenderer;
+import linegenerator.core.ProofCache;
 import linegenerator.core.exceptions.CompositionDefinitionException;
-import linegenerator.core.exceptions.FalseGridException;
 import linegenerator.core.exceptions.InvalidPlaceNotationException;
 import linegenerator.core.exceptions.MethodDefinitionException;
 import linegenerator.core.exceptions.MethodGenerationException;
@@ -32,18 +40,25 @@ public class SimpleLineGenerator implements IMethodLibraryReaderListener {
     private static final String ARGUMENT_COMPOSITIONS = "compositions";
     private static final String ARGUMENT_OUTPUT_DIRECTORY = "outputdirectory";
     private static final String ARGUMENT_GENERATE_LINES = "generatelines";
+    private static final String ARGUMENT_GENERATE_LINE_BOOK = "generatelinebook";
     private static final String ARGUMENT_LINES_PROPERTIES_FILE = "lineproperties";
+    private static final String ARGUMENT_LINE_FORMAT = "lineformat";
     private static final String ARGUMENT_GENERATE_DESCRIPTIONS = "generatedescriptions";
     private static final String ARGUMENT_GENERATE_BOOK_TEXT = "generatebooktext";
     private static final String ARGUMENT_GENERATE_GRID = "generategrid";
     private static final String ARGUMENT_OVERWRITE = "overwrite";
+    private static final String ARGUMENT_THREADS = "threads";
+    private static final String ARGUMENT_PROOF_CACHE = "proofcache";
     
     private static final Logger s_Logger = Logger.getLogger("SimpleLineGenerator");
     
     private File m_OutputDirectory;
     private boolean m_Overwrite;
-    private Method[] m_MethodLibrary;
+    private MethodLibrary m_MethodLibrary;
 	private String m_LinePropertiesFile;
+	private int m_Threads;
+	private AbstractLineRenderer m_LineRenderer;
+	private File m_ProofCacheFile;
 
     /**
      * @param pr_Arguments
@@ -57,6 +72,7 @@ public class SimpleLineGenerator implements IMethodLibraryReaderListener {
         System.out.println("====================================\n");
         
         boolean generateLines = false;
+        String lineBookFile = null;
         boolean generateDescriptions = false;
         boolean generateBookText = false;
         boolean generateGrid = false;
@@ -64,7 +80,10 @@ public class SimpleLineGenerator implements IMethodLibraryReaderListener {
         String methodDefinitionFile = null;
         String outputDirectory = null;
         String compositionFile = null;
+        String proofCacheFile = null;
         String linePropertiesFile = "LineFactory.properties";
+        String lineFormat = "pdf";
+        int threads = Runtime.getRuntime().availableProcessors();
         
         String argument;
         for (int i = 0; i < pr_Arguments.length; i++) {
@@ -83,12 +102,24 @@ public class SimpleLineGenerator implements IMethodLibraryReaderListener {
                     if (i + 1 < pr_Arguments.length) {
                         compositionFile = pr_Arguments[++i];
                     }
+                } else if (argument.equals(ARGUMENT_PROOF_CACHE)) {
+                    if (i + 1 < pr_Arguments.length) {
+                        proofCacheFile = pr_Arguments[++i];
+                    }
                 } else if (argument.equals(ARGUMENT_GENERATE_LINES)) {
                     generateLines = true;
+                } else if (argument.equals(ARGUMENT_GENERATE_LINE_BOOK)) {
+                    if (i + 1 < pr_Arguments.length) {
+                        lineBookFile = pr_Arguments[++i];
+                    }
                 } else if (argument.equals(ARGUMENT_LINES_PROPERTIES_FILE)) {
                     if (i + 1 < pr_Arguments.length) {
                     	linePropertiesFile = pr_Arguments[++i];
                     }
+                } else if (argument.equals(ARGUMENT_LINE_FORMAT)) {
+                    if (i + 1 < pr_Arguments.length) {
+                    	lineFormat = pr_Arguments[++i];
+                    }
                 } else if (argument.equals(ARGUMENT_GENERATE_DESCRIPTIONS)) {
                     generateDescriptions = true;
                 } else if (argument.equals(ARGUMENT_GENERATE_BOOK_TEXT)) {
@@ -97,12 +128,33 @@ public class SimpleLineGenerator implements IMethodLibraryReaderListener {
                     generateGrid = true;
                 } else if (argument.equals(ARGUMENT_OVERWRITE)) {
                     overwriteFiles = true;
+                } else if (argument.equals(ARGUMENT_THREADS)) {
+                    if (i + 1 < pr_Arguments.length) {
+                        try {
+                            threads = Integer.parseInt(pr_Arguments[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Invalid number of threads: " + pr_Arguments[i]);
+                        }
+                    }
                 }
                 
             }
         }
         
         final SimpleLineGenerator generator = new SimpleLineGenerator(outputDirectory, linePropertiesFile, overwriteFiles);
+        generator.setThreads(threads);
+        if (proofCacheFile != null) {
+            generator.setProofCacheFile(new File(proofCacheFile));
+        }
+        
+        final AbstractLineRenderer lineRenderer = AbstractLineRenderer.forFormat(lineFormat);
+        if (lineRenderer != null) {
+            generator.setLineRenderer(lineRenderer);
+        } else {
+            System.out.println("ERROR: Unknown line format: " + lineFormat + "\n");
+            generator.outputUsage();
+            return;
+        }
 
         if (methodDefinitionFile != null) {
             generator.readMethodDefinitions(methodDefinitionFile);
@@ -112,10 +164,10 @@ public class SimpleLineGenerator implements IMethodLibraryReaderListener {
             return;
         }
         
-        if (!generateLines && !generateDescriptions && !generateBookText && !generateGrid && compositionFile == null) {
+        if (!generateLines && lineBookFile == null && !generateDescriptions && !generateBookText && !generateGrid && compositionFile == null) {
             generator.outputUsage();
             return;
-        } else if (outputDirectory == null && (generateLines || generateDescriptions || generateBookText || generateGrid)) {
+        } else if (outputDirectory == null && (generateLines || lineBookFile != null || generateDescriptions || generateBookText || generateGrid)) {
             System.out.println("ERROR: You must specify an output directory when generating files.\n");
             generator.outputUsage();
             return;
@@ -133,6 +185,10 @@ public class SimpleLineGenerator implements IMethodLibraryReaderListener {
             generator.generateLines();
         }
         
+        if (lineBookFile != null) {
+            generator.generateLineBook(lineBookFile);
+        }
+        
         if (generateDescriptions) {
             generator.generateDescriptions();
         }
@@ -154,6 +210,10 @@ public class SimpleLineGenerator implements IMethodLibraryReaderListener {
         System.out.println("\tThe directory into which the lines and descriptions should be saved.");
         System.out.println("-" + ARGUMENT_GENERATE_LINES);
         System.out.println("\tGenerate method lines.");
+        System.out.println("-" + ARGUMENT_LINE_FORMAT + " <pdf|svg|png>");
+        System.out.println("\tThe format to generate method lines in (default: pdf).");
+        System.out.println("-" + ARGUMENT_GENERATE_LINE_BOOK + " <file>");
+        System.out.println("\tGenerate the lines of every method as the pages of a single PDF file in the output directory.");
         System.out.println("-" + ARGUMENT_GENERATE_DESCRIPTIONS);
         System.out.println("\tGenerate method descriptions.");
         System.out.println("-" + ARGUMENT_GENERATE_BOOK_TEXT);
@@ -162,13 +222,19 @@ public class SimpleLineGenerator implements IMethodLibraryReaderListener {
         System.out.println("\tOverwite any existing files.");
         System.out.println("-" + ARGUMENT_COMPOSITIONS + " <directory>");
         System.out.println("\tThe directory from which to prove compositions.");       
+        System.out.println("-" + ARGUMENT_PROOF_CACHE + " <file>");
+        System.out.println("\tKeep the results of proving compositions in a file, so only compositions which have changed are proved again.");
+        System.out.println("-" + ARGUMENT_THREADS + " <number>");
+        System.out.println("\tThe number of threads to prove compositions and generate files on (default: one per processor).");
         
     }
 
     public SimpleLineGenerator(final String pr_OutputDirectory, final String pr_LinePropertiesFile, final boolean pr_OverwriteFiles) {
-        m_MethodLibrary = new Method[0];
+        m_MethodLibrary = new MethodLibrary(new Method[0]);
         m_Overwrite = pr_OverwriteFiles;
         m_LinePropertiesFile = pr_LinePropertiesFile;
+        m_Threads = 1;
+        m_LineRenderer = new PdfLineRenderer();
         if (pr_OutputDirectory != null) {
             m_OutputDirectory = new File(pr_OutputDirectory);
         } else {
@@ -176,13 +242,36 @@ public class SimpleLineGenerator implements IMethodLibraryReaderListener {
         }
     }
     
+    /**
+     * @param pr_Renderer the renderer to generate method lines with
+     */
+    public void setLineRenderer(final AbstractLineRenderer pr_Renderer) {
+        m_LineRenderer = pr_Renderer;
+    }
+    
+    /**
+     * @param pr_Threads the number of threads to prove compositions on
+     */
+    public void setThreads(final int pr_Threads) {
+        m_Threads = Math.max(pr_Threads, 1);
+    }
+    
+    /**
+     * @param pr_File the file to keep the results of proving compositions in, so that
+     *                only compositions which have changed are proved again; or null to
+     *                prove every composition
+     */
+    public void setProofCacheFile(final File pr_File) {
+        m_ProofCacheFile = pr_File;
+    }
+    
     private void readMethodDefinitions(final String pr_File) {
         
         System.out.println("Reading method definition file...");
-        MethodLibraryReader libraryReader = new TextMethodLibraryReader();
+        MethodLibraryReader libraryReader = MethodLibraryReader.forFile(new File(pr_File));
         libraryReader.addListener(this);
         try {
-            m_MethodLibrary = libraryReader.read(new File(pr_File));
+            m_MethodLibrary = libraryReader.readLibrary(new File(pr_File));
         } catch (MethodDefinitionException e) {
             System.err.println(e.getMessage());
             return;
@@ -205,7 +294,44 @@ public class SimpleLineGenerator implements IMethodLibraryReaderListener {
     
     private void generateLines() {
         System.out.println("Generating method lines...");
-        generate(new LineFactory(m_OutputDirectory, m_LinePropertiesFile), m_Overwrite);
+        final LineFactory factory = new LineFactory(m_OutputDirectory, m_LinePropertiesFile);
+        factory.setRenderer(m_LineRenderer);
+        generate(factory, m_Overwrite);
+    }
+    
+    private void generateLineBook(final String pr_File) {
+        final File bookFile = new File(m_OutputDirectory, pr_File);
+        if (!m_Overwrite && bookFile.exists()) {
+            System.out.println("Method line book " + bookFile + " already exists.");
+            return;
+        }
+        if (!m_OutputDirectory.exists()) {
+            m_OutputDirectory.mkdir();
+        }
+        
+        System.out.println("Generating method line book...");
+        final LineBook book;
+        try {
+            book = new LineBook(new LineFactory(m_OutputDirectory, m_LinePropertiesFile), bookFile);
+        } catch (FileNotFoundException | MethodGenerationException e) {
+            System.err.println("Unable to create method line book: " + e.getMessage());
+            return;
+        }
+        
+        try {
+            for (Method method : m_MethodLibrary) {
+                try {
+                    book.add(method);
+                    System.out.println(" - " + method.toString());
+                } catch (MethodGenerationException e) {
+                    System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.MethodGenerationError"), method)); //$NON-NLS-1$
+                    s_Logger.log(Level.SEVERE, MessageFormat.format("An error occurred generating the grid for {0}. See log for details.", method), e); //$NON-NLS-1$
+                }
+            }
+        } finally {
+            book.close();
+        }
+        System.out.println(MessageFormat.format("{0} page(s) written to {1}.", book.getPages(), bookFile));
     }
     
     private void generateDescriptions() {
@@ -219,75 +345,105 @@ public class SimpleLineGenerator implements IMethodLibraryReaderListener {
     }
     
     private void processCompositions(final File pr_CompositionFile) {
-      
-        if (pr_CompositionFile.isDirectory()) {
-            for (File f : pr_CompositionFile.listFiles()) {
-                processCompositions(f);
+        
+        final ArrayList<File> files = new ArrayList<File>();
+        findCompositionFiles(pr_CompositionFile, files);
+        
+        final CompositionProver prover = new CompositionProver(m_MethodLibrary, m_Threads);
+        ProofCache proofCache = null;
+        if (m_ProofCacheFile != null) {
+            try {
+                proofCache = ProofCache.read(m_ProofCacheFile);
+            } catch (IOException e) {
+                System.err.println("Unable to read proof cache, proving every composition: " + e.getMessage());
+                proofCache = new ProofCache();
             }
-        } else {
-            final ArrayList<AbstractComposition> provedCompositions = proveCompositions(pr_CompositionFile);
+            prover.setProofCache(proofCache);
+        }
+        
+        for (CompositionProver.FileProof file : prover.proveFiles(files)) {
+            final File compositionFile = file.getFile();
+            final ArrayList<AbstractComposition> provedCompositions = reportProofs(file);
             if (provedCompositions.size() > 0) {
                 final AbstractCompositionVisitor writer = new CompositionWriter(m_MethodLibrary, provedCompositions.toArray(new AbstractComposition[provedCompositions.size()]));
                 try {
-                    writer.visit(pr_CompositionFile);
+                    writer.visit(compositionFile);
                 } catch (CompositionDefinitionException e) {
-                    System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.CompositionDefinitionError"), pr_CompositionFile)); //$NON-NLS-1$
-                    s_Logger.log(Level.SEVERE, MessageFormat.format("An error was found in the composition text.", pr_CompositionFile), e); //$NON-NLS-1$
+                    System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.CompositionDefinitionError"), compositionFile)); //$NON-NLS-1$
+                    s_Logger.log(Level.SEVERE, MessageFormat.format("An error was found in the composition text.", compositionFile), e); //$NON-NLS-1$
                 } catch (IOException e) {
-                    System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.CompositionIOError"), pr_CompositionFile)); //$NON-NLS-1$
-                    s_Logger.log(Level.SEVERE, MessageFormat.format("An error occurred writing to file for composition.", pr_CompositionFile), e); //$NON-NLS-1$
+                    System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.CompositionIOError"), compositionFile)); //$NON-NLS-1$
+                    s_Logger.log(Level.SEVERE, MessageFormat.format("An error occurred writing to file for composition.", compositionFile), e); //$NON-NLS-1$
                 }
             }
             if (m_OutputDirectory != null) {
                 final NeatCompositionWriter bookTextWriter = new NeatCompositionWriter(m_MethodLibrary, m_Overwrite);
                 try {
-                    bookTextWriter.visit(pr_CompositionFile, new File(m_OutputDirectory.getAbsolutePath() + File.separatorChar + pr_CompositionFile.getName()));
+                    bookTextWriter.visit(compositionFile, new File(m_OutputDirectory.getAbsolutePath() + File.separatorChar + compositionFile.getName()));
                 } catch (CompositionDefinitionException e) {
-                    System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.CompositionDefinitionError"), pr_CompositionFile)); //$NON-NLS-1$
-                    s_Logger.log(Level.SEVERE, MessageFormat.format("An error was found in the composition text.", pr_CompositionFile), e); //$NON-NLS-1$
+                    System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.CompositionDefinitionError"), compositionFile)); //$NON-NLS-1$
+                    s_Logger.log(Level.SEVERE, MessageFormat.format("An error was found in the composition text.", compositionFile), e); //$NON-NLS-1$
                 } catch (IOException e) {
-                    System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.CompositionIOError"), pr_CompositionFile)); //$NON-NLS-1$
-                    s_Logger.log(Level.SEVERE, MessageFormat.format("An error occurred writing to file for composition.", pr_CompositionFile), e); //$NON-NLS-1$
+                    System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.CompositionIOError"), compositionFile)); //$NON-NLS-1$
+                    s_Logger.log(Level.SEVERE, MessageFormat.format("An error occurred writing to file for composition.", compositionFile), e); //$NON-NLS-1$
                 }   
             }
         }
+        
+        if (proofCache != null) {
+            System.out.println();
+            System.out.println(MessageFormat.format("{0} composition(s) unchanged since last proved.", proofCache.getRestored()));
+            try {
+                proofCache.write(m_ProofCacheFile);
+            } catch (IOException e) {
+                System.err.println("Unable to write proof cache: " + e.getMessage());
+            }
+        }
     }
     
-    private ArrayList<AbstractComposition> proveCompositions(final File pr_CompositionFile) {
-        
-        ArrayList<AbstractComposition> compositions = new ArrayList<AbstractComposition>();
+    /**
+     * Lists the composition files in a directory and its subdirectories, in the order
+     * they are processed.
+     * @param pr_CompositionFile the directory, or a single composition file
+     * @param pu_Files the list to add the files to
+     */
+    private void findCompositionFiles(final File pr_CompositionFile, final ArrayList<File> pu_Files) {
+        if (pr_CompositionFile.isDirectory()) {
+            for (File f : pr_CompositionFile.listFiles()) {
+                findCompositionFiles(f, pu_Files);
+            }
+        } else {
+            pu_Files.add(pr_CompositionFile);
+        }
+    }
+    
+    private ArrayList<AbstractComposition> reportProofs(final CompositionProver.FileProof pr_File) {
         
         System.out.println();
         System.out.println("------------------------------------");
         System.out.println();
-        System.out.println("Compositions File: " + pr_CompositionFile);
+        System.out.println("Compositions File: " + pr_File.getFile());
 
-        CompositionReader reader = new CompositionReader(m_MethodLibrary);
-        try {
-            reader.visit(pr_CompositionFile);
-        } catch (CompositionDefinitionException e) {
-            System.err.println(e.getMessage());
-            return compositions;
-        } catch (IOException e) {
-            System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.CompositionIOError"), pr_CompositionFile)); //$NON-NLS-1$
-            return compositions;
+        if (pr_File.getError() instanceof CompositionDefinitionException) {
+            System.err.println(pr_File.getError().getMessage());
+            return new ArrayList<AbstractComposition>();
+        } else if (pr_File.getError() != null) {
+            System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.CompositionIOError"), pr_File.getFile())); //$NON-NLS-1$
+            return new ArrayList<AbstractComposition>();
         }
         
+        final List<CompositionProver.Proof> proofs = pr_File.getProofs();
         int totalCompositions = 0;
         int provedCompositions = 0;
-        for(AbstractComposition comp : reader.getCompositions()) {
+        for (CompositionProver.Proof proof : proofs) {
             totalCompositions++;
-            try {
-                if (comp.isTrue()) {
-                    provedCompositions++;
-                }
-            } catch (CompositionDefinitionException e) {
-                System.err.println(MessageFormat.format("Composition #{0}: {1}", totalCompositions, e.getMessage()));
-            } catch (FalseGridException e) {
-                System.err.println(MessageFormat.format("Composition #{0}: {1}", totalCompositions, e.getMessage()));               
-            } catch (Error e) {
-                System.err.println(MessageFormat.format("Composition #{0}: An unexpected error has occured: {1}", totalCompositions, e.toString()));
-                e.printStackTrace();
+            if (proof.isTrue()) {
+                provedCompositions++;
+            } else if (proof.getError() instanceof RuntimeException) {
+                System.err.println(MessageFormat.format("Composition #{0}: An unexpected error has occured: {1}", totalCompositions, proof.getError().toString()));
+                proof.getError().printStackTrace();
+            } else if (proof.getError() != null) {
+                System.err.println(MessageFormat.format("Composition #{0}: {1}", totalCompositions, proof.getError().getMessage()));
             }
         }
         
@@ -297,7 +453,7 @@ public class SimpleLineGenerator implements IMethodLibraryReaderListener {
             System.out.println(MessageFormat.format("All {0} composition(s) proved.", totalCompositions));
         }
         
-        return reader.getCompositions();
+        return pr_File.getCompositions();
     }
     
     
@@ -402,20 +558,55 @@ public class SimpleLineGenerator implements IMethodLibraryReaderListener {
     
     private void generate(final AbstractMethodGenerator pr_Factory, final boolean pr_Overwrite) {
         
-        for(Method method : m_MethodLibrary) {
-            try {
-                if (pr_Factory.generate(method, pr_Overwrite)) {
-                    System.out.println(" - " + method.toString());
+        final MethodGeneratorPool pool = new MethodGeneratorPool(pr_Factory, m_Threads, new IMethodGenerationListener() {
+            
+            @Override
+            public void methodGenerated(final Method pr_Method, final boolean pr_Written) {
+                if (pr_Written) {
+                    System.out.println(" - " + pr_Method.toString());
+                }
+            }
+            
+            @Override
+            public void methodGenerationFailed(final Method pr_Method, final Exception pr_Error) {
+                if (pr_Error instanceof MethodGenerationException) {
+                    System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.MethodGenerationError"), pr_Method)); //$NON-NLS-1$
+                    s_Logger.log(Level.SEVERE, MessageFormat.format("An error occurred generating the grid for {0}. See log for details.", pr_Method), pr_Error); //$NON-NLS-1$
+                } else if (pr_Error instanceof InvalidPlaceNotationException) {
+                    System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.PlaceNotationError"), pr_Method, pr_Error.getMessage())); //$NON-NLS-1$
+                    s_Logger.log(Level.SEVERE, MessageFormat.format("Invalid place notation found for method {0}: {1}.", pr_Method), pr_Error); //$NON-NLS-1$
+                } else {
+                    System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.LineIOError"), pr_Method)); //$NON-NLS-1$
+                    s_Logger.log(Level.SEVERE, MessageFormat.format("An error occurred writing to file for method {0}.", pr_Method), pr_Error); //$NON-NLS-1$
+                }
+            }
+            
+            @Override
+            public void progressMade(final int pr_Completed, final int pr_Total, final long pr_RemainingMillis) {
+                if (pr_Completed < pr_Total) {
+                    System.out.println(MessageFormat.format("{0} of {1} method(s) done, about {2}s remaining...", pr_Completed, pr_Total, (pr_RemainingMillis + 999) / 1000));
+                }
+            }
+        });
+        
+        BuildManifest manifest = null;
+        try {
+            manifest = BuildManifest.read(m_OutputDirectory);
+            pool.setManifest(manifest);
+        } catch (IOException e) {
+            System.err.println("Unable to read build manifest, only generating new files: " + e.getMessage());
+        }
+        
+        try {
+            pool.generate(m_MethodLibrary, pr_Overwrite);
+        } finally {
+            // Record the files written, even if generating the rest failed
+            if (manifest != null) {
+                try {
+                    manifest.write();
+                } catch (IOException e) {
+                    System.err.println("Unable to write build manifest: " + e.getMessage());
                 }
-            } catch (MethodGenerationException e) {
-                System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.MethodGenerationError"), method)); //$NON-NLS-1$
-                s_Logger.log(Level.SEVERE, MessageFormat.format("An error occurred generating the grid for {0}. See log for details.", method), e); //$NON-NLS-1$
-            } catch (InvalidPlaceNotationException e) {
-                System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.PlaceNotationError"), method, e.getMessage())); //$NON-NLS-1$
-                s_Logger.log(Level.SEVERE, MessageFormat.format("Invalid place notation found for method {0}: {1}.", method), e); //$NON-NLS-1$
-            } catch (IOException e) {
-                System.err.println(MessageFormat.format(Messages.getString("SimpleLineGenerator.LineIOError"), method)); //$NON-NLS-1$
-                s_Logger.log(Level.SEVERE, MessageFormat.format("An error occurred writing to file for method {0}.", method), e); //$NON-NLS-1$
             }
         }
     }
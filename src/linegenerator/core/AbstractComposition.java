@@ -2,8 +2,10 @@ package linegenerator.core;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.Map.Entry;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.regex.Matcher;
 
 import linegenerator.core.exceptions.CompositionDefinitionException;
@@ -11,7 +13,7 @@ import linegenerator.core.exceptions.FalseGridException;
 
 public abstract class AbstractComposition {
 
-    protected HashMap<String, Method> m_MethodTable;
+    protected MethodTable m_MethodTable;
     protected int m_Changes;
     protected String m_FirstChange;
     protected boolean m_IsSpliced;
@@ -21,12 +23,15 @@ public abstract class AbstractComposition {
     protected ArrayList<Boolean> m_CourseEndsComplete;
     protected ArrayList<String> m_Footnotes;
     protected Boolean m_IsTrue;
+    protected Exception m_ProofError;
+    protected String m_Source;
     protected HashMap<String, String> m_GlobalSubstitutions;
     protected HashMap<LeadType,String> m_OverriddenCalls;
     protected ArrayList<HashMap<String, String>> m_Substitutions;
     protected boolean m_PadPlainLeads;
+    protected int m_IncrementalProofLimit;
     
-    public AbstractComposition(final HashMap<String, Method> pr_MethodLibrary, final int pr_Changes) {
+    public AbstractComposition(final MethodTable pr_MethodLibrary, final int pr_Changes) {
         m_MethodTable = pr_MethodLibrary;
         m_Changes = pr_Changes;
         m_MethodChanges = new ArrayList<Method>();
@@ -37,13 +42,12 @@ public abstract class AbstractComposition {
         m_GlobalSubstitutions = new HashMap<String, String>();
         m_OverriddenCalls = new HashMap<LeadType, String>();
         m_Substitutions.add(new HashMap<String, String>());
-        m_IsTrue = null;
+        invalidateProof();
         m_PadPlainLeads = true;
     }
 
     public void setChanges(final int pr_Changes) {
         m_Changes = pr_Changes;
-        m_IsTrue = null;
     }
 
     public int getChanges() {
@@ -52,7 +56,7 @@ public abstract class AbstractComposition {
 
     public void setFirstMethod(final Method pr_Method) {
         m_FirstMethod = pr_Method;
-        m_IsTrue = null;
+        invalidateProof();
     }
 
     public Method getFirstMethod() {
@@ -61,7 +65,7 @@ public abstract class AbstractComposition {
 
     public void setFirstChange(final String pr_FirstChange) {
         m_FirstChange = pr_FirstChange;
-        m_IsTrue = null;
+        invalidateProof();
     }
 
     public String getFirstChange() {
@@ -85,7 +89,7 @@ public abstract class AbstractComposition {
         }
         
         m_MethodChanges.add(methodToAdd);
-        m_IsTrue = null;
+        invalidateProof();
         
     }
 
@@ -116,14 +120,116 @@ public abstract class AbstractComposition {
     
     public abstract int getNumRows();
     
+    /**
+     * @param pr_Source the text the composition was read from
+     */
+    public void setSource(final String pr_Source) {
+        m_Source = pr_Source;
+    }
+    
+    /**
+     * @return the text the composition was read from, without comments or trailing
+     *         white space and preceded by the definitions of the methods it was read
+     *         with (its labelled methods and its first method); or null if it wasn't
+     *         read from a file
+     */
+    public String getSource() {
+        return m_Source;
+    }
+    
+    /**
+     * @return the methods the composition may refer to: its first method, the methods
+     *         it changes to and the methods labelled in its file
+     */
+    public Set<Method> getMethods() {
+        final LinkedHashSet<Method> methods = new LinkedHashSet<Method>();
+        if (m_FirstMethod != null) {
+            methods.add(m_FirstMethod);
+        }
+        methods.addAll(m_MethodChanges);
+        methods.addAll(m_MethodTable.getMethods());
+        return methods;
+    }
+    
+    /**
+     * Proves the composition, if it hasn't been proved since it was last changed. The
+     * result of the proof (its truth, number of changes and course ends, or the error
+     * found proving it) is kept until the rows, footnotes or methods of the composition
+     * change, so asking again doesn't prove it again.
+     * @return whether the composition is true
+     * @throws CompositionDefinitionException if the composition can't be proved
+     * @throws FalseGridException if the composition is false
+     */
     public boolean isTrue() throws CompositionDefinitionException, FalseGridException
     {
         if (m_IsTrue == null) {
-            prove();
+            try {
+                prove();
+            } catch (CompositionDefinitionException | FalseGridException e) {
+                m_IsTrue = false;
+                m_ProofError = e;
+                throw e;
+            }
+        } else if (m_ProofError instanceof CompositionDefinitionException) {
+            throw (CompositionDefinitionException) m_ProofError;
+        } else if (m_ProofError instanceof FalseGridException) {
+            throw (FalseGridException) m_ProofError;
         }
         return m_IsTrue;
     }
     
+    /**
+     * Takes the result of an earlier proof of the same composition, rather than proving
+     * it again.
+     * @param pr_Proof the result
+     */
+    void restoreProof(final ProofCache.Entry pr_Proof) {
+        m_IsTrue = pr_Proof.isTrue();
+        m_ProofError = pr_Proof.getError();
+        m_Changes = pr_Proof.getChanges();
+        if (pr_Proof.getFirstChange() != null) {
+            m_FirstChange = pr_Proof.getFirstChange();
+        }
+        m_CourseEnds.clear();
+        m_CourseEndsComplete.clear();
+        for (int i = 0; i < pr_Proof.getNumCourseEnds(); i++) {
+            m_CourseEnds.add(pr_Proof.getCourseEnd(i));
+            m_CourseEndsComplete.add(pr_Proof.isCourseEndComplete(i));
+        }
+    }
+    
+    /**
+     * @return the number of plain leads the last proof added to bring the composition
+     *         round
+     */
+    int getAddedPlainLeads() {
+        return 0;
+    }
+    
+    /**
+     * @return the number of course ends found by the last proof
+     */
+    int getNumCourseEnds() {
+        return m_CourseEnds.size();
+    }
+    
+    /**
+     * Discards the result of the last proof, so the composition is proved again the next
+     * time its truth is asked for.
+     */
+    public void invalidateProof() {
+        m_IsTrue = null;
+        m_ProofError = null;
+    }
+    
+    /**
+     * Proves the composition, recording its number of changes and course ends. Use
+     * {@link #isTrue()} to prove it only if it hasn't already been proved.
+     * @return the proved grid
+     * @throws CompositionDefinitionException if the composition can't be proved
+     * @throws FalseGridException if the composition is false
+     */
+    
     public abstract Grid prove() throws CompositionDefinitionException, FalseGridException;
 
     protected void simplifyCourseEnds(final Method pr_Method) {
@@ -217,7 +323,7 @@ public abstract class AbstractComposition {
     public void addFootnote(final String pr_Footnote) {
         
         m_Footnotes.add(pr_Footnote);
-        m_IsTrue = null;
+        invalidateProof();
         int numParts = m_Substitutions.size();
 
         Matcher matcher = AbstractCompositionVisitor.FOOTNOTE_XPART_REGEX.matcher(pr_Footnote);
@@ -419,10 +525,8 @@ public abstract class AbstractComposition {
     
     public String getMethodLabel(final Method pr_Method)
     {
-        for (Entry<String, Method> entry : m_MethodTable.entrySet()) {
-            if (entry.getValue().equals(pr_Method)) {
-                return entry.getKey();
-            }
+        if (m_MethodTable.containsMethod(pr_Method)) {
+            return m_MethodTable.getLabel(pr_Method);
         }
         return "?";
     }
@@ -496,5 +600,60 @@ public abstract class AbstractComposition {
 
 	public void setPadPlainLeads(boolean m_PadPlainLeads) {
 		this.m_PadPlainLeads = m_PadPlainLeads;
+		invalidateProof();
+	}
+	
+	/**
+	 * Sets the longest the composition can be, which sets how many times each row may
+	 * occur while it is proved as it is expanded. Without it the limit is worked out
+	 * from the rows of the composition.
+	 * @param pr_MaxChanges the longest the composition can be, or 0 to work it out from
+	 *                      the rows
+	 */
+	public void setIncrementalProofLimit(final int pr_MaxChanges) {
+	    m_IncrementalProofLimit = pr_MaxChanges;
+	    invalidateProof();
+	}
+	
+	/**
+	 * Starts proving the grid as it is built, so that proving stops at the first lead
+	 * which repeats a row (see {@link Grid#checkTruth()}). Unless a limit has been set,
+	 * the longest the composition can be is taken as the most leads it can be expanded
+	 * to times its longest lead.
+	 * @param pu_Grid the grid being built
+	 * @param pr_MaxLeads the most leads the composition can be expanded to, including
+	 *                    any added to bring it round
+	 * @param pr_Methods the methods the composition is expanded from
+	 */
+	protected void startIncrementalProof(final Grid pu_Grid, final long pr_MaxLeads, final Collection<Method> pr_Methods) {
+	    long maxChanges = m_IncrementalProofLimit;
+	    if (maxChanges == 0) {
+	        int longestLead = 0;
+	        for (Method method : pr_Methods) {
+	            for (int i = 0; i < method.getPlaceNotation().length; i++) {
+	                longestLead = Math.max(longestLead, method.getLeadNotation(LeadType.PLAIN, i).size());
+	            }
+	        }
+	        maxChanges = pr_MaxLeads * longestLead;
+	    }
+	    pu_Grid.proveIncrementally(maxChanges);
+	}
+	
+	/**
+	 * Gives the most leads {@link #finishFinalCourse(Method[], int, int, Grid, int, boolean)}
+	 * can add to bring the composition round: a course of each method, with a lead for
+	 * the start offset and the lead tried in case rounds comes in the next few blows.
+	 * @param pr_Methods the methods the composition is expanded from
+	 * @return the number of leads, or 0 if the composition isn't brought round
+	 */
+	protected long getMaxFinishingLeads(final Collection<Method> pr_Methods) {
+	    if (!m_PadPlainLeads) {
+	        return 0;
+	    }
+	    long leads = 2;
+	    for (Method method : pr_Methods) {
+	        leads += method.getStage().getBells() * method.getPlaceNotation().length;
+	    }
+	    return leads;
 	}
 }
@@ -7,8 +7,6 @@ import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import linegenerator.core.exceptions.CompositionDefinitionException;
@@ -32,32 +30,22 @@ public abstract class AbstractCompositionVisitor {
     }
 
     private static final String SHORT_HAND_PREFIX = "$";
-    private static final String COMMENT_PREFIX = "#";
+    protected static final String COMMENT_PREFIX = "#";
     private static final String SUBSTITUTION_CHARS = "[\\*\\+]";
     
-    private static final String COURSE_END_PATTERN = "[\\(]?[\\dETA-Z]{3,}[\\)]?";
-    private static final String METHOD_LABEL_PATTERN = "(?:[A-Za-z]{1,2})?";
-    private static final String METHOD_LIST_PATTERN = "[\\(]?[A-Z][a-z]?\\*?[\\)]?";
-    
-    private static final Pattern METHOD_LINE_REGEX = Pattern.compile("\\[(?:(" + METHOD_LABEL_PATTERN + "?)\\=)?([\\w\\s\\'\\)\\(\\.]+)\\,[\\s]*([\\d]+)\\]");
-    private static final Pattern SIMPLE_HEADER_REGEX = Pattern.compile("(?:\\t(" + COURSE_END_PATTERN + "))?\\t*((?:" + METHOD_LIST_PATTERN + ")+)?");
-    private static final Pattern SIMPLE_ROW_REGEX = Pattern.compile("([\\-s]" + SUBSTITUTION_CHARS + "?)?(?:\\t(" + COURSE_END_PATTERN + "))?\\t*([0-9]{1,2}|(?:" + METHOD_LIST_PATTERN + ")+)?");
-    private static final Pattern TABLE_ROW_REGEX = Pattern.compile("((?:(?:[\\(]?(?:[1-9\\-sx]|ss)?[" + SUBSTITUTION_CHARS + "\\)]?(?:\\t+|$))+(?:[\\(]?(?:[1-9\\-sx]|ss)[" + SUBSTITUTION_CHARS + "\\)]?(?:\\t+|$))?)|[1-9]?[A-Z](?:\\t+|$)|[a-rt-z](?:\\t+|$))(?:((?:" + METHOD_LIST_PATTERN + ")+)(?:\\t+|$))?(?:(" + COURSE_END_PATTERN + ")(?:\\t+|$))?(?:\\[([0-9]+)\\](?:\\t|$))?((?:\\:[A-Z](?:\\t+|$))*)?");
-    private static final Pattern CHANGES_REGEX = Pattern.compile("(\\d+)( \\([\\d\\w\\-]+\\))?");
-    
     public static final Pattern FOOTNOTE_XPART_REGEX = Pattern.compile("([0-9]+) (P|p)art[.]?");
     public static final Pattern FOOTNOTE_SUBSTITUTIONS_REGEX = Pattern.compile("([s\\-0-9ETA-Z]" + SUBSTITUTION_CHARS + ")\\s*=\\s*([\\-s]+)(?: in part[s]? ([0-9]{1,2}(?:(?:\\,| and) [0-9]{1,2})*)(?: only)?)?.*");
     public static final Pattern FOOTNOTE_CALL_OVERRIDE_REGEX = Pattern.compile("([s\\-])\\s*=\\s*([0-9\\.]+).*");
     public static final Pattern FOOTNOTE_SELECTIVE_PARTS_REGEX = Pattern.compile("(Omit )?([-s0-9]*" + SUBSTITUTION_CHARS + "?)(?: in part[s]? ([0-9]{1,2}(?:(?:\\,| and) [0-9]{1,2})*)(?: only)?)?.*");    
     protected File m_InputFile;
     protected File m_OutputFile;
-    protected Method[] m_MethodLibrary;
-    protected HashMap<String, Method> m_MethodTable;
+    protected MethodLibrary m_MethodLibrary;
+    protected MethodTable m_MethodTable;
     protected Method m_LastMethod;
     
-    public AbstractCompositionVisitor(final Method[] pr_MethodLibrary) {
+    public AbstractCompositionVisitor(final MethodLibrary pr_MethodLibrary) {
         m_MethodLibrary = pr_MethodLibrary;
-        m_MethodTable = new HashMap<String, Method>();
+        m_MethodTable = new MethodTable();
         m_LastMethod = null;
     }
     
@@ -78,7 +66,7 @@ public abstract class AbstractCompositionVisitor {
         String courseEnd;
         boolean isCompleteCourseEnd;
         int compositionRow = 0;
-        Matcher matcher;
+        String[] parts;
         int lineNumber = 0;
         String firstChange = null;
         int plainLeadCount;
@@ -106,37 +94,17 @@ public abstract class AbstractCompositionVisitor {
                     break;
                 }
                 
-                matcher = METHOD_LINE_REGEX.matcher(line);
-                if (matcher.matches()) {
+                parts = CompositionLexer.matchMethodLine(line);
+                if (parts != null) {
                     
                     lineStarted(lineNumber, line);
-                    Stage foundStage = Stage.getStage(matcher.group(matcher.groupCount()));
-                    foundMethod = false;
-                    for (Method m : m_MethodLibrary) {
-                        if (m.getStage() == foundStage) {
-                            String foundName = matcher.group(matcher.groupCount() - 1);
-                            if (m.getMethodType().shouldDisplayNameInMethod()) {
-                                if (!foundName.endsWith(m.getMethodType().toString())) {
-                                    continue;
-                                } else {
-                                    foundName = foundName.substring(0, foundName.indexOf(m.getMethodType().toString()));
-                                }
-                            }
-                            if (foundName.trim().equals(m.getName())) {
-                                if (matcher.groupCount() == 3) {
-                                    methodFound(m, matcher.group(1));
-                                } else {
-                                    methodFound(m, null);
-                                }
-                                m_LastMethod = m;
-                                foundMethod = true;
-                                break;
-                            }
-                        }
-                    }
-                    if (!foundMethod) {
+                    Stage foundStage = Stage.getStage(parts[3]);
+                    final Method m = m_MethodLibrary.getMethodByReference(parts[2], foundStage);
+                    if (m == null) {
                         throw new CompositionDefinitionException("Unrecognised method reference: " + line);
                     }
+                    methodFound(m, parts[1]);
+                    m_LastMethod = m;
                     lineFinished();
                     break;
                     
@@ -148,10 +116,10 @@ public abstract class AbstractCompositionVisitor {
                 
                     currentState = State.IN_COMPOSITION_HEADER;
                     
-                    matcher = CHANGES_REGEX.matcher(line);
-                    if (matcher.matches()) {
+                    final String changes = CompositionLexer.matchChanges(line);
+                    if (changes != null) {
                         lineStarted(lineNumber, line);
-                        changesFound(Integer.parseInt(matcher.group(1)));
+                        changesFound(Integer.parseInt(changes));
                         lineFinished();
                         break;
                     }
@@ -172,10 +140,10 @@ public abstract class AbstractCompositionVisitor {
                 if (line.startsWith(SHORT_HAND_PREFIX)) {
                     compositionType = CompositionType.SHORT_HAND;
                 } else if ((LeadType.getLeadType(line.substring(0, 1).trim()) != null) ||
-                           ((line.length() == 1) && (line.matches("[A-Z]")))) {
+                           ((line.length() == 1) && (line.charAt(0) >= 'A') && (line.charAt(0) <= 'Z'))) {
                     compositionType = CompositionType.SIMPLE;
                 } else {
-                    if (line.matches("[0-9ETSLQ\t][0-9ETSLQH\t]*")) {
+                    if (CompositionLexer.isLeadCountHeader(line)) {
                         // Numbers and Stedman calls only in header
                         compositionType = CompositionType.ROW_COUNT_TABLE;
                     } else {
@@ -192,9 +160,9 @@ public abstract class AbstractCompositionVisitor {
                     
                     lineStarted(lineNumber, line);
 
-                    headers = line.split("\\t");
-                    if (headers[headers.length - 1].matches("\\(?([\\dETA-Z]{3,})\\)?")) {
-                        firstChange = headers[headers.length - 1].replaceAll("[\\(\\)]", "");
+                    headers = CompositionLexer.split(line, '\t');
+                    if (CompositionLexer.isCourseEnd(headers[headers.length - 1])) {
+                        firstChange = CompositionLexer.remove(headers[headers.length - 1], "()");
                         headers = Arrays.copyOfRange(headers, 0, headers.length - 1);
                     } else {
                         firstChange = null;
@@ -207,19 +175,15 @@ public abstract class AbstractCompositionVisitor {
                     
                 } else if (compositionType == CompositionType.SIMPLE) {
                     
-                    matcher = SIMPLE_HEADER_REGEX.matcher(line);
-                    if (matcher.matches()) {
+                    parts = CompositionLexer.matchSimpleHeader(line);
+                    if (parts != null) {
 
-                        if (matcher.groupCount() == 2) {
-                            firstChange = matcher.group(1);
-                        } else {
-                            firstChange = null;
-                        }
+                        firstChange = parts[1];
                         
                         foundMethod = false;
-                        String lastColumn = matcher.group(matcher.groupCount());
-                        if ((lastColumn != null) && lastColumn.matches("[A-Za-z]{1,2}\\*?")) {
-                            lastColumn = lastColumn.replaceAll("\\*","");
+                        String lastColumn = parts[2];
+                        if ((lastColumn != null) && CompositionLexer.isMethodLabel(lastColumn, true)) {
+                            lastColumn = CompositionLexer.remove(lastColumn, "*");
                             if (m_MethodTable.containsKey(lastColumn)) {
                                 m_LastMethod = m_MethodTable.get(lastColumn);
                                 foundMethod = true;
@@ -261,15 +225,15 @@ public abstract class AbstractCompositionVisitor {
 
                     lineStarted(lineNumber, line);
                     
-                    matcher = TABLE_ROW_REGEX.matcher(line);
-                    if (matcher.matches()) {
+                    parts = CompositionLexer.matchTableRow(line);
+                    if (parts != null) {
                 
                         ArrayList<String> methodLabels = new ArrayList<String>();
                         ArrayList<Method> methods = new ArrayList<Method>();
 
-                        if (matcher.group(2) != null) {
+                        if (parts[2] != null) {
                             
-                            String methodsString = matcher.group(2).replaceAll("[\\(|\\)]", "");
+                            String methodsString = CompositionLexer.remove(parts[2], "()");
                             methodLabel = null;
                             for (char m : methodsString.toCharArray()) {
                                 
@@ -296,25 +260,11 @@ public abstract class AbstractCompositionVisitor {
                                 }
                             }
                             
-                            Pattern pat = Pattern.compile("([A-Z][a-z]?)+");
-                            Matcher methodsMatcher = pat.matcher(methodsString);
-                            if (methodsMatcher.matches()) {
-                                for (int i = 1; i < methodsMatcher.groupCount(); i++) {
-                                    if (m_MethodTable.containsKey(methodsMatcher.group(i))) {
-                                        methodLabels.add(methodsMatcher.group(i));
-                                        methods.add(m_MethodTable.get(methodsMatcher.group(i)));
-                                        methodLabel = null;
-                                    } else {
-                                        throw new CompositionDefinitionException("The method label \"" + methodsMatcher.group(i) + "\" is undefined.");
-                                    }
-                                }
-                            }
-                            
                         } else {
                             methods.add(m_LastMethod);
                         }
 
-                        String[] calls = matcher.group(1).split("\\t");
+                        String[] calls = CompositionLexer.split(parts[1], '\t');
                         if (calls.length == 0) {
                             tableCalls = null;
                             labelledPart = null;
@@ -337,22 +287,22 @@ public abstract class AbstractCompositionVisitor {
                         
                         courseEnd = null;
                         isCompleteCourseEnd = true;
-                        if (matcher.group(3) != null) {
-                            courseEnd = matcher.group(3);
+                        if (parts[3] != null) {
+                            courseEnd = parts[3];
                             if (courseEnd.startsWith("(")) {
                                 isCompleteCourseEnd = false;
                                 courseEnd = courseEnd.substring(1, courseEnd.length() - 1);
                             }
                         }
                         
-                        if (matcher.group(4) != null) {
-                            numLeads = Integer.parseInt(matcher.group(4));
+                        if (parts[4] != null) {
+                            numLeads = Integer.parseInt(parts[4]);
                         } else {
                             numLeads = -1;
                         }
                         
-                        if (!matcher.group(5).equals("")) {
-                            partLabels = matcher.group(5).replaceAll("\t", "").substring(1).split(":");
+                        if (!parts[5].equals("")) {
+                            partLabels = CompositionLexer.split(CompositionLexer.remove(parts[5], "\t").substring(1), ':');
                             compositionPartLabels.addAll(Arrays.asList(partLabels));
                         } else {
                             partLabels = new String[0];
@@ -376,13 +326,13 @@ public abstract class AbstractCompositionVisitor {
 
                     lineStarted(lineNumber, line);
                 
-                    matcher = SIMPLE_ROW_REGEX.matcher(line);
-                    if (matcher.matches()) {
+                    parts = CompositionLexer.matchSimpleRow(line);
+                    if (parts != null) {
                         
                         courseEnd = null;
                         isCompleteCourseEnd = true;
-                        if (matcher.group(2) != null) {
-                            courseEnd = matcher.group(2);
+                        if (parts[2] != null) {
+                            courseEnd = parts[2];
                             if (courseEnd.startsWith("(")) {
                                 isCompleteCourseEnd = false;
                                 courseEnd = courseEnd.substring(1, courseEnd.length() - 1);
@@ -392,23 +342,23 @@ public abstract class AbstractCompositionVisitor {
                         plainLeadCount = 1;
                         methodLabel = null;
     
-                        if (matcher.group(3) != null) {
-                            if (matcher.group(3).matches("\\d+")) {
-                                plainLeadCount = Integer.parseInt(matcher.group(3));
-                            } else if (matcher.group(3).matches("[A-Za-z]{1,2}")) {
-                                methodLabel = matcher.group(3).replaceAll("\\*","");
+                        if (parts[3] != null) {
+                            if (CompositionLexer.isNumber(parts[3])) {
+                                plainLeadCount = Integer.parseInt(parts[3]);
+                            } else if (CompositionLexer.isMethodLabel(parts[3], false)) {
+                                methodLabel = parts[3];
                                 if (m_MethodTable.containsKey(methodLabel)) {
                                     m_LastMethod = m_MethodTable.get(methodLabel);
                                 } else {
-                                    throw new CompositionDefinitionException("The method label \"" + matcher.group(3) + "\" is undefined.");
+                                    throw new CompositionDefinitionException("The method label \"" + parts[3] + "\" is undefined.");
                                 }
                             } else {
-                                throw new CompositionDefinitionException("The plain lead count column contains an unexpected character: " + matcher.group(3));
+                                throw new CompositionDefinitionException("The plain lead count column contains an unexpected character: " + parts[3]);
                             }
                         }
                             
                         compositionRowFound(compositionRow++,
-                                            matcher.group(1),
+                                            parts[1],
                                             methodLabel,
                                             m_LastMethod,
                                             courseEnd,
@@ -457,9 +407,9 @@ public abstract class AbstractCompositionVisitor {
                     
                     // Check whether the line looks like a footnote
                     // (The FOOTNOTE_SELECTIVE_PARTS_REGEX is too inclusive, so checking for key words in this only.)
-                    if (line.matches(FOOTNOTE_XPART_REGEX.pattern()) ||
-                        line.matches(FOOTNOTE_SUBSTITUTIONS_REGEX.pattern()) || 
-                        line.matches(FOOTNOTE_CALL_OVERRIDE_REGEX.pattern()) ||
+                    if (CompositionLexer.isPartsFootnote(line) ||
+                        CompositionLexer.isSubstitutionFootnote(line) || 
+                        CompositionLexer.isCallOverrideFootnote(line) ||
                         (line.contains("Omit") || line.contains("part") || line.contains("and") || line.contains("only")) ||
                         FootnoteReferenceCompositionRow.isFootnote(line)) {
                         foundFootnote(line);
@@ -0,0 +1,58 @@
+package linegenerator.core;
+
+import java.io.File;
+import java.io.IOException;
+
+import linegenerator.core.exceptions.MethodGenerationException;
+
+/**
+ * Writes the line of a method, laid out by {@link LineFactory}, to a file in a
+ * particular format. A renderer is shared by every thread drawing lines, so it must not
+ * keep anything from one line to the next.
+ *
+ * @author Tom
+ */
+public abstract class AbstractLineRenderer {
+
+    /**
+     * Creates a renderer for a format.
+     * @param pr_Format the format: pdf, svg or png
+     * @return the renderer, or null if the format isn't known
+     */
+    public static AbstractLineRenderer forFormat(final String pr_Format) {
+        switch (pr_Format.toLowerCase()) {
+        case "pdf":
+            return new PdfLineRenderer();
+        case "svg":
+            return new SvgLineRenderer();
+        case "png":
+            return new PngLineRenderer(PngLineRenderer.DEFAULT_SCALE);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * @return the extension of the files written, including the dot
+     */
+    public abstract String getFileExtension();
+
+    /**
+     * @return the format and any settings of the renderer which change what is written
+     */
+    public String getSettings() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Writes a line to a file.
+     * @param pr_Factory the factory which laid out the line, to draw it
+     * @param pr_Page the layout of the line
+     * @param pr_File the file to write
+     * @throws IOException if the file can't be written
+     * @throws MethodGenerationException if the line can't be drawn
+     */
+    abstract void render(final LineFactory pr_Factory, final LineFactory.Page pr_Page, final File pr_File)
+        throws IOException, MethodGenerationException;
+
+}
@@ -2,13 +2,17 @@ package linegenerator.core;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import linegenerator.core.exceptions.InvalidPlaceNotationException;
 import linegenerator.core.exceptions.MethodGenerationException;
 
 public abstract class AbstractMethodGenerator {
     
-    private File m_OutputDir;
+    /** The directory files are written to, which is only created once one is written. */
+    protected final File m_OutputDir;
     
     public AbstractMethodGenerator(final File pr_OutputDir) {
         m_OutputDir = pr_OutputDir;
@@ -17,7 +21,56 @@ public abstract class AbstractMethodGenerator {
     public abstract boolean generate(final Method pr_Method, final boolean pr_Overwrite)
         throws IOException, MethodGenerationException, InvalidPlaceNotationException;
     
-    protected File getOutputDirectory() {
+    /**
+     * Gives the file a method is written to, without creating the output directory, so
+     * that it can be checked before the method is generated.
+     * @param pr_Method the method
+     * @return the file the method is written to
+     */
+    public abstract File getOutputFile(final Method pr_Method);
+    
+    /**
+     * @param pr_Method the method
+     * @return the settings, other than the definition of the method, which change what
+     *         is written for it
+     */
+    protected String getSettings(final Method pr_Method) {
+        return "";
+    }
+    
+    /**
+     * Calculates a hash of everything the file written for a method depends on: the
+     * generator, the definition of the method and the settings used to write it. The
+     * file only needs to be written again once the hash changes.
+     * @param pr_Method the method
+     * @return the hash, in hexadecimal
+     */
+    public String getInputHash(final Method pr_Method) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final Charset utf8 = Charset.forName("UTF-8");
+        digest.update(getClass().getName().getBytes(utf8));
+        digest.update((byte) 0);
+        digest.update(pr_Method.getDefinition().getBytes(utf8));
+        digest.update((byte) 0);
+        digest.update(getSettings(pr_Method).getBytes(utf8));
+        
+        final StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hash.append(String.format("%02x", b));
+        }
+        return hash.toString();
+    }
+    
+    /**
+     * Creates the output directory if it doesn't exist, before a file is written to it.
+     * @return the output directory
+     */
+    protected synchronized File getOutputDirectory() {
         if (!m_OutputDir.exists()) {
             m_OutputDir.mkdir();
         }
@@ -16,7 +16,7 @@ public abstract class AbstractTableComposition extends AbstractComposition {
     protected HashMap<Method, ArrayList<HashMap<String, String>>> m_BobLeadTransitions = new HashMap<Method, ArrayList<HashMap<String, String>>>();
     protected HashMap<Method, ArrayList<HashMap<String, String>>> m_SingleLeadTransitions = new HashMap<Method, ArrayList<HashMap<String, String>>>();
     
-    public AbstractTableComposition(final HashMap<String, Method> pr_MethodLibrary, final int pr_Changes) {
+    public AbstractTableComposition(final MethodTable pr_MethodLibrary, final int pr_Changes) {
         super(pr_MethodLibrary, pr_Changes);
         m_Rows = new ArrayList<TableCompositionRow>();
     }
@@ -26,7 +26,7 @@ public abstract class AbstractTableComposition extends AbstractComposition {
             pr_Headers[i] = pr_Headers[i].toUpperCase();
         }
         m_Headers = pr_Headers;
-        m_IsTrue = null;
+        invalidateProof();
     }
 
     public String[] getHeaders() {
@@ -45,7 +45,7 @@ public abstract class AbstractTableComposition extends AbstractComposition {
         }
         
         m_Rows.add(pr_Row);
-        m_IsTrue = null;
+        invalidateProof();
     }
 
     public String[] getCalls(final int pr_Row) {
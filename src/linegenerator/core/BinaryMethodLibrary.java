@@ -0,0 +1,429 @@
+package linegenerator.core;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import linegenerator.core.exceptions.InvalidPlaceNotationException;
+import linegenerator.core.exceptions.MethodDefinitionException;
+
+/**
+ * A method library compiled to a binary file, which is memory mapped rather than read
+ * so that opening even a very large library takes next to no time.
+ *
+ * The file holds the definition of each method as a record, the offset of each record
+ * in library order, and an index of the methods sorted by stage, type and name. A
+ * method is only created from its record the first time it is asked for, and methods
+ * are found by name through the index without creating any others.
+ *
+ * The file is laid out as:
+ * <pre>
+ * int     magic number
+ * int     version
+ * int     number of methods (n)
+ * int[n]  offset of each record, in library order
+ * n * 8   index entries, each: byte stage, byte type, short unused, int library position
+ * ...     records, each: name, type code, byte stage, place notation, lead end, bob
+ *         lead end, single lead end, int start bell (0 if worked out from the place
+ *         notation), int start offset, short number of calling position amendments
+ *         followed by each normal and amended position
+ * </pre>
+ * Strings are written as a short length (-1 for none) followed by UTF-8 bytes.
+ *
+ * @author Tom
+ */
+public final class BinaryMethodLibrary {
+
+    /** The extension of compiled library files. */
+    public static final String FILE_EXTENSION = ".mlib";
+
+    /** Identifies a compiled library. */
+    private static final int MAGIC = 0x4C474D4C;
+
+    /**
+     * The version of the file format (records the order of {@link MethodType}s in the
+     * index). Version 1 wrote the start bell worked out from the place notation rather
+     * than as given, which changed the definition of the methods.
+     */
+    private static final int VERSION = 2;
+
+    /** The size of the header (in bytes). */
+    private static final int HEADER_SIZE = 12;
+
+    /** The size of an index entry (in bytes). */
+    private static final int INDEX_ENTRY_SIZE = 8;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The mapped file. Only read with absolute gets, so may be shared between threads. */
+    private final ByteBuffer m_Buffer;
+
+    /** The number of methods in the library. */
+    private final int m_Size;
+
+    /** The offset of the index in the file. */
+    private final int m_IndexOffset;
+
+    /** The methods created so far, in library order. */
+    private final Method[] m_Methods;
+
+    /**
+     * Constructor.
+     * @param pr_Buffer the mapped file
+     * @param pr_Size the number of methods in the library
+     */
+    private BinaryMethodLibrary(final ByteBuffer pr_Buffer, final int pr_Size) {
+        m_Buffer = pr_Buffer;
+        m_Size = pr_Size;
+        m_IndexOffset = HEADER_SIZE + pr_Size * 4;
+        m_Methods = new Method[pr_Size];
+    }
+
+    /**
+     * Opens a compiled library.
+     * @param pr_File the file
+     * @return the library
+     * @throws IOException if the file can't be read or isn't a compiled library
+     */
+    public static BinaryMethodLibrary open(final File pr_File) throws IOException {
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(pr_File.toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid once the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a compiled method library: " + pr_File);
+        } else if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Compiled method library is out of date, recompile it: " + pr_File);
+        }
+        return new BinaryMethodLibrary(buffer, buffer.getInt(8));
+    }
+
+    /**
+     * Compiles a method library to a file.
+     * @param pr_Methods the methods, in library order
+     * @param pr_File the file to write
+     * @throws IOException if the file can't be written
+     */
+    public static void write(final Method[] pr_Methods, final File pr_File) throws IOException {
+
+        final int recordsOffset = HEADER_SIZE + pr_Methods.length * (4 + INDEX_ENTRY_SIZE);
+        final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        final DataOutputStream recordOutput = new DataOutputStream(records);
+        final int[] offsets = new int[pr_Methods.length];
+        for (int i = 0; i < pr_Methods.length; i++) {
+            offsets[i] = recordsOffset + recordOutput.size();
+            writeRecord(recordOutput, pr_Methods[i]);
+        }
+
+        final Integer[] index = new Integer[pr_Methods.length];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = i;
+        }
+        Arrays.sort(index, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer pr_First, final Integer pr_Second) {
+                final Method first = pr_Methods[pr_First];
+                final Method second = pr_Methods[pr_Second];
+                return compareKeys(first.getStage().getBells(), first.getMethodType().ordinal(), first.getName(),
+                                   second.getStage().getBells(), second.getMethodType().ordinal(), second.getName());
+            }
+        });
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(pr_File)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(pr_Methods.length);
+            for (int offset : offsets) {
+                output.writeInt(offset);
+            }
+            for (int position : index) {
+                output.writeByte(pr_Methods[position].getStage().getBells());
+                output.writeByte(pr_Methods[position].getMethodType().ordinal());
+                output.writeShort(0);
+                output.writeInt(position);
+            }
+            records.writeTo(output);
+        }
+    }
+
+    /**
+     * @return the number of methods in the library
+     */
+    public int size() {
+        return m_Size;
+    }
+
+    /**
+     * Gets a method, creating it from its record the first time it is asked for.
+     * @param pr_Index the position of the method in the library
+     * @return the method
+     * @throws MethodDefinitionException if the record is not a valid method
+     */
+    public synchronized Method getMethod(final int pr_Index) throws MethodDefinitionException {
+        if (m_Methods[pr_Index] == null) {
+            m_Methods[pr_Index] = readRecord(m_Buffer.getInt(HEADER_SIZE + pr_Index * 4));
+        }
+        return m_Methods[pr_Index];
+    }
+
+    /**
+     * Finds a method through the index.
+     * @param pr_Name the name of the method
+     * @param pr_Stage the stage of the method
+     * @param pr_MethodType the type of the method
+     * @return the method, or null if it is not in the library
+     * @throws MethodDefinitionException if the record is not a valid method
+     */
+    public Method getMethod(final String pr_Name, final Stage pr_Stage, final MethodType pr_MethodType) throws MethodDefinitionException {
+        final int position = find(pr_Name, pr_Stage.getBells(), pr_MethodType.ordinal());
+        return position >= 0 ? getMethod(position) : null;
+    }
+
+    /**
+     * Finds the methods of every type with a name through the index.
+     * @param pr_Name the name of the methods
+     * @param pr_Stage the stage of the methods
+     * @return the methods, in library order
+     * @throws MethodDefinitionException if a record is not a valid method
+     */
+    public List<Method> getMethods(final String pr_Name, final Stage pr_Stage) throws MethodDefinitionException {
+        final ArrayList<Integer> positions = new ArrayList<Integer>();
+        for (MethodType type : MethodType.values()) {
+            final int position = find(pr_Name, pr_Stage.getBells(), type.ordinal());
+            if (position >= 0) {
+                positions.add(position);
+            }
+        }
+        Collections.sort(positions);
+        final ArrayList<Method> methods = new ArrayList<Method>();
+        for (int position : positions) {
+            methods.add(getMethod(position));
+        }
+        return methods;
+    }
+
+    /**
+     * Finds a method by its file identifier (see {@link Method#getFileIdentifier()}),
+     * looking only at the names of the methods of its stage and type in the index.
+     * @param pr_FileIdentifier the file identifier
+     * @return the position of the method in the library, or -1 if it is not there
+     */
+    int findByFileIdentifier(final String pr_FileIdentifier) {
+        int first = -1;
+        for (Stage stage : Stage.values()) {
+            for (MethodType type : MethodType.values()) {
+                if (!pr_FileIdentifier.startsWith(Method.getFileIdentifier(stage, type, ""))) {
+                    continue;
+                }
+                for (int i = lowerBound("", stage.getBells(), type.ordinal()); i < m_Size; i++) {
+                    final int entry = m_IndexOffset + i * INDEX_ENTRY_SIZE;
+                    if (m_Buffer.get(entry) != stage.getBells() || m_Buffer.get(entry + 1) != type.ordinal()) {
+                        break;
+                    }
+                    final int position = m_Buffer.getInt(entry + 4);
+                    if ((first < 0 || position < first)
+                            && Method.getFileIdentifier(stage, type, readString(m_Buffer.getInt(HEADER_SIZE + position * 4))).equals(pr_FileIdentifier)) {
+                        first = position;
+                    }
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Gets every method in the library, creating any not yet created.
+     * @return the methods, in library order
+     * @throws MethodDefinitionException if a record is not a valid method
+     */
+    public Method[] getMethods() throws MethodDefinitionException {
+        final Method[] methods = new Method[m_Size];
+        for (int i = 0; i < m_Size; i++) {
+            methods[i] = getMethod(i);
+        }
+        return methods;
+    }
+
+    /**
+     * Binary searches the index. Methods with the same key are in library order in the
+     * index, so the first of them in the library is found.
+     * @param pr_Name the name of the method
+     * @param pr_Bells the number of bells of the method
+     * @param pr_Type the ordinal of the type of the method
+     * @return the position of the method in the library, or -1 if it is not there
+     */
+    int find(final String pr_Name, final int pr_Bells, final int pr_Type) {
+        final int first = lowerBound(pr_Name, pr_Bells, pr_Type);
+        if (first == m_Size) {
+            return -1;
+        }
+        final int entry = m_IndexOffset + first * INDEX_ENTRY_SIZE;
+        final int position = m_Buffer.getInt(entry + 4);
+        if (compareKeys(m_Buffer.get(entry), m_Buffer.get(entry + 1), readString(m_Buffer.getInt(HEADER_SIZE + position * 4)),
+                        pr_Bells, pr_Type, pr_Name) != 0) {
+            return -1;
+        }
+        return position;
+    }
+
+    /**
+     * Binary searches the index for the first entry which is not before a key.
+     * @param pr_Name the name of the method
+     * @param pr_Bells the number of bells of the method
+     * @param pr_Type the ordinal of the type of the method
+     * @return the number of the entry in the index, or the number of methods if every
+     *         entry is before the key
+     */
+    private int lowerBound(final String pr_Name, final int pr_Bells, final int pr_Type) {
+        int low = 0;
+        int high = m_Size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final int entry = m_IndexOffset + middle * INDEX_ENTRY_SIZE;
+            final int position = m_Buffer.getInt(entry + 4);
+            if (compareKeys(m_Buffer.get(entry), m_Buffer.get(entry + 1), readString(m_Buffer.getInt(HEADER_SIZE + position * 4)),
+                            pr_Bells, pr_Type, pr_Name) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int compareKeys(final int pr_FirstBells, final int pr_FirstType, final String pr_FirstName,
+                                   final int pr_SecondBells, final int pr_SecondType, final String pr_SecondName) {
+        if (pr_FirstBells != pr_SecondBells) {
+            return pr_FirstBells < pr_SecondBells ? -1 : 1;
+        } else if (pr_FirstType != pr_SecondType) {
+            return pr_FirstType < pr_SecondType ? -1 : 1;
+        }
+        return pr_FirstName.compareTo(pr_SecondName);
+    }
+
+    private static void writeRecord(final DataOutputStream pu_Output, final Method pr_Method) throws IOException {
+
+        final StringBuilder notation = new StringBuilder();
+        for (int i = 0; i < pr_Method.getPlaceNotation().length; i++) {
+            if (i > 0) {
+                notation.append(',');
+            }
+            if (pr_Method.getNotationLabel()[i] != null) {
+                notation.append(pr_Method.getNotationLabel()[i]).append('=');
+            }
+            notation.append(pr_Method.getPlaceNotation()[i]);
+        }
+
+        writeString(pu_Output, pr_Method.getName());
+        writeString(pu_Output, pr_Method.getMethodType().getCode());
+        pu_Output.writeByte(pr_Method.getStage().getBells());
+        writeString(pu_Output, notation.toString());
+        writeString(pu_Output, join(pr_Method.getLeadEnd()));
+        writeString(pu_Output, join(pr_Method.getBobLeadEnd()));
+        writeString(pu_Output, join(pr_Method.getSingleLeadEnd()));
+        pu_Output.writeInt(pr_Method.getGivenStartBell());
+        pu_Output.writeInt(pr_Method.getStartOffset());
+        final Map<String, String> amendments = pr_Method.getCallingPositionAmendments();
+        pu_Output.writeShort(amendments.size());
+        for (Map.Entry<String, String> amendment : amendments.entrySet()) {
+            writeString(pu_Output, amendment.getKey());
+            writeString(pu_Output, amendment.getValue());
+        }
+    }
+
+    private Method readRecord(final int pr_Offset) throws MethodDefinitionException {
+        final int[] offset = { pr_Offset };
+        final String name = readString(offset);
+        final String type = readString(offset);
+        final int bells = m_Buffer.get(offset[0]++);
+        final String notation = readString(offset);
+        final String leadEnd = readString(offset);
+        final String bobLeadEnd = readString(offset);
+        final String singleLeadEnd = readString(offset);
+        final int startBell = m_Buffer.getInt(offset[0]);
+        final int startOffset = m_Buffer.getInt(offset[0] + 4);
+        final int amendments = m_Buffer.getShort(offset[0] + 8);
+        offset[0] += 10;
+
+        final Method method;
+        try {
+            method = new Method(name,
+                                MethodType.getMethodType(type),
+                                Stage.getStage("" + bells),
+                                notation,
+                                leadEnd,
+                                bobLeadEnd,
+                                singleLeadEnd,
+                                startBell,
+                                startOffset);
+        } catch (InvalidPlaceNotationException e) {
+            throw new MethodDefinitionException("Invalid place notation found for method " + name + " in compiled library: " + e.getMessage());
+        }
+        for (int i = 0; i < amendments; i++) {
+            method.addCallingPositionAmendment(readString(offset), readString(offset));
+        }
+        return method;
+    }
+
+    private static String join(final String[] pr_Parts) {
+        if (pr_Parts == null) {
+            return null;
+        }
+        final StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < pr_Parts.length; i++) {
+            if (i > 0) {
+                joined.append(',');
+            }
+            joined.append(pr_Parts[i]);
+        }
+        return joined.toString();
+    }
+
+    private static void writeString(final DataOutputStream pu_Output, final String pr_String) throws IOException {
+        if (pr_String == null) {
+            pu_Output.writeShort(-1);
+        } else {
+            final byte[] bytes = pr_String.getBytes(UTF8);
+            pu_Output.writeShort(bytes.length);
+            pu_Output.write(bytes);
+        }
+    }
+
+    private String readString(final int pr_Offset) {
+        return readString(new int[] { pr_Offset });
+    }
+
+    /**
+     * Reads a string from the mapped file.
+     * @param pu_Offset the offset of the string, which is moved on past it
+     * @return the string, or null if none was written
+     */
+    private String readString(final int[] pu_Offset) {
+        final int length = m_Buffer.getShort(pu_Offset[0]);
+        pu_Offset[0] += 2;
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = m_Buffer.get(pu_Offset[0] + i);
+        }
+        pu_Offset[0] += length;
+        return new String(bytes, UTF8);
+    }
+
+}
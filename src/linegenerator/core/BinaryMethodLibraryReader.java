@@ -0,0 +1,27 @@
+package linegenerator.core;
+
+import java.io.File;
+import java.io.IOException;
+
+import linegenerator.core.exceptions.MethodDefinitionException;
+
+/**
+ * Reads a compiled library (see {@link BinaryMethodLibrary}). A library read with
+ * {@link #readLibrary(File)} looks methods up through the index of the file and only
+ * creates those asked for.
+ * 
+ * @author Tom
+ */
+public class BinaryMethodLibraryReader extends MethodLibraryReader {
+
+    @Override
+    public Method[] read(final File pr_File) throws MethodDefinitionException, IOException {
+        return BinaryMethodLibrary.open(pr_File).getMethods();
+    }
+
+    @Override
+    public MethodLibrary readLibrary(final File pr_File) throws MethodDefinitionException, IOException {
+        return new MethodLibrary(BinaryMethodLibrary.open(pr_File));
+    }
+
+}
@@ -0,0 +1,128 @@
+package linegenerator.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records what each file in an output directory was generated from, as a hash of its
+ * inputs (see {@link AbstractMethodGenerator#getInputHash(Method)}), so that only the
+ * files whose method or settings have changed since are generated again.
+ *
+ * A file which the manifest has no record of is treated as it always has been: it is
+ * kept if it exists, unless files are being overwritten. Either way its hash is then
+ * recorded, a kept file being taken to be up to date, and from then on it is generated
+ * again whenever the hash changes.
+ *
+ * The manifest is kept in the output directory as a text file, with a line for each
+ * generated file giving its name and hash separated by a tab. It may be used by
+ * several threads generating files at once.
+ *
+ * @author Tom
+ */
+public class BuildManifest {
+
+    /** The name of the manifest file in the output directory. */
+    public static final String FILE_NAME = "manifest.txt";
+
+    private static final String COMMENT_PREFIX = "#";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The manifest file. */
+    private final File m_File;
+
+    /** The hash each file was generated from, keyed by file name. */
+    private final ConcurrentHashMap<String, String> m_Hashes;
+
+    /**
+     * Constructor, for an empty manifest.
+     * @param pr_File the manifest file
+     */
+    private BuildManifest(final File pr_File) {
+        m_File = pr_File;
+        m_Hashes = new ConcurrentHashMap<String, String>();
+    }
+
+    /**
+     * Reads the manifest of an output directory. A directory without one gives an
+     * empty manifest.
+     * @param pr_Directory the output directory
+     * @return the manifest
+     * @throws IOException if the manifest can't be read
+     */
+    public static BuildManifest read(final File pr_Directory) throws IOException {
+        final BuildManifest manifest = new BuildManifest(new File(pr_Directory, FILE_NAME));
+        if (!manifest.m_File.exists()) {
+            return manifest;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest.m_File), UTF8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int separator = line.lastIndexOf('\t');
+                if (!line.startsWith(COMMENT_PREFIX) && separator > 0) {
+                    manifest.m_Hashes.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest back to its output directory, with the files in name order.
+     * Nothing must be recorded while it is written.
+     * @throws IOException if the manifest can't be written
+     */
+    public void write() throws IOException {
+        if (!m_File.getParentFile().exists()) {
+            m_File.getParentFile().mkdir();
+        }
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(m_File), UTF8))) {
+            writer.write(COMMENT_PREFIX + " Generated files and a hash of what each was generated from");
+            writer.newLine();
+            for (Map.Entry<String, String> hash : new TreeMap<String, String>(m_Hashes).entrySet()) {
+                writer.write(hash.getKey());
+                writer.write('\t');
+                writer.write(hash.getValue());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * @param pr_File a generated file
+     * @param pr_Hash the hash of what the file would be generated from now
+     * @return whether the file was generated from something else and so must be
+     *         generated again; false if the file has no record
+     */
+    public boolean isStale(final File pr_File, final String pr_Hash) {
+        final String hash = m_Hashes.get(pr_File.getName());
+        return hash != null && !hash.equals(pr_Hash);
+    }
+
+    /**
+     * Records what a file has been generated from.
+     * @param pr_File the file
+     * @param pr_Hash the hash of what it was generated from
+     */
+    public void put(final File pr_File, final String pr_Hash) {
+        m_Hashes.put(pr_File.getName(), pr_Hash);
+    }
+
+    /**
+     * @return the number of files recorded
+     */
+    public int size() {
+        return m_Hashes.size();
+    }
+
+}
@@ -0,0 +1,129 @@
+package linegenerator.core;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The lines and labels already drawn on a page, bucketed into a grid of square cells so
+ * that a label can be checked against only what is drawn near it rather than against
+ * everything on the page.
+ *
+ * Each line and label is added to every cell its bounds cover; a check looks at the
+ * cells covered by the bounds of the new label.
+ *
+ * @author Tom
+ */
+public class CollisionIndex {
+
+    /** The width and height of a cell. */
+    private final double m_CellSize;
+
+    /** The indexes of the lines and labels in each cell, keyed by cell. */
+    private final HashMap<Long, ArrayList<Integer>> m_Cells;
+
+    /** The lines and labels, in the order they were added. */
+    private final ArrayList<Object> m_Shapes;
+
+    /** The check each shape was last looked at by, so a shape in several cells is only tested once. */
+    private int[] m_LastChecked;
+    private int m_Checks;
+
+    /**
+     * Constructor.
+     * @param pr_CellSize the width and height of a cell; best about the size of a label
+     */
+    public CollisionIndex(final double pr_CellSize) {
+        m_CellSize = pr_CellSize;
+        m_Cells = new HashMap<Long, ArrayList<Integer>>();
+        m_Shapes = new ArrayList<Object>();
+        m_LastChecked = new int[16];
+        m_Checks = 0;
+    }
+
+    /**
+     * Adds a line.
+     * @param pr_Line the line
+     */
+    public void add(final Line2D pr_Line) {
+        add(pr_Line, pr_Line.getBounds2D());
+    }
+
+    /**
+     * Adds a label.
+     * @param pr_Label the bounds of the label
+     */
+    public void add(final Rectangle2D pr_Label) {
+        add(pr_Label.getBounds2D(), pr_Label.getBounds2D());
+    }
+
+    /**
+     * @param pr_Label the bounds of a label
+     * @return whether the label would cross a line or overlap a label already added
+     */
+    public boolean intersects(final Rectangle2D pr_Label) {
+
+        m_Checks++;
+        final int minX = getCell(pr_Label.getMinX());
+        final int maxX = getCell(pr_Label.getMaxX());
+        final int minY = getCell(pr_Label.getMinY());
+        final int maxY = getCell(pr_Label.getMaxY());
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                final ArrayList<Integer> cell = m_Cells.get(getKey(x, y));
+                if (cell == null) {
+                    continue;
+                }
+                for (int index : cell) {
+                    if (m_LastChecked[index] == m_Checks) {
+                        continue;
+                    }
+                    m_LastChecked[index] = m_Checks;
+                    final Object shape = m_Shapes.get(index);
+                    if (shape instanceof Line2D) {
+                        if (pr_Label.intersectsLine((Line2D) shape)) {
+                            return true;
+                        }
+                    } else if (pr_Label.intersects((Rectangle2D) shape)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void add(final Object pr_Shape, final Rectangle2D pr_Bounds) {
+        final int index = m_Shapes.size();
+        m_Shapes.add(pr_Shape);
+        if (index == m_LastChecked.length) {
+            final int[] lastChecked = new int[index * 2];
+            System.arraycopy(m_LastChecked, 0, lastChecked, 0, index);
+            m_LastChecked = lastChecked;
+        }
+
+        final int maxX = getCell(pr_Bounds.getMaxX());
+        final int maxY = getCell(pr_Bounds.getMaxY());
+        for (int x = getCell(pr_Bounds.getMinX()); x <= maxX; x++) {
+            for (int y = getCell(pr_Bounds.getMinY()); y <= maxY; y++) {
+                final Long key = getKey(x, y);
+                ArrayList<Integer> cell = m_Cells.get(key);
+                if (cell == null) {
+                    cell = new ArrayList<Integer>();
+                    m_Cells.put(key, cell);
+                }
+                cell.add(index);
+            }
+        }
+    }
+
+    private int getCell(final double pr_Coordinate) {
+        return (int) Math.floor(pr_Coordinate / m_CellSize);
+    }
+
+    private static Long getKey(final int pr_X, final int pr_Y) {
+        return ((long) pr_X << 32) | (pr_Y & 0xFFFFFFFFL);
+    }
+
+}
@@ -0,0 +1,666 @@
+package linegenerator.core;
+
+import java.util.ArrayList;
+
+/**
+ * Splits the lines of a composition file into their parts, for
+ * {@link AbstractCompositionVisitor}, in a single pass over each line.
+ *
+ * Each kind of line is matched by a method which returns its parts numbered as the
+ * visitor uses them: part 0 is the whole line and a part which is missing from the line
+ * is null. Where a line could be split in more than one way (a course end made of
+ * capitals could also be a list of method labels, for example) the parts are tried in
+ * a fixed order and the first split which accounts for the whole line is used.
+ *
+ * The grammar of each kind of line is given with its method, with these terms:
+ * <pre>
+ * course end    optional '(', three or more of 0-9 A-Z, optional ')'
+ * method label  optional '(', A-Z, optional a-z, optional '*', optional ')'
+ * cell end      one or more tabs, or the end of the line
+ * </pre>
+ *
+ * @author Tom
+ */
+final class CompositionLexer {
+
+    private CompositionLexer() {
+    }
+
+    /**
+     * Matches a method line: '[', an optional label of up to two letters followed by
+     * '=', the method reference (letters, digits, '_', white space, quotes, brackets and
+     * dots), ',', optional white space, the stage and ']'.
+     * @param pr_Line the line
+     * @return the line, label, method reference and stage; or null if the line isn't a
+     *         method line
+     */
+    static String[] matchMethodLine(final String pr_Line) {
+
+        final int end = pr_Line.length() - 1;
+        if (end < 1 || pr_Line.charAt(0) != '[' || pr_Line.charAt(end) != ']') {
+            return null;
+        }
+
+        String label = null;
+        int position = 1;
+        for (int i = 1; i <= 3 && i < end; i++) {
+            if (pr_Line.charAt(i) == '=') {
+                label = pr_Line.substring(1, i);
+                position = i + 1;
+                break;
+            } else if (!isLetter(pr_Line.charAt(i))) {
+                break;
+            }
+        }
+
+        final int comma = pr_Line.indexOf(',', position);
+        if (comma <= position || comma > end) {
+            return null;
+        }
+        for (int i = position; i < comma; i++) {
+            final char c = pr_Line.charAt(i);
+            if (!isWordCharacter(c) && !isWhiteSpace(c) && c != '\'' && c != '(' && c != ')' && c != '.') {
+                return null;
+            }
+        }
+
+        int stage = comma + 1;
+        while (stage < end && isWhiteSpace(pr_Line.charAt(stage))) {
+            stage++;
+        }
+        if (stage == end || !isDigits(pr_Line, stage, end)) {
+            return null;
+        }
+
+        return new String[] { pr_Line, label, pr_Line.substring(position, comma), pr_Line.substring(stage, end) };
+    }
+
+    /**
+     * Matches the number of changes in a composition: digits, optionally followed by a
+     * space and a bracketed description of letters, digits, '_' and '-'.
+     * @param pr_Line the line
+     * @return the number of changes, or null if the line doesn't give one
+     */
+    static String matchChanges(final String pr_Line) {
+
+        int digits = 0;
+        while (digits < pr_Line.length() && isDigit(pr_Line.charAt(digits))) {
+            digits++;
+        }
+        if (digits == 0) {
+            return null;
+        }
+        if (digits < pr_Line.length()) {
+            final int end = pr_Line.length() - 1;
+            if (end - digits < 3 ||
+                pr_Line.charAt(digits) != ' ' ||
+                pr_Line.charAt(digits + 1) != '(' ||
+                pr_Line.charAt(end) != ')') {
+                return null;
+            }
+            for (int i = digits + 2; i < end; i++) {
+                if (!isWordCharacter(pr_Line.charAt(i)) && pr_Line.charAt(i) != '-') {
+                    return null;
+                }
+            }
+        }
+        return pr_Line.substring(0, digits);
+    }
+
+    /**
+     * Matches the header of a simple composition: optionally a tab and the first change
+     * (a course end), then any tabs and optionally a list of method labels.
+     * @param pr_Line the line
+     * @return the line, first change and method labels; or null if the line isn't a
+     *         header
+     */
+    static String[] matchSimpleHeader(final String pr_Line) {
+
+        if (pr_Line.startsWith("\t")) {
+            for (int end : getCourseEndEnds(pr_Line, 1)) {
+                final int methods = skipTabs(pr_Line, end);
+                if (methods == pr_Line.length() || getMethodLabelsEnd(pr_Line, methods) == pr_Line.length()) {
+                    return new String[] { pr_Line, pr_Line.substring(1, end), substringOrNull(pr_Line, methods) };
+                }
+            }
+        }
+
+        final int methods = skipTabs(pr_Line, 0);
+        if (methods == pr_Line.length() || getMethodLabelsEnd(pr_Line, methods) == pr_Line.length()) {
+            return new String[] { pr_Line, null, substringOrNull(pr_Line, methods) };
+        }
+        return null;
+    }
+
+    /**
+     * Matches a row of a simple composition: optionally a call ('-' or 's', optionally
+     * followed by a substitution character), optionally a tab and a course end, then any
+     * tabs and optionally either a plain lead count of one or two digits or a list of
+     * method labels.
+     * @param pr_Line the line
+     * @return the line, call, course end and plain lead count or method labels; or null
+     *         if the line isn't a row
+     */
+    static String[] matchSimpleRow(final String pr_Line) {
+
+        int position = 0;
+        String call = null;
+        if (position < pr_Line.length() && (pr_Line.charAt(position) == '-' || pr_Line.charAt(position) == 's')) {
+            position++;
+            if (position < pr_Line.length() && isSubstitution(pr_Line.charAt(position))) {
+                position++;
+            }
+            call = pr_Line.substring(0, position);
+        }
+
+        if (position < pr_Line.length() && pr_Line.charAt(position) == '\t') {
+            for (int end : getCourseEndEnds(pr_Line, position + 1)) {
+                final int count = skipTabs(pr_Line, end);
+                if (isSimpleRowEnd(pr_Line, count)) {
+                    return new String[] { pr_Line, call, pr_Line.substring(position + 1, end), substringOrNull(pr_Line, count) };
+                }
+            }
+        }
+
+        final int count = skipTabs(pr_Line, position);
+        if (isSimpleRowEnd(pr_Line, count)) {
+            return new String[] { pr_Line, call, null, substringOrNull(pr_Line, count) };
+        }
+        return null;
+    }
+
+    /**
+     * Matches a row of a table composition. The row starts with either a cell for each
+     * call column (each an optional '(', an optional call of 1-9, '-', 's', 'x' or "ss",
+     * an optional substitution character or ')', and a cell end), a labelled part (an
+     * optional digit 1-9 and a capital) or a footnote reference (a lower case letter
+     * other than 's'), followed by a cell end. Then each of these may follow in turn: a
+     * list of method labels and a cell end; a course end and a cell end; the number of
+     * leads in square brackets followed by a single tab or the end of the line; and the
+     * labels of the parts the row is in, each ':' and a capital followed by a cell end.
+     * @param pr_Line the line
+     * @return the line, calls (or labelled part or footnote reference), method labels,
+     *         course end, number of leads and part labels (empty if there are none); or
+     *         null if the line isn't a row
+     */
+    static String[] matchTableRow(final String pr_Line) {
+
+        for (int calls : getTableCallsEnds(pr_Line)) {
+
+            final int methodsEnd = getMethodLabelsEnd(pr_Line, calls);
+            final int afterMethods = methodsEnd > 0 ? getCellEnd(pr_Line, methodsEnd) : -1;
+            for (int methods : new int[] { afterMethods, calls }) {
+                if (methods < 0) {
+                    continue;
+                }
+
+                final ArrayList<Integer> courseEndCells = new ArrayList<Integer>();
+                final ArrayList<Integer> courseEndEnds = new ArrayList<Integer>();
+                for (int end : getCourseEndEnds(pr_Line, methods)) {
+                    if (getCellEnd(pr_Line, end) >= 0) {
+                        courseEndEnds.add(end);
+                        courseEndCells.add(getCellEnd(pr_Line, end));
+                    }
+                }
+                courseEndEnds.add(-1);
+                courseEndCells.add(methods);
+
+                for (int i = 0; i < courseEndCells.size(); i++) {
+                    final int courseEnd = courseEndCells.get(i);
+                    final int leadsEnd = getNumLeadsEnd(pr_Line, courseEnd);
+                    for (int leads : new int[] { leadsEnd, courseEnd }) {
+                        if (leads < 0) {
+                            continue;
+                        }
+                        if (getPartLabelsEnd(pr_Line, leads) == pr_Line.length()) {
+                            return new String[] {
+                                pr_Line,
+                                pr_Line.substring(0, calls),
+                                methods != calls ? pr_Line.substring(calls, methodsEnd) : null,
+                                courseEndEnds.get(i) >= 0 ? pr_Line.substring(methods, courseEndEnds.get(i)) : null,
+                                leads != courseEnd ? pr_Line.substring(courseEnd + 1, pr_Line.indexOf(']', courseEnd)) : null,
+                                pr_Line.substring(leads)
+                            };
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param pr_Cell the last cell of a table header
+     * @return whether the cell is a course end (the first change)
+     */
+    static boolean isCourseEnd(final String pr_Cell) {
+        final int start = pr_Cell.startsWith("(") ? 1 : 0;
+        int end = start;
+        while (end < pr_Cell.length() && isCourseEndCharacter(pr_Cell.charAt(end))) {
+            end++;
+        }
+        return end - start >= 3 && (end == pr_Cell.length() || (end == pr_Cell.length() - 1 && pr_Cell.charAt(end) == ')'));
+    }
+
+    /**
+     * @param pr_Line the first line of a composition
+     * @return whether the line is the header of a table counting leads: only digits,
+     *         tabs and the letters E, T, S, L, Q and (after the first character) H
+     */
+    static boolean isLeadCountHeader(final String pr_Line) {
+        if (pr_Line.isEmpty() || pr_Line.charAt(0) == 'H') {
+            return false;
+        }
+        for (int i = 0; i < pr_Line.length(); i++) {
+            if ("0123456789ETSLQH\t".indexOf(pr_Line.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param pr_Text the text
+     * @param pr_AllowStar whether the label may be followed by a '*'
+     * @return whether the text is a method label of one or two letters
+     */
+    static boolean isMethodLabel(final String pr_Text, final boolean pr_AllowStar) {
+        int end = pr_Text.length();
+        if (pr_AllowStar && end > 0 && pr_Text.charAt(end - 1) == '*') {
+            end--;
+        }
+        if (end < 1 || end > 2) {
+            return false;
+        }
+        for (int i = 0; i < end; i++) {
+            if (!isLetter(pr_Text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param pr_Text the text
+     * @return whether the text is one or more digits
+     */
+    static boolean isNumber(final String pr_Text) {
+        return !pr_Text.isEmpty() && isDigits(pr_Text, 0, pr_Text.length());
+    }
+
+    /**
+     * @param pr_Line a line of footnotes
+     * @return whether the line gives the number of parts: digits, a space, "Part" or
+     *         "part" and an optional '.'
+     */
+    static boolean isPartsFootnote(final String pr_Line) {
+        int position = 0;
+        while (position < pr_Line.length() && isDigit(pr_Line.charAt(position))) {
+            position++;
+        }
+        if (position == 0 || !pr_Line.startsWith(" ", position)) {
+            return false;
+        }
+        position++;
+        if (!pr_Line.startsWith("Part", position) && !pr_Line.startsWith("part", position)) {
+            return false;
+        }
+        position += 4;
+        return position == pr_Line.length() || (position == pr_Line.length() - 1 && pr_Line.charAt(position) == '.');
+    }
+
+    /**
+     * @param pr_Line a line of footnotes
+     * @return whether the line substitutes calls: a call, course end position or digit
+     *         and a substitution character, '=' and one or more calls, followed by
+     *         anything
+     */
+    static boolean isSubstitutionFootnote(final String pr_Line) {
+        if (pr_Line.length() < 2) {
+            return false;
+        }
+        final char c = pr_Line.charAt(0);
+        if (!(c == 's' || c == '-' || isCourseEndCharacter(c)) || !isSubstitution(pr_Line.charAt(1))) {
+            return false;
+        }
+        final int position = skipAssignment(pr_Line, 2);
+        return position >= 0 && position < pr_Line.length() &&
+               (pr_Line.charAt(position) == '-' || pr_Line.charAt(position) == 's') &&
+               isRestOfLine(pr_Line, position);
+    }
+
+    /**
+     * @param pr_Line a line of footnotes
+     * @return whether the line overrides a call: '-' or 's', '=' and place notation
+     *         (digits and dots), followed by anything
+     */
+    static boolean isCallOverrideFootnote(final String pr_Line) {
+        if (pr_Line.isEmpty() || (pr_Line.charAt(0) != '-' && pr_Line.charAt(0) != 's')) {
+            return false;
+        }
+        final int position = skipAssignment(pr_Line, 1);
+        return position >= 0 && position < pr_Line.length() &&
+               (isDigit(pr_Line.charAt(position)) || pr_Line.charAt(position) == '.') &&
+               isRestOfLine(pr_Line, position);
+    }
+
+    /**
+     * Splits text at a separator, dropping any empty parts at the end (as
+     * {@link String#split(String)} does).
+     * @param pr_Text the text
+     * @param pr_Separator the separator
+     * @return the parts
+     */
+    static String[] split(final String pr_Text, final char pr_Separator) {
+        if (pr_Text.indexOf(pr_Separator) < 0) {
+            return new String[] { pr_Text };
+        }
+        final ArrayList<String> parts = new ArrayList<String>();
+        int start = 0;
+        for (int i = 0; i <= pr_Text.length(); i++) {
+            if (i == pr_Text.length() || pr_Text.charAt(i) == pr_Separator) {
+                parts.add(pr_Text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        int size = parts.size();
+        while (size > 0 && parts.get(size - 1).isEmpty()) {
+            size--;
+        }
+        return parts.subList(0, size).toArray(new String[size]);
+    }
+
+    /**
+     * @param pr_Text the text
+     * @param pr_Characters the characters to remove
+     * @return the text without the characters
+     */
+    static String remove(final String pr_Text, final String pr_Characters) {
+        final StringBuilder text = new StringBuilder(pr_Text.length());
+        for (int i = 0; i < pr_Text.length(); i++) {
+            if (pr_Characters.indexOf(pr_Text.charAt(i)) < 0) {
+                text.append(pr_Text.charAt(i));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Finds where the calls at the start of a table row could end, in the order they
+     * are tried.
+     * @param pr_Line the row
+     * @return the possible ends of the calls
+     */
+    private static int[] getTableCallsEnds(final String pr_Line) {
+
+        // A cell for each call column, as many as possible first
+        final ArrayList<Integer> ends = new ArrayList<Integer>();
+        int position = 0;
+        do {
+            position = getCallCellEnd(pr_Line, position);
+            if (position > 0 && (ends.isEmpty() || position > ends.get(ends.size() - 1))) {
+                ends.add(0, position);
+            }
+        } while (position > 0 && position < pr_Line.length());
+        if (pr_Line.isEmpty()) {
+            ends.add(0);
+        }
+
+        // A labelled part or footnote reference
+        if (pr_Line.length() > 0) {
+            final char first = pr_Line.charAt(0);
+            int end = -1;
+            if (first >= '1' && first <= '9' && pr_Line.length() > 1 && isCapital(pr_Line.charAt(1))) {
+                end = getCellEnd(pr_Line, 2);
+            } else if (isCapital(first) || (first >= 'a' && first <= 'z' && first != 's')) {
+                end = getCellEnd(pr_Line, 1);
+            }
+            if (end >= 0) {
+                ends.add(end);
+            }
+        }
+
+        final int[] result = new int[ends.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ends.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @param pr_Line the row
+     * @param pr_Position the start of the cell
+     * @return the end of the call cell, or -1 if there isn't one
+     */
+    private static int getCallCellEnd(final String pr_Line, final int pr_Position) {
+        int position = pr_Position;
+        if (position < pr_Line.length() && pr_Line.charAt(position) == '(') {
+            position++;
+        }
+        final int[] calls;
+        if (position < pr_Line.length() && isCall(pr_Line.charAt(position))) {
+            calls = pr_Line.startsWith("ss", position) ? new int[] { position + 1, position + 2, position }
+                                                       : new int[] { position + 1, position };
+        } else {
+            calls = new int[] { position };
+        }
+        for (int call : calls) {
+            int end = call;
+            if (end < pr_Line.length() && (isSubstitution(pr_Line.charAt(end)) || pr_Line.charAt(end) == ')')) {
+                end++;
+            }
+            end = getCellEnd(pr_Line, end);
+            if (end >= 0) {
+                return end;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param pr_Line the line
+     * @param pr_Position the position after the content of a cell
+     * @return the position after the tabs ending the cell, the end of the line if the
+     *         cell is last, or -1 if the cell doesn't end here
+     */
+    private static int getCellEnd(final String pr_Line, final int pr_Position) {
+        if (pr_Position == pr_Line.length()) {
+            return pr_Position;
+        } else if (pr_Line.charAt(pr_Position) == '\t') {
+            return skipTabs(pr_Line, pr_Position);
+        }
+        return -1;
+    }
+
+    /**
+     * Finds where a course end starting at a position could end, longest first.
+     * @param pr_Line the line
+     * @param pr_Position the position
+     * @return the possible ends, none if there is no course end at the position
+     */
+    private static int[] getCourseEndEnds(final String pr_Line, final int pr_Position) {
+        int start = pr_Position;
+        if (start < pr_Line.length() && pr_Line.charAt(start) == '(') {
+            start++;
+        }
+        int end = start;
+        while (end < pr_Line.length() && isCourseEndCharacter(pr_Line.charAt(end))) {
+            end++;
+        }
+        if (end - start < 3) {
+            return new int[0];
+        }
+        final int[] ends = new int[end - start - 2];
+        for (int i = 0; i < ends.length; i++) {
+            ends[i] = end - i;
+        }
+        if (end < pr_Line.length() && pr_Line.charAt(end) == ')') {
+            ends[0]++;
+        }
+        return ends;
+    }
+
+    /**
+     * @param pr_Line the line
+     * @param pr_Position the position
+     * @return the end of the list of method labels at the position, or -1 if there are
+     *         none
+     */
+    private static int getMethodLabelsEnd(final String pr_Line, final int pr_Position) {
+        int end = -1;
+        int position = pr_Position;
+        while (true) {
+            if (position < pr_Line.length() && pr_Line.charAt(position) == '(') {
+                position++;
+            }
+            if (position >= pr_Line.length() || !isCapital(pr_Line.charAt(position))) {
+                return end;
+            }
+            position++;
+            if (position < pr_Line.length() && pr_Line.charAt(position) >= 'a' && pr_Line.charAt(position) <= 'z') {
+                position++;
+            }
+            if (position < pr_Line.length() && pr_Line.charAt(position) == '*') {
+                position++;
+            }
+            if (position < pr_Line.length() && pr_Line.charAt(position) == ')') {
+                position++;
+            }
+            end = position;
+        }
+    }
+
+    /**
+     * @param pr_Line the row
+     * @param pr_Position the position
+     * @return the position after the number of leads at the position and the single tab
+     *         following it, or -1 if there isn't one
+     */
+    private static int getNumLeadsEnd(final String pr_Line, final int pr_Position) {
+        if (!pr_Line.startsWith("[", pr_Position)) {
+            return -1;
+        }
+        final int close = pr_Line.indexOf(']', pr_Position);
+        if (close < pr_Position + 2 || !isDigits(pr_Line, pr_Position + 1, close)) {
+            return -1;
+        }
+        if (close + 1 == pr_Line.length()) {
+            return close + 1;
+        } else if (pr_Line.charAt(close + 1) == '\t') {
+            return close + 2;
+        }
+        return -1;
+    }
+
+    /**
+     * @param pr_Line the row
+     * @param pr_Position the position
+     * @return the end of the part labels at the position
+     */
+    private static int getPartLabelsEnd(final String pr_Line, final int pr_Position) {
+        int position = pr_Position;
+        while (position + 1 < pr_Line.length() && pr_Line.charAt(position) == ':' && isCapital(pr_Line.charAt(position + 1))) {
+            final int end = getCellEnd(pr_Line, position + 2);
+            if (end < 0) {
+                break;
+            }
+            position = end;
+        }
+        return position;
+    }
+
+    private static boolean isSimpleRowEnd(final String pr_Line, final int pr_Position) {
+        final int length = pr_Line.length() - pr_Position;
+        return length == 0 ||
+               (length <= 2 && isDigits(pr_Line, pr_Position, pr_Line.length())) ||
+               getMethodLabelsEnd(pr_Line, pr_Position) == pr_Line.length();
+    }
+
+    /**
+     * @param pr_Line the line
+     * @param pr_Position the position after the left hand side of an assignment
+     * @return the position after '=' and the white space around it, or -1 if there is
+     *         no '='
+     */
+    private static int skipAssignment(final String pr_Line, final int pr_Position) {
+        int position = pr_Position;
+        while (position < pr_Line.length() && isWhiteSpace(pr_Line.charAt(position))) {
+            position++;
+        }
+        if (position == pr_Line.length() || pr_Line.charAt(position) != '=') {
+            return -1;
+        }
+        position++;
+        while (position < pr_Line.length() && isWhiteSpace(pr_Line.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int skipTabs(final String pr_Line, final int pr_Position) {
+        int position = pr_Position;
+        while (position < pr_Line.length() && pr_Line.charAt(position) == '\t') {
+            position++;
+        }
+        return position;
+    }
+
+    private static String substringOrNull(final String pr_Line, final int pr_Position) {
+        return pr_Position < pr_Line.length() ? pr_Line.substring(pr_Position) : null;
+    }
+
+    private static boolean isDigits(final String pr_Text, final int pr_Start, final int pr_End) {
+        for (int i = pr_Start; i < pr_End; i++) {
+            if (!isDigit(pr_Text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the rest of the line contains no line terminators
+     */
+    private static boolean isRestOfLine(final String pr_Line, final int pr_Position) {
+        for (int i = pr_Position; i < pr_Line.length(); i++) {
+            final char c = pr_Line.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(final char pr_Char) {
+        return pr_Char >= '0' && pr_Char <= '9';
+    }
+
+    private static boolean isCapital(final char pr_Char) {
+        return pr_Char >= 'A' && pr_Char <= 'Z';
+    }
+
+    private static boolean isLetter(final char pr_Char) {
+        return isCapital(pr_Char) || (pr_Char >= 'a' && pr_Char <= 'z');
+    }
+
+    private static boolean isWordCharacter(final char pr_Char) {
+        return isLetter(pr_Char) || isDigit(pr_Char) || pr_Char == '_';
+    }
+
+    private static boolean isWhiteSpace(final char pr_Char) {
+        return pr_Char == ' ' || pr_Char == '\t' || pr_Char == '\n' || pr_Char == '\u000B' || pr_Char == '\f' || pr_Char == '\r';
+    }
+
+    private static boolean isCourseEndCharacter(final char pr_Char) {
+        return isDigit(pr_Char) || isCapital(pr_Char);
+    }
+
+    private static boolean isCall(final char pr_Char) {
+        return (pr_Char >= '1' && pr_Char <= '9') || pr_Char == '-' || pr_Char == 's' || pr_Char == 'x';
+    }
+
+    private static boolean isSubstitution(final char pr_Char) {
+        return pr_Char == '*' || pr_Char == '+';
+    }
+
+}
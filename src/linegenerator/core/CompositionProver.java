@@ -0,0 +1,321 @@
+package linegenerator.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import linegenerator.core.exceptions.CompositionDefinitionException;
+import linegenerator.core.exceptions.FalseGridException;
+
+/**
+ * Proves a batch of compositions, or the compositions in a batch of files, on several
+ * threads.
+ *
+ * The compositions are proved on a fixed number of threads with a bounded queue; once
+ * the queue is full the thread submitting the compositions proves the next one itself,
+ * so a large batch never holds more than a few compositions waiting. The results are
+ * returned in the order the compositions (or files) were given, whatever order they
+ * were proved in.
+ *
+ * A composition which can't be proved doesn't stop the batch: the error is recorded
+ * against that composition (see {@link Proof#getError()}) and the rest are proved as
+ * normal. An {@link Error} (running out of memory, for example) is not caught: it
+ * stops the batch and is thrown on to the caller.
+ *
+ * @author Tom
+ */
+public class CompositionProver {
+
+    /** The number of compositions queued for each thread. */
+    private static final int QUEUE_PER_THREAD = 16;
+
+    /** The methods the compositions may refer to. */
+    private final MethodLibrary m_MethodLibrary;
+
+    /** The number of threads to prove on. */
+    private final int m_Threads;
+
+    /** The results of earlier proofs, or null to prove every composition. */
+    private ProofCache m_ProofCache;
+
+    /**
+     * Constructor.
+     * @param pr_MethodLibrary the methods the compositions may refer to
+     * @param pr_Threads the number of threads to prove on
+     */
+    public CompositionProver(final MethodLibrary pr_MethodLibrary, final int pr_Threads) {
+        m_MethodLibrary = pr_MethodLibrary;
+        m_Threads = Math.max(pr_Threads, 1);
+    }
+
+    /**
+     * @return the number of threads to prove on
+     */
+    public int getThreads() {
+        return m_Threads;
+    }
+
+    /**
+     * @param pr_ProofCache the results of earlier proofs, which compositions that
+     *                      haven't changed are given rather than being proved again
+     *                      and which the results of new proofs are added to; or null
+     *                      to prove every composition
+     */
+    public void setProofCache(final ProofCache pr_ProofCache) {
+        m_ProofCache = pr_ProofCache;
+    }
+
+    /**
+     * Proves a batch of compositions.
+     * @param pr_Compositions the compositions
+     * @return the proof of each composition, in the same order
+     */
+    public List<Proof> prove(final List<? extends AbstractComposition> pr_Compositions) {
+        final ThreadPoolExecutor executor = createExecutor();
+        try {
+            return prove(executor, pr_Compositions);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads and proves the compositions in a batch of files.
+     * @param pr_Files the composition files
+     * @return the proofs of the compositions in each file, in the same order
+     */
+    public List<FileProof> proveFiles(final List<File> pr_Files) {
+        final ThreadPoolExecutor executor = createExecutor();
+        try {
+            final ArrayList<Future<FileProof>> reads = new ArrayList<Future<FileProof>>();
+            for (final File file : pr_Files) {
+                reads.add(executor.submit(new Callable<FileProof>() {
+                    @Override
+                    public FileProof call() {
+                        return read(file);
+                    }
+                }));
+            }
+
+            // Prove the compositions of every file together, so a file of a single
+            // composition doesn't hold up the threads
+            final ArrayList<FileProof> files = new ArrayList<FileProof>();
+            final ArrayList<AbstractComposition> compositions = new ArrayList<AbstractComposition>();
+            for (Future<FileProof> read : reads) {
+                final FileProof file = getResult(read);
+                files.add(file);
+                compositions.addAll(file.getCompositions());
+            }
+
+            final List<Proof> proofs = prove(executor, compositions);
+            int next = 0;
+            for (FileProof file : files) {
+                for (int i = 0; i < file.getCompositions().size(); i++) {
+                    file.m_Proofs.add(proofs.get(next++));
+                }
+            }
+            return files;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Proves a batch of compositions on an executor.
+     * @param pr_Executor the executor
+     * @param pr_Compositions the compositions
+     * @return the proof of each composition, in the same order
+     */
+    private List<Proof> prove(final ThreadPoolExecutor pr_Executor, final List<? extends AbstractComposition> pr_Compositions) {
+        final ArrayList<Future<Proof>> futures = new ArrayList<Future<Proof>>();
+        for (final AbstractComposition composition : pr_Compositions) {
+            futures.add(pr_Executor.submit(new Callable<Proof>() {
+                @Override
+                public Proof call() {
+                    return prove(composition);
+                }
+            }));
+        }
+
+        final ArrayList<Proof> proofs = new ArrayList<Proof>();
+        for (Future<Proof> future : futures) {
+            proofs.add(getResult(future));
+        }
+        return proofs;
+    }
+
+    /**
+     * Proves a single composition, unless it is given the result of an earlier proof.
+     * @param pr_Composition the composition
+     * @return the proof
+     */
+    private Proof prove(final AbstractComposition pr_Composition) {
+        final boolean restored = m_ProofCache != null && m_ProofCache.restore(pr_Composition);
+        Proof proof;
+        try {
+            proof = new Proof(pr_Composition, pr_Composition.isTrue(), null);
+        } catch (CompositionDefinitionException e) {
+            proof = new Proof(pr_Composition, false, e);
+        } catch (FalseGridException e) {
+            proof = new Proof(pr_Composition, false, e);
+        } catch (RuntimeException e) {
+            return new Proof(pr_Composition, false, e);
+        }
+        if (m_ProofCache != null && !restored) {
+            m_ProofCache.add(pr_Composition);
+        }
+        return proof;
+    }
+
+    /**
+     * Reads the compositions in a file.
+     * @param pr_File the file
+     * @return the file, with its compositions but not yet proved
+     */
+    private FileProof read(final File pr_File) {
+        final CompositionReader reader = new CompositionReader(m_MethodLibrary);
+        try {
+            reader.visit(pr_File);
+        } catch (CompositionDefinitionException e) {
+            return new FileProof(pr_File, new ArrayList<AbstractComposition>(), e);
+        } catch (IOException e) {
+            return new FileProof(pr_File, new ArrayList<AbstractComposition>(), e);
+        }
+        return new FileProof(pr_File, reader.getCompositions(), null);
+    }
+
+    /**
+     * Creates the executor to prove on.
+     * @return the executor
+     */
+    private ThreadPoolExecutor createExecutor() {
+        return new ThreadPoolExecutor(m_Threads,
+                                      m_Threads,
+                                      0,
+                                      TimeUnit.MILLISECONDS,
+                                      new ArrayBlockingQueue<Runnable>(m_Threads * QUEUE_PER_THREAD),
+                                      new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Waits for the result of a task, passing on anything unexpected it threw.
+     * @param pr_Future the task
+     * @return the result
+     */
+    private static <T> T getResult(final Future<T> pr_Future) {
+        try {
+            return pr_Future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while proving compositions.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * The result of proving a composition.
+     */
+    public static class Proof {
+
+        private final AbstractComposition m_Composition;
+        private final boolean m_IsTrue;
+        private final Exception m_Error;
+
+        /**
+         * Constructor.
+         * @param pr_Composition the composition
+         * @param pr_IsTrue whether it was proved true
+         * @param pr_Error the error found proving it, or null
+         */
+        private Proof(final AbstractComposition pr_Composition, final boolean pr_IsTrue, final Exception pr_Error) {
+            m_Composition = pr_Composition;
+            m_IsTrue = pr_IsTrue;
+            m_Error = pr_Error;
+        }
+
+        public AbstractComposition getComposition() {
+            return m_Composition;
+        }
+
+        /**
+         * @return whether the composition was proved true
+         */
+        public boolean isTrue() {
+            return m_IsTrue;
+        }
+
+        /**
+         * @return the reason the composition could not be proved true: a
+         *         {@link CompositionDefinitionException}, a {@link FalseGridException} or
+         *         an unexpected {@link RuntimeException}; or null if it is true
+         */
+        public Exception getError() {
+            return m_Error;
+        }
+    }
+
+    /**
+     * The result of reading and proving the compositions in a file.
+     */
+    public static class FileProof {
+
+        private final File m_File;
+        private final ArrayList<AbstractComposition> m_Compositions;
+        private final ArrayList<Proof> m_Proofs;
+        private final Exception m_Error;
+
+        /**
+         * Constructor.
+         * @param pr_File the file
+         * @param pr_Compositions the compositions read from it
+         * @param pr_Error the error found reading it, or null
+         */
+        private FileProof(final File pr_File, final ArrayList<AbstractComposition> pr_Compositions, final Exception pr_Error) {
+            m_File = pr_File;
+            m_Compositions = pr_Compositions;
+            m_Proofs = new ArrayList<Proof>();
+            m_Error = pr_Error;
+        }
+
+        public File getFile() {
+            return m_File;
+        }
+
+        /**
+         * @return the compositions in the file, in order
+         */
+        public ArrayList<AbstractComposition> getCompositions() {
+            return m_Compositions;
+        }
+
+        /**
+         * @return the proof of each composition in the file, in order
+         */
+        public List<Proof> getProofs() {
+            return m_Proofs;
+        }
+
+        /**
+         * @return the reason the file could not be read: a
+         *         {@link CompositionDefinitionException} or an {@link IOException}; or
+         *         null if it was read
+         */
+        public Exception getError() {
+            return m_Error;
+        }
+    }
+
+}
@@ -9,14 +9,16 @@ public class CompositionReader extends AbstractCompositionVisitor {
     private ArrayList<AbstractComposition> m_Compositions;
     private AbstractComposition m_CurrentComposition;
     private int m_CurrentChanges;
+    private StringBuilder m_CurrentSource;
     
-    public CompositionReader(final Method[] pr_MethodLibrary) {
+    public CompositionReader(final MethodLibrary pr_MethodLibrary) {
 
         super(pr_MethodLibrary);
 
         m_Compositions = new ArrayList<AbstractComposition>();
         m_CurrentComposition = null;
         m_CurrentChanges = 0;
+        m_CurrentSource = new StringBuilder();
     }
     
     @Override
@@ -39,13 +41,34 @@ public class CompositionReader extends AbstractCompositionVisitor {
             m_CurrentComposition.setFirstMethod(m_LastMethod);
         }
         
+        // The methods the labels stand for, and the method the composition starts with,
+        // are set by earlier lines of the file, so record them with its text
+        final StringBuilder methods = new StringBuilder();
+        for (String definition : m_MethodTable.getDefinitions()) {
+            methods.append('[').append(definition).append("]\n");
+        }
+        if (m_LastMethod != null) {
+            methods.append("[>").append(m_LastMethod.getDefinition()).append("]\n");
+        }
+        m_CurrentSource.insert(0, methods);
+        
     }
 
     @Override
     public void compositionFinished() {
+        if (m_CurrentComposition != null) {
+            m_CurrentComposition.setSource(m_CurrentSource.toString());
+        }
         m_Compositions.add(m_CurrentComposition);
         m_CurrentComposition = null;
         m_CurrentChanges = 0;
+        m_CurrentSource.setLength(0);
+    }
+    
+    @Override
+    public void methodFound(final Method pr_Method, final String pr_Label) {
+        super.methodFound(pr_Method, pr_Label);
+        m_CurrentSource.setLength(0);
     }
 
     @Override
@@ -145,7 +168,10 @@ public class CompositionReader extends AbstractCompositionVisitor {
 
     @Override
     public void lineStarted(final int pr_LineNumber, final String pr_Line) {
-        // Do nothing
+        // Keep the text of the composition, as far as it affects the proof
+        if (!pr_Line.startsWith(COMMENT_PREFIX) && !pr_Line.trim().isEmpty()) {
+            m_CurrentSource.append(pr_Line.replaceAll("\\s+$", "")).append('\n');
+        }
     }
 
     @Override
@@ -0,0 +1,747 @@
+package linegenerator.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import linegenerator.core.exceptions.CompositionDefinitionException;
+import linegenerator.core.exceptions.FalseGridException;
+
+/**
+ * Searches for true touches of a single method by trying every sequence of calls.
+ *
+ * The search is depth-first over lead heads: each lead is added to the touch in turn,
+ * its rows are counted as they are rung and the search backs out of the lead as soon
+ * as a row occurs more often than any touch within the change limit could allow. A
+ * branch ends when it comes round at a lead end, or when it has run past the limit.
+ * Only the rows and calls of the current branch are held, so memory is proportional
+ * to the length of the touch rather than the number of touches being tried.
+ *
+ * Touches which come round are proved in full by {@link SimpleComposition} before
+ * being passed to the listeners, so are written out in the same way as any other.
+ *
+ * Touches which are rotations of each other (the same touch started at a different
+ * lead) are only found once, as the rotation whose calls come first in the order the
+ * calls are tried. Branches which can only lead to a later rotation are skipped as
+ * soon as the call that makes them so is tried, rather than being searched and the
+ * touches filtered afterwards. This is only done where every rotation of a true touch
+ * is a true touch the search would otherwise find: methods with a single lead of
+ * notation starting at the lead end, and touches no longer than the extent.
+ *
+ * The search can be run on several threads, in which case the tree of calls is cut
+ * into subtrees at a fixed depth and the subtrees are searched on a fork/join pool.
+ * As parts of the tree are far larger than others, a subtree started while there is
+ * little work queued splits off its children as subtrees of their own, which idle
+ * threads steal. The results of each subtree are held back until those of every
+ * subtree before it have been passed on, so the listeners see the same results in the
+ * same order whatever the number of threads.
+ *
+ * Because the results are passed on in a fixed order, the state of the search can be
+ * saved as the calls of the next lead to be tried: every result before it has been
+ * passed on and none after it. The listeners are sent this path at regular intervals
+ * (see {@link #setCheckpointInterval(long)}), and a search given it again through
+ * {@link #setResumePath(int[])} skips every branch before it without ringing them.
+ *
+ * @author Tom
+ */
+public class CompositionSearch {
+
+    /** The number of calls made before the tree is cut into subtrees. */
+    private static final int SPLIT_DEPTH = 6;
+
+    /** The number of subtrees to queue for each thread ahead of those being passed on. */
+    private static final int SUBTREES_PER_THREAD = 4;
+
+    /** The number of subtrees a thread may have queued beyond those it is searching before it stops splitting them. */
+    private static final int MAX_SURPLUS_SUBTREES = 3;
+
+    /** The method being rung. */
+    private final Method m_Method;
+
+    /** The calls tried at each lead end, in shorthand (e.g. "p", "-" or "s"). */
+    private final String[] m_Calls;
+
+    /** The lead type of each call. */
+    private final LeadType[] m_LeadTypes;
+
+    /** The number of changes after which a touch is given up. */
+    private final int m_MaxChanges;
+
+    /** The number of bells. */
+    private final int m_Bells;
+
+    /** The listeners to notify of touches found. */
+    private final ArrayList<ICompositionSearchListener> m_Listeners;
+
+    /** The number of threads to search on. */
+    private int m_Threads;
+
+    /** Whether to find every rotation of a touch. */
+    private boolean m_IncludeRotations;
+
+    /** Whether branches leading only to later rotations of touches are being skipped. */
+    private boolean m_SkipRotations;
+
+    /** The number of times a row may be rung in a touch within the change limit. */
+    private int m_MaxOccurrences;
+
+    /** The calls of the lead to restart the search from, or null to search from the start. */
+    private int[] m_ResumePath;
+
+    /** The time (in milliseconds) between checkpoints, or 0 for none. */
+    private long m_CheckpointInterval;
+
+    /** The time of the last checkpoint. */
+    private volatile long m_LastCheckpoint;
+
+    /** Whether the search has been asked to stop. */
+    private volatile boolean m_Stopped;
+
+    /**
+     * Constructor.
+     * @param pr_Method the method to search
+     * @param pr_Calls the calls to try at each lead end, in the order to try them
+     * @param pr_MaxChanges the number of changes after which a touch is given up
+     */
+    public CompositionSearch(final Method pr_Method, final List<String> pr_Calls, final int pr_MaxChanges) {
+        m_Method = pr_Method;
+        m_Calls = pr_Calls.toArray(new String[pr_Calls.size()]);
+        m_LeadTypes = new LeadType[m_Calls.length];
+        for (int i = 0; i < m_Calls.length; i++) {
+            m_LeadTypes[i] = LeadType.getLeadType(m_Calls[i]);
+        }
+        m_MaxChanges = pr_MaxChanges;
+        m_Bells = pr_Method.getStage().getBells();
+        m_Listeners = new ArrayList<ICompositionSearchListener>();
+        m_Threads = 1;
+    }
+
+    public void addListener(final ICompositionSearchListener pr_Listener) {
+        m_Listeners.add(pr_Listener);
+    }
+
+    /**
+     * @param pr_Threads the number of threads to search on
+     */
+    public void setThreads(final int pr_Threads) {
+        m_Threads = Math.max(pr_Threads, 1);
+    }
+
+    /**
+     * @return the number of threads to search on
+     */
+    public int getThreads() {
+        return m_Threads;
+    }
+
+    /**
+     * @param pr_IncludeRotations whether to find every rotation of a touch, rather than
+     *                            just the first where possible
+     */
+    public void setIncludeRotations(final boolean pr_IncludeRotations) {
+        m_IncludeRotations = pr_IncludeRotations;
+    }
+
+    /**
+     * Sets the search to restart from a checkpoint, skipping every branch before it.
+     * @param pr_Path the path sent to the listeners at the checkpoint, or null to search
+     *                from the start
+     */
+    public void setResumePath(final int[] pr_Path) {
+        m_ResumePath = pr_Path;
+    }
+
+    /**
+     * @param pr_Interval the time (in milliseconds) between checkpoints, or 0 for none
+     */
+    public void setCheckpointInterval(final long pr_Interval) {
+        m_CheckpointInterval = pr_Interval;
+    }
+
+    /**
+     * Stops the search after the touch currently being tried.
+     */
+    public void stop() {
+        m_Stopped = true;
+    }
+
+    /**
+     * Runs the search, notifying the listeners of each true touch in the order found.
+     * @throws CompositionDefinitionException if a call is not defined for the method
+     */
+    public void run() throws CompositionDefinitionException {
+
+        for (int i = 0; i < m_LeadTypes.length; i++) {
+            if (m_LeadTypes[i] == null) {
+                throw new CompositionDefinitionException("Call is undefined: " + m_Calls[i]);
+            }
+        }
+
+        final int leadLength = m_Method.getLeadNotation(LeadType.PLAIN, 0).size();
+
+        // A touch is only extended while it is within the limit, so may end up to a lead beyond it
+        m_MaxOccurrences = m_Method.getStage().getExtents((long) m_MaxChanges + leadLength);
+        m_SkipRotations = !m_IncludeRotations
+                          && m_MaxOccurrences == 1
+                          && m_Method.getStartOffset() == 0
+                          && m_Method.getPlaceNotation().length == 1;
+        m_Stopped = false;
+        m_LastCheckpoint = System.currentTimeMillis();
+
+        if (m_Threads == 1) {
+            final Subtree results = new Subtree(null, null);
+            results.pass();
+            new Branch(results, Integer.MAX_VALUE, null, m_ResumePath).search(new int[0]);
+        } else {
+            runInParallel();
+        }
+    }
+
+    /**
+     * Runs the search on a fork/join pool, passing on the results of each subtree in
+     * the order the subtrees would have been searched on a single thread.
+     * @throws CompositionDefinitionException if a call is not defined for the method
+     */
+    private void runInParallel() throws CompositionDefinitionException {
+
+        // Compile every lead up front, so the threads only ever read the notation
+        m_Method.getLeadNotation(LeadType.PLAIN, 0).getLeadHead(m_Bells);
+        for (int i = 0; i < m_Method.getPlaceNotation().length; i++) {
+            for (LeadType leadType : m_LeadTypes) {
+                final Notation notation = m_Method.getLeadNotation(leadType, i);
+                if (notation == null) {
+                    throw new CompositionDefinitionException("Call is undefined: " + leadType);
+                }
+                notation.getLeadHead(m_Bells);
+            }
+        }
+
+        // Search down to the split depth, queuing a subtree for each branch which reaches it
+        final ArrayList<Subtree> subtrees = new ArrayList<Subtree>();
+        subtrees.add(new Subtree(null, null));
+        new Branch(subtrees.get(0), SPLIT_DEPTH, subtrees, m_ResumePath).search(new int[0]);
+
+        final ForkJoinPool pool = new ForkJoinPool(m_Threads);
+        try {
+            final int queueLength = m_Threads * SUBTREES_PER_THREAD;
+            int queued = 0;
+            for (int i = 0; i < subtrees.size() && !m_Stopped; i++) {
+                while (queued < subtrees.size() && queued <= i + queueLength) {
+                    if (subtrees.get(queued).m_Path != null) {
+                        pool.execute(subtrees.get(queued));
+                    }
+                    queued++;
+                }
+                subtrees.get(i).pass();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends a checkpoint to the listeners if one is due.
+     * @param pr_Path an array starting with the calls of the next lead to be tried
+     * @param pr_Length the number of calls
+     */
+    private void checkpoint(final int[] pr_Path, final int pr_Length) {
+        if (m_CheckpointInterval > 0 && System.currentTimeMillis() - m_LastCheckpoint >= m_CheckpointInterval) {
+            synchronized (this) {
+                final int[] path = Arrays.copyOf(pr_Path, pr_Length);
+                for (ICompositionSearchListener listener : m_Listeners) {
+                    listener.checkpointReached(path);
+                }
+                m_LastCheckpoint = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Proves a touch which has come round. The touch is proved as it is expanded, so
+     * proving stops at the first lead repeating a row more often than its length allows.
+     * @param pr_Calls the calls of the touch
+     * @param pr_Changes the number of changes in the touch
+     * @return the touch, or null if it is false
+     * @throws CompositionDefinitionException if a call is not defined for the method
+     */
+    private SimpleComposition prove(final String pr_Calls, final int pr_Changes) throws CompositionDefinitionException {
+
+        final MethodTable methods = new MethodTable();
+        methods.put("", m_Method);
+
+        final SimpleComposition comp = new SimpleComposition(methods, 0);
+        comp.setPadPlainLeads(false);
+        comp.setIncrementalProofLimit(pr_Changes);
+        comp.setFirstMethod(m_Method);
+        comp.addRows(pr_Calls);
+
+        try {
+            return comp.isTrue() ? comp : null;
+        } catch (FalseGridException e) {
+            // Comes round but has rows repeated more than the length allows
+            return null;
+        }
+    }
+
+    /**
+     * A touch found by the search, or a touch given up as too long.
+     */
+    private static final class Result {
+
+        /** The calls of the touch. */
+        private final String m_Calls;
+
+        /** The touch, or null if it was given up. */
+        private final SimpleComposition m_Composition;
+
+        /** The number of changes rung when the touch was given up. */
+        private final int m_Changes;
+
+        private Result(final String pr_Calls, final SimpleComposition pr_Composition, final int pr_Changes) {
+            m_Calls = pr_Calls;
+            m_Composition = pr_Composition;
+            m_Changes = pr_Changes;
+        }
+
+    }
+
+    /**
+     * A subtree of the search, which holds back its results until all of those before
+     * it have been passed on to the listeners. A subtree may instead split off its
+     * children, in which case its results are those of the children in turn.
+     */
+    private final class Subtree extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The calls leading to the subtree, or null if it just holds results found above the split. */
+        private final int[] m_Path;
+
+        /** The calls of the lead to restart the subtree from, or null to search all of it. */
+        private final int[] m_ResumePath;
+
+        /** The results held back. */
+        private final ArrayList<Result> m_Results;
+
+        /** Whether results are passed straight on to the listeners. */
+        private volatile boolean m_IsPassing;
+
+        /** The error which stopped the subtree being searched. */
+        private CompositionDefinitionException m_Error;
+
+        /** The subtrees split off, in order, or null if the subtree was searched whole. */
+        private List<Subtree> m_Children;
+
+        /**
+         * Constructor.
+         * @param pr_Path the calls leading to the subtree, or null if it just holds results
+         * @param pr_ResumePath the calls of the lead to restart from, or null to search all of it
+         */
+        private Subtree(final int[] pr_Path, final int[] pr_ResumePath) {
+            m_Path = pr_Path;
+            m_ResumePath = pr_ResumePath;
+            m_Results = new ArrayList<Result>();
+            m_IsPassing = false;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                if (getSurplusQueuedTaskCount() < MAX_SURPLUS_SUBTREES) {
+                    // Queue the children for idle threads to steal, the first on top so this thread takes it next
+                    final ArrayList<Subtree> children = new ArrayList<Subtree>();
+                    children.add(new Subtree(null, null));
+                    new Branch(children.get(0), m_Path.length + 1, children, m_ResumePath).search(m_Path);
+                    for (int i = children.size() - 1; i >= 0; i--) {
+                        if (children.get(i).m_Path != null) {
+                            children.get(i).fork();
+                        }
+                    }
+                    m_Children = children;
+                } else {
+                    new Branch(this, Integer.MAX_VALUE, null, m_ResumePath).search(m_Path);
+                }
+            } catch (CompositionDefinitionException e) {
+                m_Error = e;
+            }
+        }
+
+        /**
+         * Passes on the results held back so far and then any still to be found, returning
+         * when the subtree has been searched.
+         * @throws CompositionDefinitionException if a call is not defined for the method
+         */
+        private void pass() throws CompositionDefinitionException {
+            if (m_Path != null) {
+                checkpoint(m_Path, m_Path.length);
+            }
+            synchronized (this) {
+                for (Result result : m_Results) {
+                    notifyListeners(result);
+                }
+                m_Results.clear();
+                m_IsPassing = true;
+            }
+            if (m_Path != null) {
+                join();
+            }
+            if (m_Error != null) {
+                throw m_Error;
+            }
+            if (m_Children != null) {
+                for (int i = 0; i < m_Children.size() && !m_Stopped; i++) {
+                    m_Children.get(i).pass();
+                }
+            }
+        }
+
+        /**
+         * Adds a result, passing it on if the results before it have all been passed on.
+         * @param pr_Result the result
+         */
+        private synchronized void add(final Result pr_Result) {
+            if (m_IsPassing) {
+                notifyListeners(pr_Result);
+            } else {
+                m_Results.add(pr_Result);
+            }
+        }
+
+        private void notifyListeners(final Result pr_Result) {
+            for (ICompositionSearchListener listener : m_Listeners) {
+                if (pr_Result.m_Composition != null) {
+                    listener.compositionFound(pr_Result.m_Composition, pr_Result.m_Calls);
+                } else {
+                    listener.compositionAbandoned(pr_Result.m_Calls, pr_Result.m_Changes);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * The state of a single thread of the search: the count of each row rung and the
+     * calls made on the current branch.
+     */
+    private final class Branch {
+
+        /** The count of each row rung so far on the branch. */
+        private final TruthChecker m_Proof;
+
+        /** The calls made so far on the branch. */
+        private final StringBuilder m_CallString;
+
+        /** The index of each call made so far on the branch. */
+        private final int[] m_Path;
+
+        /** The period of the calls up to each depth of the branch (see {@link #getPeriod}). */
+        private final int[] m_Periods;
+
+        /** The rows of the lead added at each depth of the branch. */
+        private final ArrayList<byte[]> m_LeadRows;
+
+        /** The number of calls after which branches are queued rather than searched. */
+        private final int m_SplitDepth;
+
+        /** The subtrees queued, or null if branches are never queued. */
+        private final List<Subtree> m_Subtrees;
+
+        /** The subtree receiving the results found. */
+        private Subtree m_Results;
+
+        /** The calls of the lead to restart the search from, or null to search from the start. */
+        private final int[] m_ResumePath;
+
+        /** Whether the branch is still on the way to the lead to restart from. */
+        private boolean m_IsResuming;
+
+        /**
+         * Constructor.
+         * @param pr_Results the subtree to receive the results found
+         * @param pr_SplitDepth the number of calls after which branches are queued
+         * @param pu_Subtrees the list to queue subtrees in, or null if never queued
+         * @param pr_ResumePath the calls of the lead to restart from, or null to search from the start
+         */
+        private Branch(final Subtree pr_Results,
+                       final int pr_SplitDepth,
+                       final List<Subtree> pu_Subtrees,
+                       final int[] pr_ResumePath) {
+            m_Proof = new TruthChecker(m_Bells, m_MaxOccurrences);
+            m_CallString = new StringBuilder();
+            m_Path = new int[m_MaxChanges + 2];
+            m_Periods = new int[m_MaxChanges + 2];
+            m_LeadRows = new ArrayList<byte[]>();
+            m_SplitDepth = pr_SplitDepth;
+            m_Subtrees = pu_Subtrees;
+            m_Results = pr_Results;
+            m_ResumePath = pr_ResumePath;
+            m_IsResuming = pr_ResumePath != null;
+        }
+
+        /**
+         * Rings the calls leading to a subtree and then searches it.
+         * @param pr_Path the index of each call leading to the subtree
+         * @throws CompositionDefinitionException if a call is not defined for the method
+         */
+        private void search(final int[] pr_Path) throws CompositionDefinitionException {
+
+            // Methods which don't start at the lead end ring the rest of the first lead before any calls
+            byte[] rows = Row.rounds(m_Bells).toArray();
+            int offset = 0;
+            int changes = 0;
+            if (m_Method.getStartOffset() > 0) {
+                final byte[][] prefix = m_Method.getLeadNotation(LeadType.PLAIN, 0).getChanges(m_Bells);
+                final byte[] previous = new byte[m_Bells];
+                for (int i = m_Method.getStartOffset(); i < prefix.length; i++) {
+                    if (!m_Proof.add(rows, 0)) {
+                        return;
+                    }
+                    System.arraycopy(rows, 0, previous, 0, m_Bells);
+                    for (int j = 0; j < m_Bells; j++) {
+                        rows[j] = previous[prefix[i][j]];
+                    }
+                    changes++;
+                }
+            }
+
+            int notationIndex = m_Method.getPlaceNotation().length - 1;
+            for (int depth = 0; depth < pr_Path.length; depth++) {
+                final Notation notation = getNotation(pr_Path[depth], notationIndex);
+                addLead(depth, rows, offset, notation);
+                m_Periods[depth] = getPeriod(depth, pr_Path[depth]);
+                m_Path[depth] = pr_Path[depth];
+                m_CallString.append(m_Calls[pr_Path[depth]]);
+                rows = m_LeadRows.get(depth);
+                offset = notation.size() * m_Bells;
+                changes += notation.size();
+                notationIndex = (notationIndex + 1) % m_Method.getPlaceNotation().length;
+            }
+
+            search(pr_Path.length, rows, offset, notationIndex, changes);
+        }
+
+        /**
+         * Tries each call from a lead head, searching on from each lead which is still true.
+         * @param pr_Depth the number of calls made up to the lead head
+         * @param pr_Rows the array holding the lead head
+         * @param pr_Offset the offset of the lead head in the array
+         * @param pr_NotationIndex the index of the notation of the leads to add
+         * @param pr_Changes the number of changes rung up to the lead head
+         * @throws CompositionDefinitionException if a call is not defined for the method
+         */
+        private void search(final int pr_Depth,
+                            final byte[] pr_Rows,
+                            final int pr_Offset,
+                            final int pr_NotationIndex,
+                            final int pr_Changes) throws CompositionDefinitionException {
+
+            final int depth = pr_Depth;
+            final int nextNotationIndex = (pr_NotationIndex + 1) % m_Method.getPlaceNotation().length;
+
+            // When resuming, skip the calls before those leading to the lead to restart from
+            int first = 0;
+            if (m_IsResuming) {
+                if (depth < m_ResumePath.length) {
+                    first = m_ResumePath[depth];
+                } else {
+                    m_IsResuming = false;
+                }
+            }
+
+            for (int c = first; c < m_Calls.length && !m_Stopped; c++) {
+
+                if (c != first) {
+                    m_IsResuming = false;
+                }
+                if (m_Results.m_IsPassing) {
+                    m_Path[depth] = c;
+                    checkpoint(m_Path, depth + 1);
+                }
+
+                // Skip calls which would make a rotation of the touch come before it
+                final int period = getPeriod(depth, c);
+                if (period == 0) {
+                    continue;
+                }
+
+                final Notation notation = getNotation(c, pr_NotationIndex);
+                if (!addLead(depth, pr_Rows, pr_Offset, notation)) {
+                    continue;
+                }
+
+                final byte[] rows = m_LeadRows.get(depth);
+                final int leadEnd = notation.size() * m_Bells;
+                final int changes = pr_Changes + notation.size();
+                m_Path[depth] = c;
+                m_Periods[depth] = period;
+                m_CallString.append(m_Calls[c]);
+
+                if (isRounds(rows, leadEnd)) {
+                    // A touch made of repeats of a shorter calling only comes first if the calling does
+                    if ((depth + 1) % period == 0) {
+                        final String calls = m_CallString.toString();
+                        final SimpleComposition comp = prove(calls, changes);
+                        if (comp != null) {
+                            m_Results.add(new Result(calls, comp, changes));
+                        }
+                    }
+                } else if (changes > m_MaxChanges) {
+                    m_Results.add(new Result(m_CallString.toString(), null, changes));
+                } else if (depth + 1 == m_SplitDepth) {
+                    final Subtree subtree = new Subtree(Arrays.copyOf(m_Path, depth + 1), m_IsResuming ? m_ResumePath : null);
+                    m_Subtrees.add(subtree);
+                    m_Results = new Subtree(null, null);
+                    m_Subtrees.add(m_Results);
+                } else {
+                    search(depth + 1, rows, leadEnd, nextNotationIndex, changes);
+                }
+
+                m_CallString.setLength(depth);
+                removeLead(rows, notation);
+            }
+        }
+
+        /**
+         * Works out the period of the calls of the branch with another call added, i.e.
+         * the length of the shortest calling which they repeat (the last repeat may be
+         * cut short). This follows the Fredricksen-Kessler-Maiorana algorithm: a calling
+         * is the first of its rotations exactly when no call is before the call one period
+         * earlier, and the length of the whole touch is a multiple of the period.
+         * @param pr_Depth the number of calls made before the call
+         * @param pr_Call the index of the call
+         * @return the period, or 0 if every touch starting with the calls has a rotation
+         *         which comes before it (always 1 if rotations aren't being skipped)
+         */
+        private int getPeriod(final int pr_Depth, final int pr_Call) {
+            if (!m_SkipRotations || pr_Depth == 0) {
+                return 1;
+            }
+            final int period = m_Periods[pr_Depth - 1];
+            final int previous = m_Path[pr_Depth - period];
+            if (pr_Call < previous) {
+                return 0;
+            } else if (pr_Call == previous) {
+                return period;
+            } else {
+                return pr_Depth + 1;
+            }
+        }
+
+        /**
+         * Rings a lead, counting each row apart from the lead end.
+         * @param pr_Depth the depth of the lead in the branch
+         * @param pr_Rows the array holding the lead head
+         * @param pr_Offset the offset of the lead head in the array
+         * @param pr_Notation the notation of the lead
+         * @return whether the lead could be rung without a row being rung too often (if
+         *         not, none of its rows are counted)
+         */
+        private boolean addLead(final int pr_Depth,
+                                final byte[] pr_Rows,
+                                final int pr_Offset,
+                                final Notation pr_Notation) {
+
+            final byte[][] leadRows = pr_Notation.getLeadRows(m_Bells);
+            final byte[] rows = getLeadRows(pr_Depth, leadRows.length + 1);
+
+            for (int i = 0; i < leadRows.length; i++) {
+                permute(pr_Rows, pr_Offset, leadRows[i], rows, i * m_Bells);
+                if (!m_Proof.add(rows, i * m_Bells)) {
+                    for (int j = 0; j <= i; j++) {
+                        m_Proof.remove(rows, j * m_Bells);
+                    }
+                    return false;
+                }
+            }
+
+            final Row leadHead = pr_Notation.getLeadHead(m_Bells);
+            final int leadEnd = leadRows.length * m_Bells;
+            for (int i = 0; i < m_Bells; i++) {
+                rows[leadEnd + i] = pr_Rows[pr_Offset + leadHead.getBell(i)];
+            }
+
+            return true;
+        }
+
+        /**
+         * Removes the counts of a lead added by {@link #addLead}.
+         * @param pr_Rows the rows of the lead
+         * @param pr_Notation the notation of the lead
+         */
+        private void removeLead(final byte[] pr_Rows, final Notation pr_Notation) {
+            for (int i = 0; i < pr_Notation.size(); i++) {
+                m_Proof.remove(pr_Rows, i * m_Bells);
+            }
+        }
+
+        /**
+         * Gets the array to hold the rows of the lead at a depth of the branch, reusing
+         * the array from the last lead at that depth if it is large enough.
+         * @param pr_Depth the depth (number of calls made before the lead)
+         * @param pr_Rows the number of rows to hold
+         * @return the array
+         */
+        private byte[] getLeadRows(final int pr_Depth, final int pr_Rows) {
+            while (m_LeadRows.size() <= pr_Depth) {
+                m_LeadRows.add(null);
+            }
+            byte[] rows = m_LeadRows.get(pr_Depth);
+            if (rows == null || rows.length < pr_Rows * m_Bells) {
+                rows = new byte[pr_Rows * m_Bells];
+                m_LeadRows.set(pr_Depth, rows);
+            }
+            return rows;
+        }
+
+    }
+
+    /**
+     * Gets the notation of a lead.
+     * @param pr_Call the index of the call made at the end of the lead
+     * @param pr_NotationIndex the index of the notation of the lead
+     * @return the notation
+     * @throws CompositionDefinitionException if the call is not defined for the method
+     */
+    private Notation getNotation(final int pr_Call, final int pr_NotationIndex) throws CompositionDefinitionException {
+        final Notation notation = m_Method.getLeadNotation(m_LeadTypes[pr_Call], pr_NotationIndex);
+        if (notation == null) {
+            throw new CompositionDefinitionException("Call is undefined: " + m_Calls[pr_Call]);
+        }
+        return notation;
+    }
+
+    /**
+     * Applies a permutation to a row, writing the result into another array.
+     * @param pr_Rows the array holding the row
+     * @param pr_Offset the offset of the row in the array
+     * @param pr_Permutation the permutation to apply
+     * @param pu_Rows the array to write the result to
+     * @param pr_ResultOffset the offset at which to write the result
+     */
+    private void permute(final byte[] pr_Rows,
+                         final int pr_Offset,
+                         final byte[] pr_Permutation,
+                         final byte[] pu_Rows,
+                         final int pr_ResultOffset) {
+        for (int i = 0; i < m_Bells; i++) {
+            pu_Rows[pr_ResultOffset + i] = pr_Rows[pr_Offset + pr_Permutation[i]];
+        }
+    }
+
+    /**
+     * @param pr_Rows the array holding the row
+     * @param pr_Offset the offset of the row in the array
+     * @return whether the row is rounds
+     */
+    private boolean isRounds(final byte[] pr_Rows, final int pr_Offset) {
+        for (int i = 0; i < m_Bells; i++) {
+            if (pr_Rows[pr_Offset + i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -25,7 +25,7 @@ public class CompositionWriter extends AbstractCompositionVisitor {
     private boolean m_HeadersFound;
     private int m_LastCompositionLineIndex;
     
-    public CompositionWriter(final Method[] pr_MethodLibrary, final AbstractComposition[] pr_Compositions) {
+    public CompositionWriter(final MethodLibrary pr_MethodLibrary, final AbstractComposition[] pr_Compositions) {
         super(pr_MethodLibrary);
         m_Compositions = pr_Compositions;
         m_CompositionPointer = 0;
@@ -17,7 +17,7 @@ public class ExperimentalCompositionWriter extends AbstractCompositionVisitor {
     private String m_CurrentLine;
     private StringBuilder m_CurrentOutput;
     
-    public ExperimentalCompositionWriter(final Method[] pr_MethodLibrary,
+    public ExperimentalCompositionWriter(final MethodLibrary pr_MethodLibrary,
                                          final AbstractComposition[] pr_Compositions) {
         super(pr_MethodLibrary);
         m_Compositions = pr_Compositions;
@@ -0,0 +1,118 @@
+package linegenerator.core;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Lists the lead heads at which a lead of one notation is false against a lead of
+ * another, so that leads can be proved against each other by their lead heads alone.
+ *
+ * A lead starting at head H is made of the rows H.permute(r) for each row r of the
+ * lead rung from rounds. A lead of notation B at H and a lead of notation A at G
+ * share a row exactly when G = H.permute(b).permute(a.inverse()) for some rows a and
+ * b, so the table holds every distinct permutation b.permute(a.inverse()).
+ *
+ * The table can be restricted to permutations which keep a set of positions fixed.
+ * When every lead head of a touch has the same bells in those positions (e.g. the
+ * treble at lead heads of a treble dominated method) no other entry can match, which
+ * keeps the table close to the number of rows in a lead.
+ *
+ * Tables are looked up by the notations of both leads, the number of bells and the
+ * fixed positions (see {@link Grid#isTrue()}, which proves a grid lead by lead).
+ * Tables are kept with the compiled notation of the lead whose head is permuted (see
+ * {@link Notation#getFalsenessTables(int)}), so each is created once for as long as
+ * the method it belongs to is in use, and collected along with it.
+ *
+ * @author Tom
+ */
+public final class FalsenessTable {
+
+    /** The permutations taking one lead head to a lead head false against it. */
+    private final byte[][] m_LeadHeads;
+
+    /**
+     * Constructor.
+     * @param pr_LeadHeads the permutations taking a lead head to a false lead head
+     */
+    private FalsenessTable(final byte[][] pr_LeadHeads) {
+        m_LeadHeads = pr_LeadHeads;
+    }
+
+    /**
+     * Gets the falseness between two lead notations.
+     * @param pr_From the notation of the lead whose head is permuted
+     * @param pr_To the notation of the lead whose head is looked up
+     * @param pr_Bells the number of bells
+     * @param pr_FixedPositions a bit mask of the positions (zero-based) which every
+     *                          lead head has in common
+     * @return the table
+     */
+    static FalsenessTable get(final Notation pr_From,
+                              final Notation pr_To,
+                              final int pr_Bells,
+                              final int pr_FixedPositions) {
+        final Map<String, FalsenessTable> tables = pr_From.getFalsenessTables(pr_Bells);
+        final String key = pr_To + "|" + pr_FixedPositions;
+        FalsenessTable table = tables.get(key);
+        if (table == null) {
+            table = create(pr_From.getLeadRows(pr_Bells), pr_To.getLeadRows(pr_Bells), pr_Bells, pr_FixedPositions);
+            tables.put(key, table);
+        }
+        return table;
+    }
+
+    /**
+     * Calculates the falseness between two leads.
+     * @param pr_From the rows of the lead whose head is permuted
+     * @param pr_To the rows of the lead whose head is looked up
+     * @param pr_Bells the number of bells
+     * @param pr_FixedPositions a bit mask of the positions which the permutations must fix
+     * @return the table
+     */
+    private static FalsenessTable create(final byte[][] pr_From,
+                                         final byte[][] pr_To,
+                                         final int pr_Bells,
+                                         final int pr_FixedPositions) {
+        final HashSet<Long> found = new HashSet<Long>();
+        final ArrayList<byte[]> leadHeads = new ArrayList<byte[]>();
+        final byte[] inverse = new byte[pr_Bells];
+
+        for (byte[] to : pr_To) {
+            for (int i = 0; i < pr_Bells; i++) {
+                inverse[to[i]] = (byte) i;
+            }
+            outer:
+            for (byte[] from : pr_From) {
+                final byte[] leadHead = new byte[pr_Bells];
+                for (int i = 0; i < pr_Bells; i++) {
+                    leadHead[i] = from[inverse[i]];
+                    if (((pr_FixedPositions >> i) & 1) == 1 && leadHead[i] != i) {
+                        continue outer;
+                    }
+                }
+                if (found.add(Row.pack(leadHead, 0, pr_Bells))) {
+                    leadHeads.add(leadHead);
+                }
+            }
+        }
+
+        return new FalsenessTable(leadHeads.toArray(new byte[leadHeads.size()][]));
+    }
+
+    /**
+     * @return the number of false lead heads in the table
+     */
+    public int size() {
+        return m_LeadHeads.length;
+    }
+
+    /**
+     * @param pr_Index the index of the entry
+     * @return the permutation taking a lead head to a lead head false against it
+     */
+    byte[] get(final int pr_Index) {
+        return m_LeadHeads[pr_Index];
+    }
+
+}
@@ -0,0 +1,151 @@
+package linegenerator.core;
+
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.awt.font.TextAttribute;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.pdf.BaseFont;
+
+/**
+ * Holds the fonts used to draw lines, so each TrueType file is read from disk and
+ * parsed once however many lines are drawn.
+ *
+ * The contents of each font file, the AWT fonts created from them and the sizes derived
+ * from those are immutable and shared by every thread. An iText base font reads from its
+ * font file while a document using it is written, so it can't be shared between threads;
+ * each thread has its own base fonts, created from the cached contents of the file
+ * rather than read from disk again.
+ *
+ * @author Tom
+ */
+public final class FontCache {
+
+    /** The contents of each font file, keyed by path. */
+    private static final ConcurrentHashMap<String, byte[]> s_FontFiles = new ConcurrentHashMap<String, byte[]>();
+
+    /** The AWT fonts, keyed by path and size. */
+    private static final ConcurrentHashMap<String, Font> s_Fonts = new ConcurrentHashMap<String, Font>();
+
+    /** The base fonts of each thread, keyed by path, encoding and embedding. */
+    private static final ThreadLocal<HashMap<String, BaseFont>> s_BaseFonts = new ThreadLocal<HashMap<String, BaseFont>>() {
+        @Override
+        protected HashMap<String, BaseFont> initialValue() {
+            return new HashMap<String, BaseFont>();
+        }
+    };
+
+    private FontCache() {
+    }
+
+    /**
+     * Gets an AWT font from a TrueType file. A font created from a file is plain
+     * whatever its face, so it is given the weight and posture named by its face (e.g.
+     * "Arial Bold"), which doesn't change how it is drawn but lets {@link Font#isBold()}
+     * and {@link Font#isItalic()} be used to describe it.
+     * @param pr_Path the path of the font file
+     * @param pr_Size the size of the font
+     * @return the font
+     * @throws FontFormatException if the file isn't a TrueType font
+     * @throws IOException if the file can't be read
+     */
+    public static Font getFont(final String pr_Path, final float pr_Size) throws FontFormatException, IOException {
+        final String key = pr_Path + "|" + pr_Size;
+        Font font = s_Fonts.get(key);
+        if (font == null) {
+            final Font face = getFont(pr_Path);
+            final String style = face.getFontName(Locale.ENGLISH).substring(face.getFamily(Locale.ENGLISH).length());
+            final Map<TextAttribute, Object> attributes = new Hashtable<TextAttribute, Object>();
+            attributes.put(TextAttribute.SIZE, pr_Size);
+            if (style.matches(".*(Bold|Black|Heavy).*")) {
+                attributes.put(TextAttribute.WEIGHT, TextAttribute.WEIGHT_BOLD);
+            }
+            if (style.matches(".*(Italic|Oblique).*")) {
+                attributes.put(TextAttribute.POSTURE, TextAttribute.POSTURE_OBLIQUE);
+            }
+            font = face.deriveFont(attributes);
+            final Font existing = s_Fonts.putIfAbsent(key, font);
+            if (existing != null) {
+                font = existing;
+            }
+        }
+        return font;
+    }
+
+    /**
+     * Gets an AWT font from a TrueType file, at the size it is created with.
+     * @param pr_Path the path of the font file
+     * @return the font
+     * @throws FontFormatException if the file isn't a TrueType font
+     * @throws IOException if the file can't be read
+     */
+    public static Font getFont(final String pr_Path) throws FontFormatException, IOException {
+        Font font = s_Fonts.get(pr_Path);
+        if (font == null) {
+            font = Font.createFont(Font.TRUETYPE_FONT, new ByteArrayInputStream(getFontFile(pr_Path)));
+            final Font existing = s_Fonts.putIfAbsent(pr_Path, font);
+            if (existing != null) {
+                font = existing;
+            }
+        }
+        return font;
+    }
+
+    /**
+     * Gets an iText base font for the current thread. The font must only be used by
+     * the thread which got it.
+     * @param pr_Path the path of the font file
+     * @param pr_Encoding the encoding of the font (see {@link BaseFont#createFont(String, String, boolean)})
+     * @param pr_Embedded whether to embed the font in the document
+     * @return the font
+     * @throws DocumentException if the font can't be created
+     * @throws IOException if the file can't be read
+     */
+    public static BaseFont getBaseFont(final String pr_Path, final String pr_Encoding, final boolean pr_Embedded) throws DocumentException, IOException {
+        final HashMap<String, BaseFont> baseFonts = s_BaseFonts.get();
+        final String key = pr_Path + "|" + pr_Encoding + "|" + pr_Embedded;
+        BaseFont font = baseFonts.get(key);
+        if (font == null) {
+            font = BaseFont.createFont(pr_Path, pr_Encoding, pr_Embedded, false, getFontFile(pr_Path), null);
+            baseFonts.put(key, font);
+        }
+        return font;
+    }
+
+    /**
+     * Reads the contents of a font file.
+     * @param pr_Path the path of the font file
+     * @return the contents
+     * @throws IOException if the file can't be read
+     */
+    private static byte[] getFontFile(final String pr_Path) throws IOException {
+        byte[] contents = s_FontFiles.get(pr_Path);
+        if (contents == null) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (InputStream input = new FileInputStream(pr_Path)) {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+            }
+            contents = output.toByteArray();
+            final byte[] existing = s_FontFiles.putIfAbsent(pr_Path, contents);
+            if (existing != null) {
+                contents = existing;
+            }
+        }
+        return contents;
+    }
+
+}
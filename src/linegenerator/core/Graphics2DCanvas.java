@@ -0,0 +1,74 @@
+package linegenerator.core;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.font.LineMetrics;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Draws a method line on AWT graphics: a PDF page (see {@link PdfLineRenderer}) or an
+ * image (see {@link PngLineRenderer}).
+ *
+ * @author Tom
+ */
+public class Graphics2DCanvas extends LineCanvas {
+
+    private final Graphics2D m_Graphics;
+
+    /**
+     * Constructor.
+     * @param pr_Graphics the graphics to draw on
+     */
+    public Graphics2DCanvas(final Graphics2D pr_Graphics) {
+        m_Graphics = pr_Graphics;
+    }
+
+    @Override
+    public void setColor(final Color pr_Color) {
+        m_Graphics.setColor(pr_Color);
+    }
+
+    @Override
+    public void setStroke(final float pr_Width) {
+        m_Graphics.setStroke(new BasicStroke(pr_Width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+    }
+
+    @Override
+    public void setFont(final Font pr_Font) {
+        m_Graphics.setFont(pr_Font);
+    }
+
+    @Override
+    public void draw(final Shape pr_Shape) {
+        m_Graphics.draw(pr_Shape);
+    }
+
+    @Override
+    public void fill(final Shape pr_Shape) {
+        m_Graphics.fill(pr_Shape);
+    }
+
+    @Override
+    public void drawString(final String pr_Text, final float pr_X, final float pr_Y) {
+        m_Graphics.drawString(pr_Text, pr_X, pr_Y);
+    }
+
+    @Override
+    public Rectangle2D getStringBounds(final String pr_Text) {
+        return m_Graphics.getFontMetrics(m_Graphics.getFont()).getStringBounds(pr_Text, m_Graphics);
+    }
+
+    @Override
+    public LineMetrics getLineMetrics(final String pr_Text) {
+        return m_Graphics.getFontMetrics(m_Graphics.getFont()).getLineMetrics(pr_Text, m_Graphics);
+    }
+
+    @Override
+    public void dispose() {
+        m_Graphics.dispose();
+    }
+
+}
@@ -1,8 +1,11 @@
 package linegenerator.core;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 
 import linegenerator.core.exceptions.DoesNotEndInRoundsException;
 import linegenerator.core.exceptions.FalseGridException;
@@ -11,23 +14,65 @@ import linegenerator.core.exceptions.RepeatedChangeException;
 /**
  * Represents the a grid of numbers generated for a method.
  * 
+ * The rows are held contiguously in a single byte array (one byte per bell,
+ * see {@link Row}) with the lead end and label flags held in bit sets, so no
+ * objects are created per row. Rows are converted to strings on request.
+ * 
+ * When a whole lead is added only its lead end is written, found by applying the
+ * lead head of the notation to the row the lead starts from. The rest of the rows
+ * of the lead are written the first time any row of the grid is asked for, so a
+ * grid which is proved by its lead heads (see {@link #isTrueByLeads()}) is never
+ * expanded row by row. Lead ends and the last row are always written. A grid being
+ * proved as it is built (see {@link #proveIncrementally(long)}) writes every row as it
+ * is added, so that each can be counted straight away.
+ * 
  * @author Tom
  */
 public class Grid {
 
-	/** The grid of numbers. */
-	protected ArrayList<String> m_Grid;
+    /** Initial number of rows allocated for the grid. */
+    private static final int INITIAL_CAPACITY = 64;
+
+	/** The grid of numbers, stored row by row with one byte per bell. */
+	protected byte[] m_Grid;
+	
+	/** The number of rows in the grid. */
+	protected int m_Size;
+	
+	/** The number of bells in each row. */
+	protected int m_Bells;
     
     /** Stores where the lead ends are in grid. */
-	protected ArrayList<Boolean> m_LeadEnds;
+	protected BitSet m_LeadEnds;
     
     /** Stores where the labels are in grid. */
-	protected ArrayList<Boolean> m_Labels;
+	protected BitSet m_Labels;
 	
 	private Stage m_Stage;
 	
 	private String m_FirstChange;
 	
+	/** Counts the rows proved while the grid is built (null unless proving incrementally). */
+	private TruthChecker m_Proof;
+	
+	/** The number of rows, from the start of the grid, counted by the incremental proof. */
+	private int m_ProvedRows;
+	
+	/** Whether the incremental proof has stopped counting rows. */
+	private boolean m_ProofStopped;
+	
+	/** The first row found to be repeated by the incremental proof. */
+	private String m_RepeatedRow;
+	
+	/** The notation of each whole lead added to the grid, in order. */
+	private ArrayList<Notation> m_LeadNotations;
+	
+	/** The index of the lead head of each whole lead added to the grid. */
+	private ArrayList<Integer> m_LeadStarts;
+	
+	/** The whole leads (indexed as {@link #m_LeadStarts}) whose rows have not been written yet. */
+	private BitSet m_UnexpandedLeads;
+	
 	/**
 	 * Constructor.
 	 */
@@ -40,9 +85,11 @@ public class Grid {
      */
     public Grid(final Stage pr_Stage, final String pr_FirstChange) {
         
-        m_Grid = new ArrayList<String>();
-        m_LeadEnds = new ArrayList<Boolean>();
-        m_Labels = new ArrayList<Boolean>();
+        m_LeadEnds = new BitSet();
+        m_Labels = new BitSet();
+        m_LeadNotations = new ArrayList<Notation>();
+        m_LeadStarts = new ArrayList<Integer>();
+        m_UnexpandedLeads = new BitSet();
 
         m_Stage = pr_Stage;
         m_FirstChange = pr_FirstChange;
@@ -65,6 +112,8 @@ public class Grid {
         }
         
         m_FirstChange = firstChange.toString();
+        m_Bells = m_FirstChange.length();
+        m_Grid = new byte[INITIAL_CAPACITY * m_Bells];
         
         add(m_FirstChange, false, true);
         
@@ -82,66 +131,67 @@ public class Grid {
 	
 	public String add(final Notation pr_Notation, final int pr_Start, final int pr_End)
 	{
-        String currentChange = getLastChange();
+	    final byte[][] changes = pr_Notation.getChanges(m_Bells);
+	    ensureCapacity(m_Size + pr_End - pr_Start + 1);
+	    if (pr_Start == 0 && pr_End == pr_Notation.size() - 1) {
+	        m_LeadNotations.add(pr_Notation);
+	        m_LeadStarts.add(m_Size - 1);
+	        if (m_Proof == null) {
+	            addLead(pr_Notation);
+	            return getLastChange();
+	        }
+	    }
         for (int i = pr_Start; i <= pr_End; i++) {
-            currentChange = cross(currentChange, pr_Notation.get(i), m_Stage);
-            add(currentChange, i == pr_Notation.size() - 1, size() % pr_Notation.size() == 0);
+            final byte[] change = changes[i];
+            final int current = (m_Size - 1) * m_Bells;
+            final int next = current + m_Bells;
+            for (int j = 0; j < m_Bells; j++) {
+                m_Grid[next + j] = m_Grid[current + change[j]];
+            }
+            addFlags(i == pr_Notation.size() - 1, m_Size % pr_Notation.size() == 0);
         }
         
-        return currentChange;
+        return getLastChange();
 	}
-    
-    /**
-     * Performs the cross operation on the specified change.
-     * @param pr_Change The change to operate on
-     * @param pr_Places The places to keep the same
-     * @return The new change
-     */
-    private String cross(final String pr_Change, final String pr_Places, final Stage pr_Stage) {
 
-        /* 
-         * Calculate the external places:
-         * - If the first place in the row is even, add a place at the start
-         * - For even bell methods, if the last place in the row is odd, add a place at the end
-         * - For odd bell methods, if the last place is even, add a place at the end
-         */
-        StringBuffer places = null;
-        if (pr_Places != null) {
-            places = new StringBuffer(pr_Places);
-            int firstPlace = Stage.getPositionOfLabel(places.charAt(0));
-            int lastPlace = Stage.getPositionOfLabel(places.charAt(places.length() - 1));
-            if ((firstPlace % 2) == 0) {
-                // Add external place at the beginning
-                places.insert(0, "1");
-            } else if ((((pr_Stage.getBells() % 2) == 0) && ((lastPlace % 2) == 1)) 
-                       || (((pr_Stage.getBells() % 2) == 1) && ((lastPlace % 2) == 0))) {
-                // Add external place at the end
-                places.append(pr_Stage.getBells());
-            }
-        }
-        
-        /*
-         * Perform the cross using the places
-         */
-        StringBuffer newChange = new StringBuffer();
-        for (int i = 1; i <= pr_Change.length(); i++) {
-            
-            if ((places != null) && places.indexOf(Stage.getLabelAtPosition(i)) > -1) {
-                newChange.append(pr_Change.charAt(i - 1));
-            } else {
-                if (i < pr_Change.length()) {
-                    newChange.append(pr_Change.charAt(i));
-                }
-                newChange.append(pr_Change.charAt(i - 1));
-                if (i < pr_Change.length()) {
-                    i++;
-                }
-            }
-        }
-        
-        return newChange.toString();
-        
-    }
+	/**
+	 * Adds a whole lead to the grid, writing only its lead end. The other rows of the
+	 * lead are written by {@link #expandLeads()}.
+	 * @param pr_Notation the notation of the lead, already recorded as the last lead
+	 */
+	private void addLead(final Notation pr_Notation) {
+	    final Row leadHead = pr_Notation.getLeadHead(m_Bells);
+	    final int size = pr_Notation.size();
+	    final int head = (m_Size - 1) * m_Bells;
+	    final int leadEnd = head + size * m_Bells;
+	    for (int j = 0; j < m_Bells; j++) {
+	        m_Grid[leadEnd + j] = m_Grid[head + leadHead.getBell(j)];
+	    }
+	    for (int i = 0; i < size; i++) {
+	        m_LeadEnds.set(m_Size, i == size - 1);
+	        m_Labels.set(m_Size, m_Size % size == 0);
+	        m_Size++;
+	    }
+	    m_UnexpandedLeads.set(m_LeadStarts.size() - 1);
+	}
+	
+	/**
+	 * Writes the rows of the leads added by {@link #addLead(Notation)}, from their lead
+	 * heads and the rows of the lead notation.
+	 */
+	private void expandLeads() {
+	    for (int lead = m_UnexpandedLeads.nextSetBit(0); lead >= 0; lead = m_UnexpandedLeads.nextSetBit(lead + 1)) {
+	        final byte[][] leadRows = m_LeadNotations.get(lead).getLeadRows(m_Bells);
+	        final int head = m_LeadStarts.get(lead) * m_Bells;
+	        for (int i = 1; i < leadRows.length; i++) {
+	            final int row = head + i * m_Bells;
+	            for (int j = 0; j < m_Bells; j++) {
+	                m_Grid[row + j] = m_Grid[head + leadRows[i][j]];
+	            }
+	        }
+	    }
+	    m_UnexpandedLeads.clear();
+	}
 
 	/**
 	 * Adds a row to the grid.
@@ -149,19 +199,121 @@ public class Grid {
 	 * @param pr_LeadEnd whether the row is a lead end
 	 */
 	public final String add(final String pr_Row, final boolean pr_LeadEnd, final boolean pr_Label) {
-	    m_Labels.add(pr_Label);
-		m_Grid.add(pr_Row);
-		m_LeadEnds.add(pr_LeadEnd);
-		return getLastChange();
+	    ensureCapacity(m_Size + 1);
+	    final int offset = m_Size * m_Bells;
+	    for (int i = 0; i < m_Bells; i++) {
+	        m_Grid[offset + i] = (byte) (Stage.getPositionOfLabel(pr_Row.charAt(i)) - 1);
+	    }
+	    addFlags(pr_LeadEnd, pr_Label);
+		return pr_Row;
+	}
+	
+	/**
+	 * Adds a row to the grid.
+	 * @param pr_Row the row to add
+	 * @param pr_LeadEnd whether the row is a lead end
+	 */
+	public final Row add(final Row pr_Row, final boolean pr_LeadEnd, final boolean pr_Label) {
+	    ensureCapacity(m_Size + 1);
+	    pr_Row.copyTo(m_Grid, m_Size * m_Bells);
+	    addFlags(pr_LeadEnd, pr_Label);
+	    return pr_Row;
 	}
 	
 	public final String add(final Grid pr_Grid)
 	{
-	    m_Labels.addAll(pr_Grid.m_Labels.subList(1, pr_Grid.m_Labels.size()));
-	    m_Grid.addAll(pr_Grid.m_Grid.subList(1, pr_Grid.m_Grid.size()));
-	    m_LeadEnds.addAll(pr_Grid.m_LeadEnds.subList(1, pr_Grid.m_LeadEnds.size()));
+	    final int rows = pr_Grid.m_Size - 1;
+	    pr_Grid.expandLeads();
+	    ensureCapacity(m_Size + rows);
+	    for (int i = 0; i < pr_Grid.m_LeadStarts.size(); i++) {
+	        m_LeadNotations.add(pr_Grid.m_LeadNotations.get(i));
+	        m_LeadStarts.add(pr_Grid.m_LeadStarts.get(i) + m_Size - 1);
+	    }
+	    System.arraycopy(pr_Grid.m_Grid, m_Bells, m_Grid, m_Size * m_Bells, rows * m_Bells);
+	    for (int i = 1; i <= rows; i++) {
+	        m_LeadEnds.set(m_Size + i - 1, pr_Grid.m_LeadEnds.get(i));
+	        m_Labels.set(m_Size + i - 1, pr_Grid.m_Labels.get(i));
+	    }
+	    m_Size += rows;
+	    if (m_Proof != null) {
+	        updateProof();
+	    }
 	    return getLastChange();
 	}
+	
+	/**
+	 * Records the flags of a row which has been written after the last row and
+	 * includes it in the grid.
+	 * @param pr_LeadEnd whether the row is a lead end
+	 * @param pr_Label whether the row is labelled
+	 */
+	private void addFlags(final boolean pr_LeadEnd, final boolean pr_Label) {
+	    m_LeadEnds.set(m_Size, pr_LeadEnd);
+	    m_Labels.set(m_Size, pr_Label);
+	    m_Size++;
+	    if (m_Proof != null) {
+	        updateProof();
+	    }
+	}
+	
+	/**
+	 * Proves the grid as it is built, so a falsity is found as soon as the repeated row
+	 * is added rather than once the whole grid has been generated. Rows already in the
+	 * grid are proved straight away.
+	 * 
+	 * The proof stops counting once the grid comes back to its first row, since rows
+	 * after that may be removed again when the touch is finished; {@link #isTrue()}
+	 * still gives the final answer.
+	 * 
+	 * @param pr_MaxChanges the most changes the grid will be extended to, which sets
+	 *                      how many times each row may occur
+	 */
+	public void proveIncrementally(final long pr_MaxChanges) {
+	    final int expectedRows = (int) Math.min(pr_MaxChanges, Math.min(getStage().getMaxChanges(), Integer.MAX_VALUE));
+	    m_Proof = new TruthChecker(m_Bells, getStage().getExtents(pr_MaxChanges), expectedRows);
+	    m_ProvedRows = 0;
+	    m_ProofStopped = false;
+	    m_RepeatedRow = null;
+	    expandLeads();
+	    updateProof();
+	}
+	
+	/**
+	 * Counts the rows added since the incremental proof was last updated. The last
+	 * row is not counted until another follows it, as a grid ends with its first row.
+	 */
+	private void updateProof() {
+	    while (!m_ProofStopped && m_ProvedRows < m_Size - 1) {
+	        if (m_ProvedRows > 0 && rowsEqual(0, m_ProvedRows)) {
+	            m_ProofStopped = true;
+	        } else if (!m_Proof.add(m_Grid, m_ProvedRows * m_Bells)) {
+	            m_RepeatedRow = getRow(m_ProvedRows);
+	            m_ProofStopped = true;
+	        } else {
+	            m_ProvedRows++;
+	        }
+	    }
+	}
+	
+	/**
+	 * Checks whether the incremental proof has found a repeated row.
+	 * @throws RepeatedChangeException if a row has been added more often than allowed
+	 */
+	public void checkTruth() throws RepeatedChangeException {
+	    if (m_RepeatedRow != null) {
+	        throw new RepeatedChangeException(m_RepeatedRow);
+	    }
+	}
+	
+	/**
+	 * Grows the grid storage so it can hold the specified number of rows.
+	 * @param pr_Rows the number of rows required
+	 */
+	private void ensureCapacity(final int pr_Rows) {
+	    if (pr_Rows * m_Bells > m_Grid.length) {
+	        m_Grid = Arrays.copyOf(m_Grid, Math.max(pr_Rows, m_Grid.length / m_Bells * 2) * m_Bells);
+	    }
+	}
     
     /**
      * Gets the specified row from the grid.
@@ -169,13 +321,32 @@ public class Grid {
      * @return the row
      */
     public final String getRow(final int pr_Index) {
-        return m_Grid.get(pr_Index);
+        checkIndex(pr_Index);
+        expandLeads();
+        return Row.toString(m_Grid, pr_Index * m_Bells, m_Bells);
     }
-
+    
     public void removeRow(final int pr_Index) {
-        m_Grid.remove(pr_Index);
-        m_Labels.remove(pr_Index);
-        m_LeadEnds.remove(pr_Index);
+        checkIndex(pr_Index);
+        expandLeads();
+        if (pr_Index < m_ProvedRows) {
+            m_Proof.remove(m_Grid, pr_Index * m_Bells);
+            m_ProvedRows--;
+        }
+        int lastLead = m_LeadStarts.size() - 1;
+        while (lastLead >= 0 && m_LeadStarts.get(lastLead) + m_LeadNotations.get(lastLead).size() >= pr_Index) {
+            m_LeadStarts.remove(lastLead);
+            m_LeadNotations.remove(lastLead);
+            lastLead--;
+        }
+        System.arraycopy(m_Grid, (pr_Index + 1) * m_Bells, m_Grid, pr_Index * m_Bells, (m_Size - pr_Index - 1) * m_Bells);
+        for (int i = pr_Index; i < m_Size - 1; i++) {
+            m_LeadEnds.set(i, m_LeadEnds.get(i + 1));
+            m_Labels.set(i, m_Labels.get(i + 1));
+        }
+        m_Size--;
+        m_LeadEnds.clear(m_Size);
+        m_Labels.clear(m_Size);
     }
     
     /**
@@ -184,6 +355,7 @@ public class Grid {
      * @return whether it is a lead end
      */
     public final boolean isLeadEnd(final int pr_Index) {
+        checkIndex(pr_Index);
         return m_LeadEnds.get(pr_Index);
     }
     
@@ -193,111 +365,304 @@ public class Grid {
      * @return whether it is a lead end
      */
     public final boolean isLabel(final int pr_Index) {
+        checkIndex(pr_Index);
         return m_Labels.get(pr_Index);
     }
+    
+    private void checkIndex(final int pr_Index) {
+        if (pr_Index < 0 || pr_Index >= m_Size) {
+            throw new IndexOutOfBoundsException("Index: " + pr_Index + ", Size: " + m_Size);
+        }
+    }
 	
 	/**
 	 * @return the size of the grid.
 	 */
 	public final int size() {
-		return m_Grid.size();
+		return m_Size;
 	}
     
     public String getFirstLeadEnd() {
-        for (int i = 0; i < m_Grid.size(); i++) {
-            if (m_LeadEnds.get(i)) {
-                return m_Grid.get(i);
-            }
+        final int leadEnd = m_LeadEnds.nextSetBit(0);
+        if (leadEnd >= 0 && leadEnd < m_Size) {
+            return Row.toString(m_Grid, leadEnd * m_Bells, m_Bells);
         }
-        return m_Grid.get(m_Grid.size() - 1);
+        return getLastChange();
     }
     
     public String getLastLeadEnd() {
-        for (int i = m_Grid.size() - 1; i >= 0; i--) {
+        for (int i = m_Size - 1; i >= 0; i--) {
             if (m_LeadEnds.get(i)) {
-                return m_Grid.get(i);
+                return Row.toString(m_Grid, i * m_Bells, m_Bells);
             }
         }
-        return m_Grid.get(0);
+        return Row.toString(m_Grid, 0, m_Bells);
     }
 	
 	public HashMap<String, String> getTransitions()
+	{
+	    return getTransitions(getFirstLeadEnd());
+	}
+	
+	/**
+	 * Gets the position each bell moves to over a lead.
+	 * @param pr_LeadHead the lead head reached from rounds
+	 * @return the new position of each bell, keyed by its starting position
+	 */
+	public static HashMap<String, String> getTransitions(final String pr_LeadHead)
 	{
 	    final HashMap<String, String> transitions = new HashMap<String, String>();
-	    final String leadHead = getFirstLeadEnd();
-        for (int j = 1; j <= leadHead.length(); j++) {
+        for (int j = 1; j <= pr_LeadHead.length(); j++) {
             String bell = Stage.getLabelAtPosition(j);
-            transitions.put(bell, Stage.getLabelAtPosition(leadHead.indexOf(bell) + 1));
+            transitions.put(bell, Stage.getLabelAtPosition(pr_LeadHead.indexOf(bell) + 1));
         }
 	    return transitions;
 	}
 
 	public String getLastChange() {
-	    if (m_Grid.size() == 0) {
+	    if (m_Size == 0) {
 	        return null;
 	    }
-	    return m_Grid.get(m_Grid.size() - 1);
+	    return Row.toString(m_Grid, (m_Size - 1) * m_Bells, m_Bells);
+	}
+	
+	/**
+	 * Determines whether two rows of the grid are the same.
+	 * @param pr_First the index of the first row
+	 * @param pr_Second the index of the second row
+	 * @return whether the rows are the same
+	 */
+	private boolean rowsEqual(final int pr_First, final int pr_Second) {
+	    final int first = pr_First * m_Bells;
+	    final int second = pr_Second * m_Bells;
+	    for (int i = 0; i < m_Bells; i++) {
+	        if (m_Grid[first + i] != m_Grid[second + i]) {
+	            return false;
+	        }
+	    }
+	    return true;
 	}
 	
+	/**
+	 * Checks the grid is true. On a length longer than the extent, each row may occur
+	 * as many times as the number of extents the length covers.
+	 * 
+	 * Where the grid is mostly made of whole leads within an extent, the leads are
+	 * proved against each other by their lead heads (see {@link #isTrueByLeads()}).
+	 * @return true
+	 * @throws DoesNotEndInRoundsException if the last row is not the first row
+	 * @throws RepeatedChangeException if a row occurs more often than allowed
+	 */
 	public boolean isTrue() throws FalseGridException {
 	    
-	    int numExtents = (int) Math.ceil((float)(size() - 1) / (float)getStage().getMaxChanges());
+	    final int numExtents = getStage().getExtents(size() - 1);
 	    
-	    ArrayList<String> sortedGrid = new ArrayList<String>(m_Grid);
-	    String lastChange = sortedGrid.remove(sortedGrid.size() - 1); // Remove the last element to check later
-	            
-        if (!m_Grid.get(0).equals(lastChange)) {
-            throw new DoesNotEndInRoundsException(lastChange);
-        }
+	    if (!rowsEqual(0, m_Size - 1)) {
+	        throw new DoesNotEndInRoundsException(getLastChange());
+	    }
+	    
+	    if (numExtents <= 1 && isTrueByLeads()) {
+	        return true;
+	    }
+	    
+	    expandLeads();
+	    final TruthChecker checker = new TruthChecker(m_Bells, numExtents, m_Size - 1);
+	    for (int i = 0; i < m_Size - 1; i++) {
+	        if (!checker.add(m_Grid, i * m_Bells)) {
+	            throw new RepeatedChangeException(getRow(i));
+	        }
+	    }
+	    
+	    return true;
+	}
+
+	/**
+	 * Proves the grid using the whole leads added to it, by looking up the lead heads
+	 * each lead would be false against in a {@link FalsenessTable} rather than checking
+	 * every row. Any rows not in a whole lead are checked against the leads and each
+	 * other one by one. Only used within a single extent.
+	 * 
+	 * This is only attempted where it takes fewer look ups than checking every row,
+	 * which needs a bell in the same place at every lead head (such as a hunt bell)
+	 * to keep the tables small.
+	 * 
+	 * @return true if the grid is proved true, false if it is false or could not be
+	 *         proved this way
+	 */
+	private boolean isTrueByLeads() {
+	    
+	    if (m_LeadStarts.isEmpty()) {
+	        return false;
+	    }
+	    
+	    // Find the distinct lead notations and the positions common to every lead head
+	    final IdentityHashMap<Notation, Integer> kinds = new IdentityHashMap<Notation, Integer>();
+	    final ArrayList<Notation> kindNotations = new ArrayList<Notation>();
+	    final int[] leadKinds = new int[m_LeadStarts.size()];
+	    final BitSet covered = new BitSet(m_Size);
+	    int fixedPositions = (1 << m_Bells) - 1;
+	    int longestLead = 0;
+	    int leadRows = 0;
+	    final int firstHead = m_LeadStarts.get(0) * m_Bells;
+	    for (int i = 0; i < leadKinds.length; i++) {
+	        final Notation notation = m_LeadNotations.get(i);
+	        Integer kind = kinds.get(notation);
+	        if (kind == null) {
+	            kind = kindNotations.size();
+	            kinds.put(notation, kind);
+	            kindNotations.add(notation);
+	            if (!isLeadTrue(notation)) {
+	                return false;
+	            }
+	        }
+	        leadKinds[i] = kind;
+	        final int start = m_LeadStarts.get(i);
+	        covered.set(start, start + notation.size());
+	        longestLead = Math.max(longestLead, notation.size());
+	        leadRows += notation.size();
+	        for (int j = 0; j < m_Bells; j++) {
+	            if (m_Grid[start * m_Bells + j] != m_Grid[firstHead + j]) {
+	                fixedPositions &= ~(1 << j);
+	            }
+	        }
+	    }
+	    if (fixedPositions == 0 || covered.cardinality() != leadRows) {
+	        // No common positions, or leads which overlap
+	        return false;
+	    }
 	    
-	    Collections.sort(sortedGrid);
+	    // Only carry on if it will take fewer look ups than checking each row
+	    final int uncoveredRows = m_Size - 1 - covered.cardinality();
+	    if (uncoveredRows > longestLead) {
+	        return false;
+	    }
+	    final FalsenessTable[][] tables = new FalsenessTable[kindNotations.size()][kindNotations.size()];
+	    int lookUps = uncoveredRows * longestLead * kindNotations.size();
+	    for (int i = 0; i < leadKinds.length; i++) {
+	        for (int kind = 0; kind < tables.length; kind++) {
+	            if (tables[leadKinds[i]][kind] == null) {
+	                tables[leadKinds[i]][kind] = FalsenessTable.get(kindNotations.get(leadKinds[i]), kindNotations.get(kind), m_Bells, fixedPositions);
+	            }
+	            lookUps += tables[leadKinds[i]][kind].size();
+	        }
+	        if (lookUps >= m_Size) {
+	            return false;
+	        }
+	    }
+	    
+	    // Check each lead head against the leads before it
+	    final ArrayList<HashSet<Long>> leadHeads = new ArrayList<HashSet<Long>>();
+	    for (int kind = 0; kind < tables.length; kind++) {
+	        leadHeads.add(new HashSet<Long>());
+	    }
+	    final byte[] falseLeadHead = new byte[m_Bells];
+	    for (int i = 0; i < leadKinds.length; i++) {
+	        final int head = m_LeadStarts.get(i) * m_Bells;
+	        for (int kind = 0; kind < tables.length; kind++) {
+	            final FalsenessTable table = tables[leadKinds[i]][kind];
+	            final HashSet<Long> heads = leadHeads.get(kind);
+	            if (heads.isEmpty()) {
+	                continue;
+	            }
+	            for (int j = 0; j < table.size(); j++) {
+	                final byte[] permutation = table.get(j);
+	                for (int k = 0; k < m_Bells; k++) {
+	                    falseLeadHead[k] = m_Grid[head + permutation[k]];
+	                }
+	                if (heads.contains(Row.pack(falseLeadHead, 0, m_Bells))) {
+	                    return false;
+	                }
+	            }
+	        }
+	        if (!leadHeads.get(leadKinds[i]).add(Row.pack(m_Grid, head, m_Bells))) {
+	            return false;
+	        }
+	    }
 	    
-	    outer: for (int i = 0; i < sortedGrid.size(); ) {
-	        inner: for (int j = 1; j <= numExtents + 1; j++) {
-    	        if (i + j < sortedGrid.size()) {
-    	            if (sortedGrid.get(i).equals(sortedGrid.get(i + j))) {
-    	                if (j > numExtents - 1) {
-    	                    throw new RepeatedChangeException(sortedGrid.get(i));
-    	                }
-    	            } else {
-    	                i += j;
-    	                break inner;
-    	            }
-    	        } else {
-    	            break outer;
-    	        }
+	    // Check the remaining rows against the leads and each other
+	    final TruthChecker checker = new TruthChecker(m_Bells, 1);
+	    for (int i = covered.nextClearBit(0); i < m_Size - 1; i = covered.nextClearBit(i + 1)) {
+	        if (!checker.add(m_Grid, i * m_Bells)) {
+	            return false;
+	        }
+	        for (int kind = 0; kind < tables.length; kind++) {
+	            final HashSet<Long> heads = leadHeads.get(kind);
+	            for (byte[] leadRow : kindNotations.get(kind).getLeadRows(m_Bells)) {
+	                // The lead head is the row permuted by the inverse of the lead row
+	                for (int k = 0; k < m_Bells; k++) {
+	                    falseLeadHead[leadRow[k]] = m_Grid[i * m_Bells + k];
+	                }
+	                if (heads.contains(Row.pack(falseLeadHead, 0, m_Bells))) {
+	                    return false;
+	                }
+	            }
 	        }
 	    }
 	    
 	    return true;
 	}
+	
+	/**
+	 * Checks that a lead of the notation does not repeat any of its own rows.
+	 * @param pr_Notation the notation of the lead
+	 * @return whether the lead is true
+	 */
+	private boolean isLeadTrue(final Notation pr_Notation) {
+	    final TruthChecker checker = new TruthChecker(m_Bells, 1);
+	    for (byte[] leadRow : pr_Notation.getLeadRows(m_Bells)) {
+	        if (!checker.add(leadRow, 0)) {
+	            return false;
+	        }
+	    }
+	    return true;
+	}
 
 	@Override
 	public String toString() {
 	    StringBuffer grid = new StringBuffer();
-	    for (String row : m_Grid) {
-	        grid.append(row + "\n");
+	    for (int i = 0; i < m_Size; i++) {
+	        grid.append(getRow(i) + "\n");
 	    }
 	    return grid.toString();
 	}
 	
 	public Stage getStage()
 	{
-	    return Stage.getStage("" + m_Grid.get(0).length());
+	    return Stage.getStage("" + m_Bells);
+	}
+	
+	/**
+	 * Determines whether the specified row of the grid is rounds.
+	 * @param pr_Index the row to check
+	 * @return whether it is rounds
+	 */
+	private boolean isRounds(final int pr_Index) {
+	    final int offset = pr_Index * m_Bells;
+	    for (int i = 0; i < m_Bells; i++) {
+	        if (m_Grid[offset + i] != i) {
+	            return false;
+	        }
+	    }
+	    return true;
 	}
 
     public boolean containsRounds()
     {
-        return (m_Grid.size() > 0) &&
-               m_Grid.subList(1, m_Grid.size()).contains(Stage.getFirstChange(m_Grid.get(0).length()));
+        expandLeads();
+        for (int i = 1; i < m_Size; i++) {
+            if (isRounds(i)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public boolean containsSufficientRounds()
     {
-        final String firstChange = m_Stage.getFirstChange();
+        expandLeads();
         int numRounds = 0;
-        for (int i = 1; i < m_Grid.size(); i++) {
-            if (m_Grid.get(i).equals(firstChange)) {
+        for (int i = 1; i < m_Size; i++) {
+            if (isRounds(i)) {
                 numRounds++;
             }
         }
@@ -311,7 +676,7 @@ public class Grid {
     
     public boolean endsInRounds()
     {
-        return getLastChange().equals(Stage.getFirstChange(m_Grid.get(0).length()));
+        return isRounds(m_Size - 1);
     }
     
 }
@@ -0,0 +1,9 @@
+package linegenerator.core;
+
+public interface ICompositionSearchListener {
+
+    public void compositionFound(final SimpleComposition pr_Composition, final String pr_Calls);
+    public void compositionAbandoned(final String pr_Calls, final int pr_Changes);
+    public void checkpointReached(final int[] pr_Path);
+
+}
@@ -0,0 +1,9 @@
+package linegenerator.core;
+
+public interface IMethodGenerationListener {
+
+    public void methodGenerated(final Method pr_Method, final boolean pr_Written);
+    public void methodGenerationFailed(final Method pr_Method, final Exception pr_Error);
+    public void progressMade(final int pr_Completed, final int pr_Total, final long pr_RemainingMillis);
+
+}
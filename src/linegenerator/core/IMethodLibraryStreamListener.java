@@ -0,0 +1,7 @@
+package linegenerator.core;
+
+public interface IMethodLibraryStreamListener extends IMethodLibraryReaderListener {
+
+    public void methodFound(final Method pr_Method);
+    
+}
@@ -3,6 +3,7 @@ package linegenerator.core;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 
 import linegenerator.core.exceptions.CompositionDefinitionException;
 import linegenerator.core.exceptions.FalseGridException;
@@ -11,7 +12,7 @@ public class LeadCountTableComposition extends AbstractTableComposition {
 
     private boolean m_IsTwinBobComposition;
 
-    public LeadCountTableComposition(final HashMap<String, Method> pr_MethodLibrary, final int pr_Changes) {
+    public LeadCountTableComposition(final MethodTable pr_MethodLibrary, final int pr_Changes) {
         super(pr_MethodLibrary, pr_Changes);
         m_IsTwinBobComposition = false;
     }
@@ -106,6 +107,17 @@ public class LeadCountTableComposition extends AbstractTableComposition {
         
         final ArrayList<Integer> headers = getSimplifiedHeaders(rows);
         
+        final HashSet<Method> methods = new HashSet<Method>();
+        methods.add(m_FirstMethod);
+        long maxLeads = 1;
+        for (TableCompositionRow methodRow : rows) {
+            for (Method method : methodRow.getMethods()) {
+                methods.add(method);
+            }
+            maxLeads += (methodRow.getNumLeads() != -1 ? methodRow.getNumLeads() : defaultNumLeads) + 1;
+        }
+        startIncrementalProof(grid, maxLeads + getMaxFinishingLeads(methods), methods);
+        
         int leadCount;
         int headerPointer;
         int nextCall;
@@ -166,6 +178,7 @@ public class LeadCountTableComposition extends AbstractTableComposition {
                     currentPosition = m_PlainLeadTransitions.get(rows.get(methodRowPointer).getMethods()[methodPointer]).get(notationIndex).get(currentPosition);
                 }
                 grid.add(newRows);
+                grid.checkTruth();
                 
                 if (methodPointer < rows.get(methodRowPointer).getMethods().length - 1) {
                     methodPointer++;
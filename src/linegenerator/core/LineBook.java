@@ -0,0 +1,86 @@
+package linegenerator.core;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+
+import linegenerator.core.exceptions.MethodGenerationException;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.pdf.PdfWriter;
+
+/**
+ * Draws the lines of many methods into a single PDF file, one method to a page, each
+ * page sized to its line as it would be in a file of its own (see {@link LineFactory}).
+ *
+ * Each page is written to the file as soon as the next is started, so only the page
+ * being drawn is held however many methods are added. The fonts are embedded once for
+ * the whole book, with the characters used on every page, when it is closed.
+ *
+ * A book must be drawn on a single thread.
+ *
+ * @author Tom
+ */
+public class LineBook {
+
+    private final LineFactory m_Factory;
+    private final Document m_Document;
+    private final PdfWriter m_Writer;
+    private int m_Pages;
+
+    /**
+     * Constructor.
+     * @param pr_Factory the factory to lay out and draw the lines
+     * @param pr_File the file to write the book to
+     * @throws FileNotFoundException if the file can't be created
+     * @throws MethodGenerationException if the PDF file can't be created
+     */
+    public LineBook(final LineFactory pr_Factory, final File pr_File) throws FileNotFoundException, MethodGenerationException {
+        m_Factory = pr_Factory;
+        m_Document = pr_Factory.createDocument(PageSize.A4);
+        try {
+            m_Writer = PdfWriter.getInstance(m_Document, new BufferedOutputStream(new FileOutputStream(pr_File)));
+        } catch (DocumentException e) {
+            throw new MethodGenerationException("Unable to create PDF file: " + e.getMessage());
+        }
+        m_Pages = 0;
+    }
+
+    /**
+     * Draws the line of a method on the next page.
+     * @param pr_Method the method
+     * @throws MethodGenerationException if the line can't be drawn
+     */
+    public void add(final Method pr_Method) throws MethodGenerationException {
+        final LineFactory.Page page = m_Factory.layoutPage(pr_Method);
+        try {
+            m_Factory.drawPage(page, m_Document, m_Writer);
+        } catch (DocumentException e) {
+            throw new MethodGenerationException("Unable to add page for " + pr_Method + ": " + e.getMessage());
+        }
+        m_Pages++;
+    }
+
+    /**
+     * @return the number of pages drawn
+     */
+    public int getPages() {
+        return m_Pages;
+    }
+
+    /**
+     * Finishes the book, embedding the fonts and closing the file. A book without any
+     * pages is left empty.
+     */
+    public void close() {
+        if (m_Document.isOpen()) {
+            m_Document.close();
+        } else {
+            m_Writer.close();
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package linegenerator.core;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.font.LineMetrics;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * A surface a method line is drawn on (see {@link LineFactory}), in points with the
+ * origin at the top left of the page. Only the drawing the lines need is supported:
+ * stroked and filled shapes and text in a single colour.
+ *
+ * @author Tom
+ */
+public abstract class LineCanvas {
+
+    /**
+     * @param pr_Color the colour to draw in
+     */
+    public abstract void setColor(final Color pr_Color);
+
+    /**
+     * @param pr_Width the width of the lines to draw, which have round caps and joins
+     */
+    public abstract void setStroke(final float pr_Width);
+
+    /**
+     * @param pr_Font the font to draw text in
+     */
+    public abstract void setFont(final Font pr_Font);
+
+    /**
+     * Draws the outline of a shape.
+     * @param pr_Shape the shape
+     */
+    public abstract void draw(final Shape pr_Shape);
+
+    /**
+     * Fills a shape.
+     * @param pr_Shape the shape
+     */
+    public abstract void fill(final Shape pr_Shape);
+
+    /**
+     * Draws text.
+     * @param pr_Text the text
+     * @param pr_X the left of the text
+     * @param pr_Y the baseline of the text
+     */
+    public abstract void drawString(final String pr_Text, final float pr_X, final float pr_Y);
+
+    /**
+     * @param pr_Text the text
+     * @return the bounds of the text in the current font
+     */
+    public abstract Rectangle2D getStringBounds(final String pr_Text);
+
+    /**
+     * @param pr_Text the text
+     * @return the metrics of the text in the current font
+     */
+    public abstract LineMetrics getLineMetrics(final String pr_Text);
+
+    /**
+     * Releases anything held for drawing.
+     */
+    public abstract void dispose();
+
+}
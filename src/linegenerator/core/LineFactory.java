@@ -1,27 +1,21 @@
 package linegenerator.core;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.FontFormatException;
-import java.awt.FontMetrics;
-import java.awt.Graphics2D;
 import java.awt.font.LineMetrics;
-import java.awt.font.TextAttribute;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Hashtable;
-import java.util.Map;
 import java.util.Properties;
+import java.util.TreeSet;
 
 import linegenerator.core.LinePoint.Direction;
 import linegenerator.core.exceptions.MethodGenerationException;
@@ -34,6 +28,15 @@ import com.lowagie.text.Rectangle;
 import com.lowagie.text.pdf.BaseFont;
 import com.lowagie.text.pdf.PdfWriter;
 
+/**
+ * Draws the line of a method to a PDF file.
+ *
+ * The properties are read when the factory is constructed and only read after that, and
+ * each line is drawn to its own document, so one factory can draw several lines at once
+ * on different threads (see {@link MethodGeneratorPool}).
+ *
+ * @author Tom
+ */
 public class LineFactory extends AbstractMethodGenerator {
 
     /** The size of a place bell dot. */
@@ -85,6 +88,15 @@ public class LineFactory extends AbstractMethodGenerator {
 	
 	private float m_CrossWidth = m_LineWidth;
 	private Color m_CrossColor = Color.DARK_GRAY;
+	
+	/** The line properties, as they change what is drawn (see {@link #getSettings(Method)}). */
+	private String m_Settings;
+	
+	/** The fine control properties of each method, keyed by file identifier. */
+	private HashMap<String, String> m_FineControl;
+	
+	/** The format to write the lines in. */
+	private AbstractLineRenderer m_Renderer = new PdfLineRenderer();
     
     public LineFactory(final File pr_OutputDir, final String pr_PropertiesFile) {
         
@@ -103,6 +115,12 @@ public class LineFactory extends AbstractMethodGenerator {
         } else {
         	System.err.println("Warning: no line properties file found, using defaults");
         }
+        final StringBuilder settings = new StringBuilder();
+        for (String name : new TreeSet<String>(properties.stringPropertyNames())) {
+            settings.append(name).append('=').append(properties.getProperty(name)).append('\n');
+        }
+        m_Settings = settings.toString();
+        
         m_DotSize = Float.parseFloat(properties.getProperty("DotSize", String.valueOf(m_DotSize)));
         m_LineWidth = Float.parseFloat(properties.getProperty("LineWidth", String.valueOf(m_LineWidth)));
         m_PlaceMultiplier = Float.parseFloat(properties.getProperty("PlaceMultiplier", String.valueOf(m_PlaceMultiplier)));
@@ -157,6 +175,7 @@ public class LineFactory extends AbstractMethodGenerator {
         
         m_MethodTitleSizes = new HashMap<String,Integer>();
         m_LabelPositions = new HashMap<String, HashMap<String,LinePoint.Direction>>();
+        m_FineControl = new HashMap<String, String>();
         properties = new Properties();
         propertiesFile = new File("FineControl.properties");
         if (propertiesFile.exists()) {
@@ -172,6 +191,7 @@ public class LineFactory extends AbstractMethodGenerator {
         for (Object method : properties.keySet()) {
         	String methodStr = (String) method;
         	String controlElementsStr = properties.getProperty(methodStr);
+        	m_FineControl.put(methodStr, controlElementsStr);
         	String[] controlElements = controlElementsStr.split("\\|");
         	if (!controlElements[0].isEmpty()) {
         		try {
@@ -200,17 +220,60 @@ public class LineFactory extends AbstractMethodGenerator {
         }
     }
     
-    public boolean generate(final Method pr_Method, final boolean pr_Overwrite) throws FileNotFoundException, MethodGenerationException
+    /**
+     * @param pr_Renderer the renderer to write the lines with; PDF unless set
+     */
+    public void setRenderer(final AbstractLineRenderer pr_Renderer) {
+    	m_Renderer = pr_Renderer;
+    }
+    
+    @Override
+    public File getOutputFile(final Method pr_Method) {
+        return new File(m_OutputDir,
+                        pr_Method.getFileIdentifier() + 
+                        m_Renderer.getFileExtension());
+    }
+    
+    /**
+     * The settings a line depends on are the line properties, the method's fine control
+     * properties and the format it is written in.
+     */
+    @Override
+    protected String getSettings(final Method pr_Method) {
+        return m_Settings + m_Renderer.getSettings() + "\n" + m_FineControl.get(pr_Method.getFileIdentifier());
+    }
+    
+    public boolean generate(final Method pr_Method, final boolean pr_Overwrite) throws IOException, MethodGenerationException
     {
-    	final String methodIdentifier = pr_Method.getFileIdentifier();
-        final File outputFile = new File(getOutputDirectory().getAbsolutePath() + 
-                                         File.separator + 
-                                         methodIdentifier + 
-                                         ".pdf");
+        final File outputFile = getOutputFile(pr_Method);
         if (!pr_Overwrite && outputFile.exists()) {
             return false;
         }
         
+        getOutputDirectory();
+        m_Renderer.render(this, layoutPage(pr_Method), outputFile);
+        return true;
+    }
+    
+    /**
+     * Creates a document to draw lines on, with the margins the lines are laid out for.
+     * @param pr_PageSize the size of the first page
+     * @return the document
+     */
+    Document createDocument(final Rectangle pr_PageSize) {
+    	return new Document(pr_PageSize, 0.0f, 0.0f, m_VerticalOffset, 0.0f);
+    }
+    
+    /**
+     * Lays out the line of a method on a page of its own, with the title and description
+     * above it.
+     * @param pr_Method the method
+     * @return the layout, to be drawn by {@link #drawPage(Page, Document, PdfWriter)}
+     * @throws MethodGenerationException if the fonts can't be loaded or the text laid out
+     */
+    Page layoutPage(final Method pr_Method) throws MethodGenerationException
+    {
+    	final String methodIdentifier = pr_Method.getFileIdentifier();
         final Notation notation = new Notation();
         for (int i = 0; i < pr_Method.getPlaceNotation().length; i++) {
             notation.addAll(pr_Method.getLeadNotation(LeadType.PLAIN, i));
@@ -280,9 +343,9 @@ public class LineFactory extends AbstractMethodGenerator {
         BaseFont titleBaseFont;
         BaseFont descriptonBaseFont;
         try {
-            placeBellFont = Font.createFont(Font.TRUETYPE_FONT, new FileInputStream(m_FontDirectory + "/" + m_LabelFont));
-            titleBaseFont = BaseFont.createFont(m_FontDirectory + "/" + m_TitleFont, BaseFont.CP1252, BaseFont.EMBEDDED);
-            descriptonBaseFont = BaseFont.createFont(m_FontDirectory + "/" + m_DescriptionFont, BaseFont.CP1252, BaseFont.EMBEDDED);
+            placeBellFont = FontCache.getFont(m_FontDirectory + "/" + m_LabelFont, m_LabelFontSize);
+            titleBaseFont = FontCache.getBaseFont(m_FontDirectory + "/" + m_TitleFont, BaseFont.CP1252, BaseFont.EMBEDDED);
+            descriptonBaseFont = FontCache.getBaseFont(m_FontDirectory + "/" + m_DescriptionFont, BaseFont.CP1252, BaseFont.EMBEDDED);
         } catch (FontFormatException e) {
             throw new MethodGenerationException("Unable to load font: " + e.getMessage());
         } catch (IOException e) {
@@ -301,72 +364,169 @@ public class LineFactory extends AbstractMethodGenerator {
         com.lowagie.text.Font titleFont = new com.lowagie.text.Font(titleBaseFont, titleSize);
         com.lowagie.text.Font descriptionFont = new com.lowagie.text.Font(descriptonBaseFont, m_DescriptionFontSize);
         
-        Rectangle pageSize;
-        Document document;
-        PdfWriter writer;
-        try {
-        	pageSize = new Rectangle(m_Width + (2 * m_HorizontalPadding), y + m_VerticalPadding);
-        	document = new Document(pageSize, 0.0f, 0.0f, m_VerticalOffset, 0.0f);
-            writer = PdfWriter.getInstance(document, new FileOutputStream(outputFile));
-            document.open();
-            
-            if (m_ShowTitle || m_ShowMethodDescription) {
-            
-            	Paragraph methodTitle = null;
-            	if (m_ShowTitle) {
-		            methodTitle = new Paragraph((m_ShowFullTitle ? pr_Method.toString() : pr_Method.getName()).toUpperCase(), titleFont);
-		            methodTitle.setAlignment(Element.ALIGN_LEFT);
-		            methodTitle.setLeading(m_TitleLeading);
-		            methodTitle.setSpacingBefore(m_VerticalOffset);
-		            document.add(methodTitle);
-            	}
-            	
-            	Paragraph descriptionText;
-            	if (m_ShowMethodDescription) {
-		            descriptionText = new Paragraph(pr_Method.getDescription(), descriptionFont);
-		            descriptionText.setAlignment(Element.ALIGN_LEFT);
-		            descriptionText.setLeading(m_DescriptionLeading);
-		            descriptionText.setSpacingBefore(m_DescriptionSpaceBefore);
-		            document.add(descriptionText);
-            	} else {
-            		descriptionText = null;
-            	}
-            	
-	            float yOffset = pageSize.getHeight() - writer.getVerticalPosition(true) + m_VerticalPadding;
-	            for (LinePoint p : points) {
-	            	y = (float) p.getY() + yOffset;
-	            	p.setLocation(p.getX(), y);
-	            }
-	            
-	            document.close();
-	            
-	        	pageSize = new Rectangle(m_Width + (2 * m_HorizontalPadding), y + m_VerticalPadding);
-	        	document = new Document(pageSize, 0.0f, 0.0f, m_VerticalOffset, 0.0f);
-	            writer = PdfWriter.getInstance(document, new FileOutputStream(outputFile));
+        Rectangle pageSize = new Rectangle(m_Width + (2 * m_HorizontalPadding), y + m_VerticalPadding);
+    	Paragraph methodTitle = null;
+    	Paragraph descriptionText = null;
+        if (m_ShowTitle || m_ShowMethodDescription) {
+        	
+        	if (m_ShowTitle) {
+	            methodTitle = new Paragraph((m_ShowFullTitle ? pr_Method.toString() : pr_Method.getName()).toUpperCase(), titleFont);
+	            methodTitle.setAlignment(Element.ALIGN_LEFT);
+	            methodTitle.setLeading(m_TitleLeading);
+	            methodTitle.setSpacingBefore(m_VerticalOffset);
+        	}
+        	if (m_ShowMethodDescription) {
+	            descriptionText = new Paragraph(pr_Method.getDescription(), descriptionFont);
+	            descriptionText.setAlignment(Element.ALIGN_LEFT);
+	            descriptionText.setLeading(m_DescriptionLeading);
+	            descriptionText.setSpacingBefore(m_DescriptionSpaceBefore);
+        	}
+        	
+        	// Set the text on a page which is thrown away to find how much room it takes,
+        	// then move the line down below it. The page is never closed, so nothing is
+        	// written.
+        	try {
+	        	final Document document = createDocument(pageSize);
+	        	final PdfWriter writer = PdfWriter.getInstance(document, new OutputStream() {
+	        		@Override
+	        		public void write(final int pr_Byte) {
+	        			// Discarded
+	        		}
+	        	});
 	            document.open();
-	            
 	            if (methodTitle != null) {
 	            	document.add(methodTitle);
 	            }
 	            if (descriptionText != null) {
 	            	document.add(descriptionText);
 	            }
+	            
+	            float yOffset = pageSize.getHeight() - writer.getVerticalPosition(true) + m_VerticalPadding;
+	            for (LinePoint p : points) {
+	            	y = (float) p.getY() + yOffset;
+	            	p.setLocation(p.getX(), y);
+	            }
+        	} catch (DocumentException e) {
+                throw new MethodGenerationException("Unable to create PDF file: " + e.getMessage());
+        	}
             
-            }
-            
-        } catch (DocumentException e) {
-            throw new MethodGenerationException("Unable to create PDF file: " + e.getMessage());
+        	pageSize = new Rectangle(m_Width + (2 * m_HorizontalPadding), y + m_VerticalPadding);
         }
         
+        return new Page(pr_Method, points, pageSize, methodTitle, descriptionText, placeBellFont);
+    }
+    
+    /**
+     * Draws a line on the next page of a document. The document is opened if it isn't
+     * already, otherwise a new page is started.
+     * @param pr_Page the layout of the line
+     * @param pr_Document the document
+     * @param pr_Writer the writer of the document
+     * @throws DocumentException if the title or description can't be added
+     */
+    void drawPage(final Page pr_Page, final Document pr_Document, final PdfWriter pr_Writer) throws DocumentException {
+    	
+    	pr_Document.setPageSize(pr_Page.m_PageSize);
+    	if (pr_Document.isOpen()) {
+    		pr_Document.newPage();
+    	} else {
+    		pr_Document.open();
+    	}
+    	if (pr_Page.m_Title != null) {
+    		pr_Document.add(pr_Page.m_Title);
+    	}
+    	if (pr_Page.m_Description != null) {
+    		pr_Document.add(pr_Page.m_Description);
+    	}
         
-        Map<TextAttribute, Object> map = new Hashtable<TextAttribute, Object>();
-        
-        map.put(TextAttribute.SIZE, m_LabelFontSize);
-        placeBellFont = placeBellFont.deriveFont( map );
-        
-        Graphics2D g = writer.getDirectContent().createGraphicsShapes(pageSize.getWidth(),
-                                                                      pageSize.getHeight());
-        g.setFont(placeBellFont);
+        final LineCanvas canvas = new Graphics2DCanvas(pr_Writer.getDirectContent().createGraphicsShapes(pr_Page.m_PageSize.getWidth(),
+                                                                                                        pr_Page.m_PageSize.getHeight()));
+        try {
+        	drawLine(pr_Page, canvas);
+        } finally {
+        	canvas.dispose();
+        }
+    }
+    
+    /**
+     * Draws the title and description of a page as text on a canvas, for formats other
+     * than PDF. The text is wrapped and spaced as iText sets it on a PDF page.
+     * @param pr_Page the layout of the line
+     * @param pr_Canvas the canvas
+     * @throws MethodGenerationException if the fonts can't be loaded
+     */
+    void drawText(final Page pr_Page, final LineCanvas pr_Canvas) throws MethodGenerationException {
+    	
+    	float y = m_VerticalOffset;
+    	try {
+	    	pr_Canvas.setColor(Color.BLACK);
+	    	if (pr_Page.m_Title != null) {
+	    		pr_Canvas.setFont(FontCache.getFont(m_FontDirectory + "/" + m_TitleFont, pr_Page.m_Title.getFont().getSize()));
+	    		y += m_VerticalOffset;
+	    		for (String line : wrap(pr_Page.m_Title.getContent(), pr_Page.m_PageSize.getWidth(), pr_Canvas)) {
+	    			y += m_TitleLeading;
+	    			pr_Canvas.drawString(line, 0f, y);
+	    		}
+	    	}
+	    	if (pr_Page.m_Description != null) {
+	    		pr_Canvas.setFont(FontCache.getFont(m_FontDirectory + "/" + m_DescriptionFont, m_DescriptionFontSize));
+	    		y += m_DescriptionSpaceBefore;
+	    		for (String line : wrap(pr_Page.m_Description.getContent(), pr_Page.m_PageSize.getWidth(), pr_Canvas)) {
+	    			y += m_DescriptionLeading;
+	    			pr_Canvas.drawString(line, 0f, y);
+	    		}
+	    	}
+        } catch (FontFormatException e) {
+            throw new MethodGenerationException("Unable to load font: " + e.getMessage());
+        } catch (IOException e) {
+            throw new MethodGenerationException("Unable to load font: " + e.getMessage());
+    	}
+    }
+    
+    /**
+     * Splits text into lines which fit a width, breaking between words, or within a
+     * word too long for a line of its own.
+     * @param pr_Text the text
+     * @param pr_Width the width
+     * @param pr_Canvas the canvas, set to the font of the text
+     * @return the lines
+     */
+    private static ArrayList<String> wrap(final String pr_Text, final float pr_Width, final LineCanvas pr_Canvas) {
+    	final ArrayList<String> lines = new ArrayList<String>();
+    	String line = null;
+    	for (String word : pr_Text.split(" ")) {
+    		if (line != null && pr_Canvas.getStringBounds(line + " " + word).getWidth() <= pr_Width) {
+    			line += " " + word;
+    			continue;
+    		}
+    		if (line != null) {
+    			lines.add(line);
+    		}
+    		while (word.length() > 1 && pr_Canvas.getStringBounds(word).getWidth() > pr_Width) {
+    			int end = word.length() - 1;
+    			while (end > 1 && pr_Canvas.getStringBounds(word.substring(0, end)).getWidth() > pr_Width) {
+    				end--;
+    			}
+    			lines.add(word.substring(0, end));
+    			word = word.substring(end);
+    		}
+    		line = word;
+    	}
+    	if (line != null) {
+    		lines.add(line);
+    	}
+    	return lines;
+    }
+    
+    /**
+     * Draws a line, with its place bell labels, on a canvas.
+     * @param pr_Page the layout of the line
+     * @param pr_Canvas the canvas
+     */
+    void drawLine(final Page pr_Page, final LineCanvas pr_Canvas) {
+    	
+    	final String methodIdentifier = pr_Page.m_Method.getFileIdentifier();
+    	pr_Canvas.setFont(pr_Page.m_LabelFont);
         
         boolean intersects = false;
         double distance;
@@ -374,13 +534,9 @@ public class LineFactory extends AbstractMethodGenerator {
         LinePoint labelPoint = null;
         Rectangle2D labelPosition = null;
         
-        FontMetrics metrics = g.getFontMetrics(placeBellFont);
         Rectangle2D labelBounds;
         LineMetrics lineMetrics;
         
-        int startPoint = -1;
-        int endPoint = -1;
-        
         Ellipse2D.Float dot;
         double mypad = 0.5d;
         
@@ -388,12 +544,18 @@ public class LineFactory extends AbstractMethodGenerator {
         GeneralPath path = null;
         GeneralPath trebleCrossPath = null;
         
+        // Index of the line and the labels placed so far, to find where a label will fit
+        final CollisionIndex collisions = new CollisionIndex(Math.max(m_Width / (pr_Page.m_Method.getStage().getBells() - 1), m_LabelFontSize));
+        for (int i = 0; i < pr_Page.m_Points.size() - 1; i++) {
+        	collisions.add(new Line2D.Double(pr_Page.m_Points.get(i), pr_Page.m_Points.get(i + 1)));
+        }
+        
         // List to store dots - drawn at the end to ensure they are on top
         ArrayList<Ellipse2D.Float> dots = new ArrayList<Ellipse2D.Float>();
         
-        g.setStroke(new BasicStroke(m_CrossWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        pr_Canvas.setStroke(m_CrossWidth);
 
-        for (LinePoint p : points) {
+        for (LinePoint p : pr_Page.m_Points) {
             
             if (path == null) {
                 path = new GeneralPath();
@@ -410,8 +572,8 @@ public class LineFactory extends AbstractMethodGenerator {
 	            	trebleCrossPath.lineTo((float) p.getX() + p.getTrebleCross(), (float) p.getY());
 	            }
             } else if (trebleCrossPath != null) {
-                g.setColor(m_CrossColor);
-            	g.draw(trebleCrossPath);
+                pr_Canvas.setColor(m_CrossColor);
+            	pr_Canvas.draw(trebleCrossPath);
             	trebleCrossPath = null;
             }
             
@@ -423,8 +585,8 @@ public class LineFactory extends AbstractMethodGenerator {
                         m_DotSize);
                 dots.add(dot);
     
-                labelBounds = metrics.getStringBounds(p.getLabel(), g);
-                lineMetrics = metrics.getLineMetrics(p.getLabel(), g);
+                labelBounds = pr_Canvas.getStringBounds(p.getLabel());
+                lineMetrics = pr_Canvas.getLineMetrics(p.getLabel());
                 intersects = false;
                 distance = m_DotSize * 0.5f;
                 
@@ -449,39 +611,16 @@ public class LineFactory extends AbstractMethodGenerator {
                         
                         if (labelPosition.intersects(dot.getBounds2D())) {
                             intersects = true;
-                        } else if (labelPosition.getX() < pageSize.getLeft()) {
+                        } else if (labelPosition.getX() < pr_Page.m_PageSize.getLeft()) {
                         	intersects = true;
-                        } else if (labelPosition.getX() + labelPosition.getWidth() > pageSize.getRight()) {
+                        } else if (labelPosition.getX() + labelPosition.getWidth() > pr_Page.m_PageSize.getRight()) {
                         	intersects = true;
-                        } else if (labelPosition.getY() < pageSize.getBottom()) {
+                        } else if (labelPosition.getY() < pr_Page.m_PageSize.getBottom()) {
                         	intersects = true;
-                        } else if (labelPosition.getY() + labelPosition.getHeight() > pageSize.getTop()) {
+                        } else if (labelPosition.getY() + labelPosition.getHeight() > pr_Page.m_PageSize.getTop()) {
                         	intersects = true;
                         } else {
-                        
-	                        startPoint = -1;
-	                        endPoint = -1;
-	    
-	                        for (int i = 0; i < points.size(); i++) {
-	                            if (startPoint == -1) {
-	                                if (points.get(i).getY() > labelPosition.getY()) {
-	                                    startPoint = Math.max(i - 1, 0);
-	                                }
-	                            }
-	                            
-	                            if (points.get(i).getY() > labelPosition.getMaxY()) {
-	                                endPoint = Math.min(i, points.size() - 1);
-	                                break;
-	                            }
-	                        }
-	                        
-	                        intersects = false;
-	                        for (int i = startPoint; i < endPoint; i++) {
-	                            if (labelPosition.intersectsLine(new Line2D.Double(points.get(i), points.get(i + 1)))) {
-	                                intersects = true;
-	                                break;
-	                            }
-	                        }
+                        	intersects = collisions.intersects(labelPosition);
                         }
                         if (!intersects) {
                             break;
@@ -493,8 +632,9 @@ public class LineFactory extends AbstractMethodGenerator {
                     
                 } while (intersects);
 
-                g.setColor(m_Color);
-                g.drawString(p.getLabel(),
+                collisions.add(labelPosition);
+                pr_Canvas.setColor(m_Color);
+                pr_Canvas.drawString(p.getLabel(),
                              (float) labelPosition.getX() + (float) mypad,
                              (float) (labelPosition.getY() + labelPosition.getHeight() - mypad));
             }
@@ -503,22 +643,59 @@ public class LineFactory extends AbstractMethodGenerator {
 
         // Finish off last cross
     	if (trebleCrossPath != null) {
-            g.setColor(m_CrossColor);
-        	g.draw(trebleCrossPath);
+            pr_Canvas.setColor(m_CrossColor);
+        	pr_Canvas.draw(trebleCrossPath);
         }
 
-        g.setColor(m_Color);
-        g.setStroke(new BasicStroke(m_LineWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-        g.draw(path);
+        pr_Canvas.setColor(m_Color);
+        pr_Canvas.setStroke(m_LineWidth);
+        pr_Canvas.draw(path);
 
         // Draw dots last
         for (Ellipse2D.Float d : dots) {
-        	g.fill(d);
+        	pr_Canvas.fill(d);
         }
-        
-        g.dispose();
-        document.close();
-        return true;
+    }
+    
+    /**
+     * The layout of a method's line on a page, ready to be drawn.
+     */
+    static class Page {
+    	
+    	private final Method m_Method;
+    	private final ArrayList<LinePoint> m_Points;
+    	private final Rectangle m_PageSize;
+    	private final Paragraph m_Title;
+    	private final Paragraph m_Description;
+    	private final Font m_LabelFont;
+    	
+    	private Page(final Method pr_Method,
+    			     final ArrayList<LinePoint> pr_Points,
+    			     final Rectangle pr_PageSize,
+    			     final Paragraph pr_Title,
+    			     final Paragraph pr_Description,
+    			     final Font pr_LabelFont) {
+    		m_Method = pr_Method;
+    		m_Points = pr_Points;
+    		m_PageSize = pr_PageSize;
+    		m_Title = pr_Title;
+    		m_Description = pr_Description;
+    		m_LabelFont = pr_LabelFont;
+    	}
+    	
+    	/**
+    	 * @return the method
+    	 */
+    	Method getMethod() {
+    		return m_Method;
+    	}
+    	
+    	/**
+    	 * @return the size of the page
+    	 */
+    	Rectangle getPageSize() {
+    		return m_PageSize;
+    	}
     }
     
 }
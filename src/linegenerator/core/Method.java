@@ -1,6 +1,9 @@
 package linegenerator.core;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 import linegenerator.core.exceptions.InvalidPlaceNotationException;
 
@@ -48,13 +51,13 @@ public class Method implements Comparable<Method> {
     private String[] m_SingleLeadEnd;
     
     /** The place notation used to construct the method. */
-    private Notation[] m_PlainLeadNotation;
+    private volatile Notation[] m_PlainLeadNotation;
     
     /** The place notation at a bob lead end. */
-    private Notation[] m_BobLeadNotation;
+    private volatile Notation[] m_BobLeadNotation;
     
     /** The place notation at a single lead end. */
-    private Notation[] m_SingleLeadNotation;
+    private volatile Notation[] m_SingleLeadNotation;
 
 	/** The bell at which to start the line. */
     private int m_StartBell;
@@ -174,25 +177,58 @@ public class Method implements Comparable<Method> {
         return m_SingleLeadEnd;
     }
     
+    /**
+     * Gets the notation of a lead of the method. The notations are created the first
+     * time they are asked for; methods may be shared by threads proving compositions,
+     * so each thread reads the notations once and, if two create them at the same
+     * time, one set simply replaces the other.
+     * @param pr_LeadType the type of lead
+     * @param pr_NotationIndex the notation index of the lead
+     * @return the notation, or null if the lead type is not defined
+     */
     public Notation getLeadNotation(final LeadType pr_LeadType, final int pr_NotationIndex)
     {
+        Notation[] notation;
         switch (pr_LeadType) {
         case BOB:
-            if (m_BobLeadNotation == null) {
-                m_BobLeadNotation = createLeadNotation(m_BobLeadEnd);
+            notation = m_BobLeadNotation;
+            if (notation == null) {
+                notation = createLeadNotation(m_BobLeadEnd);
+                m_BobLeadNotation = notation;
             }
-            return m_BobLeadNotation != null ? m_BobLeadNotation[pr_NotationIndex] : null;
+            break;
         case SINGLE:
-            if (m_SingleLeadNotation == null) {
-                m_SingleLeadNotation = createLeadNotation(m_SingleLeadEnd);
+            notation = m_SingleLeadNotation;
+            if (notation == null) {
+                notation = createLeadNotation(m_SingleLeadEnd);
+                m_SingleLeadNotation = notation;
             }
-            return m_SingleLeadNotation != null ? m_SingleLeadNotation[pr_NotationIndex] : null;
+            break;
         default:
-            if (m_PlainLeadNotation == null) {
-                m_PlainLeadNotation = createLeadNotation(m_LeadEnd);
+            notation = m_PlainLeadNotation;
+            if (notation == null) {
+                notation = createLeadNotation(m_LeadEnd);
+                m_PlainLeadNotation = notation;
             }
-            return m_PlainLeadNotation != null ? m_PlainLeadNotation[pr_NotationIndex] : null;
+            break;
         }
+        return notation != null ? notation[pr_NotationIndex] : null;
+    }
+
+    /**
+     * Gets the lead head reached by a lead of the method started from rounds. Applying
+     * it as a permutation to any row gives the row at the end of a lead started there,
+     * so course ends can be found without ringing each lead through.
+     * 
+     * The lead heads are compiled with the lead notations they belong to, so are only
+     * calculated once for each lead type and notation index of the method.
+     * @param pr_LeadType the type of lead
+     * @param pr_NotationIndex the notation index of the lead
+     * @return the lead head, or null if the lead type is not defined
+     */
+    public Row getLeadHead(final LeadType pr_LeadType, final int pr_NotationIndex) {
+        final Notation notation = getLeadNotation(pr_LeadType, pr_NotationIndex);
+        return notation != null ? notation.getLeadHead(getStage().getBells()) : null;
     }
 
     /**
@@ -298,7 +334,8 @@ public class Method implements Comparable<Method> {
         if (m_StartBell > 0) {
             return m_StartBell;
         } else {
-            final String endNotation = m_PlainLeadNotation[0].get(m_PlainLeadNotation[0].size() - 1);
+            final Notation plainLead = getLeadNotation(LeadType.PLAIN, 0);
+            final String endNotation = plainLead.get(plainLead.size() - 1);
             if (endNotation == null) {
                 return 1;
             } else {
@@ -307,6 +344,14 @@ public class Method implements Comparable<Method> {
         }
     }
 
+    /**
+     * @return the bell at which to start the line as given, or 0 if it is worked out
+     *         from the place notation (see {@link #getStartBell()})
+     */
+    int getGivenStartBell() {
+        return m_StartBell;
+    }
+
     /**
      * @param pr_Offset the location to start the line within the place notation
      */
@@ -327,6 +372,15 @@ public class Method implements Comparable<Method> {
         m_CallingPositionAmendments.put(pr_Normal, pr_Amended);
     }
     
+    /**
+     * @return the calling positions which are named differently for this method,
+     *         keyed by their usual name
+     */
+    public Map<String, String> getCallingPositionAmendments()
+    {
+        return Collections.unmodifiableMap(m_CallingPositionAmendments);
+    }
+    
     public String getAmendedCallingPosition(final String pr_Normal)
     {
         if (m_CallingPositionAmendments.containsKey(pr_Normal)) {
@@ -336,10 +390,59 @@ public class Method implements Comparable<Method> {
         }
     }
     
+    /**
+     * @return everything the method is defined by (its name, type, stage, place
+     *         notation, lead ends, start and calling position amendments) as a single
+     *         string, which is the same for two methods only if they are defined the
+     *         same way
+     */
+    public String getDefinition() {
+        final StringBuilder definition = new StringBuilder();
+        definition.append(m_Name).append('|');
+        definition.append(m_MethodType.getCode()).append('|');
+        definition.append(m_Stage.getBells()).append('|');
+        for (int i = 0; i < m_PlaceNotation.length; i++) {
+            if (i > 0) {
+                definition.append(',');
+            }
+            if (m_NotationLabels[i] != null) {
+                definition.append(m_NotationLabels[i]).append('=');
+            }
+            definition.append(m_PlaceNotation[i]);
+        }
+        for (String[] leadEnd : new String[][] { m_LeadEnd, m_BobLeadEnd, m_SingleLeadEnd }) {
+            definition.append('|');
+            if (leadEnd != null) {
+                for (int i = 0; i < leadEnd.length; i++) {
+                    if (i > 0) {
+                        definition.append(',');
+                    }
+                    definition.append(leadEnd[i]);
+                }
+            }
+        }
+        definition.append('|').append(m_StartBell);
+        definition.append('|').append(m_StartOffset);
+        for (Map.Entry<String, String> amendment : new TreeMap<String, String>(m_CallingPositionAmendments).entrySet()) {
+            definition.append('|').append(amendment.getKey()).append('=').append(amendment.getValue());
+        }
+        return definition.toString();
+    }
+    
     public String getFileIdentifier() {
-        return getStage().getLabel() + "_" +
-               getMethodType().getCode() + "_" +
-               getName().replaceAll("[\\s\\']*", "");
+        return getFileIdentifier(getStage(), getMethodType(), getName());
+    }
+    
+    /**
+     * @param pr_Stage the stage of a method
+     * @param pr_MethodType the type of the method
+     * @param pr_Name the name of the method
+     * @return the file identifier of the method (see {@link #getFileIdentifier()})
+     */
+    public static String getFileIdentifier(final Stage pr_Stage, final MethodType pr_MethodType, final String pr_Name) {
+        return pr_Stage.getLabel() + "_" +
+               pr_MethodType.getCode() + "_" +
+               pr_Name.replaceAll("[\\s\\']*", "");
     }
     
 	@Override
@@ -365,11 +468,16 @@ public class Method implements Comparable<Method> {
 	    
 	}
 	
+	@Override
+	public int hashCode() {
+	    return (m_Name.hashCode() * 31 + m_Stage.hashCode()) * 31 + m_MethodType.hashCode();
+	}
+	
 	public String getDescription()
 	{
 	    final StringBuilder description = new StringBuilder();
         String leadHead;
-        Grid lead;
+        Row lead;
         HashMap<String, String> plainTransitions;
         HashMap<String, String> bobTransitions;
         HashMap<String, String> singleTransitions;
@@ -383,28 +491,26 @@ public class Method implements Comparable<Method> {
             description.append(" plh" + '\u00a0');
             description.append(getLeadEnd()[i]);
             description.append(" (");
-            lead = new Grid(getStage());
-            lead.add(getLeadNotation(LeadType.PLAIN, i));
-            leadHead = lead.getFirstLeadEnd();
+            lead = getLeadHead(LeadType.PLAIN, i);
+            leadHead = lead.toString();
             if (leadHead.charAt(0) == '1') {
                 leadHead = leadHead.substring(1);
             }
             description.append(leadHead);
             description.append(")");
-            plainTransitions = lead.getTransitions();
+            plainTransitions = Grid.getTransitions(lead.toString());
             if (getBobLeadEnd() != null) {
                 description.append(", blh" + '\u00a0');
                 description.append(getBobLeadEnd()[i]);
                 description.append(" (");
-                lead = new Grid(getStage());
-                lead.add(getLeadNotation(LeadType.BOB, i));
-                leadHead = lead.getFirstLeadEnd();
+                lead = getLeadHead(LeadType.BOB, i);
+                leadHead = lead.toString();
                 if (leadHead.charAt(0) == '1') {
                     leadHead = leadHead.substring(1);
                 }
                 description.append(leadHead);
                 description.append(")");
-                bobTransitions = lead.getTransitions();
+                bobTransitions = Grid.getTransitions(lead.toString());
                 for (int j = 1; j <= getStage().getBells(); j++) {
                     String bell = Stage.getLabelAtPosition(j);
                     if (!plainTransitions.get(bell).equals(bobTransitions.get(bell))) {
@@ -416,15 +522,14 @@ public class Method implements Comparable<Method> {
                 description.append(", slh" + '\u00a0');
                 description.append(getSingleLeadEnd()[i]);
                 description.append(" (");
-                lead = new Grid(getStage());
-                lead.add(getLeadNotation(LeadType.SINGLE, i));
-                leadHead = lead.getFirstLeadEnd();
+                lead = getLeadHead(LeadType.SINGLE, i);
+                leadHead = lead.toString();
                 if (leadHead.charAt(0) == '1') {
                     leadHead = leadHead.substring(1);
                 }
                 description.append(leadHead);
                 description.append(")");
-                singleTransitions = lead.getTransitions();
+                singleTransitions = Grid.getTransitions(lead.toString());
                 for (int j = 1; j <= getStage().getBells(); j++) {
                     String bell = Stage.getLabelAtPosition(j);
                     if (!plainTransitions.get(bell).equals(singleTransitions.get(bell))) {
@@ -0,0 +1,188 @@
+package linegenerator.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import linegenerator.core.exceptions.InvalidPlaceNotationException;
+import linegenerator.core.exceptions.MethodGenerationException;
+
+/**
+ * Runs a generator (see {@link AbstractMethodGenerator}) over a library of methods on
+ * several threads.
+ *
+ * The generator is shared by every thread, so it must only read its configuration once
+ * constructed and keep everything it creates for a method (documents, writers, grids)
+ * to the call generating that method. Each method is written exactly as it would be on
+ * a single thread, including being skipped if its file exists and files aren't being
+ * overwritten. If a manifest is given (see {@link #setManifest(BuildManifest)}), a file
+ * which exists is written again anyway once what it was generated from has changed,
+ * and every file written or kept is recorded in it.
+ *
+ * The listener is told about each method as it is finished, in the order they finish,
+ * and all calls to it are made on the thread calling {@link #generate(Iterable, boolean)}.
+ * Progress, with an estimate of the time remaining, is reported every few seconds and
+ * once all methods are finished.
+ *
+ * @author Tom
+ */
+public class MethodGeneratorPool {
+
+    /** The time between progress reports. */
+    private static final long PROGRESS_INTERVAL = 5000;
+
+    /** The generator to run. */
+    private final AbstractMethodGenerator m_Generator;
+
+    /** The number of threads to generate on. */
+    private final int m_Threads;
+
+    /** The listener told about each method and the progress made. */
+    private final IMethodGenerationListener m_Listener;
+
+    /** What each file was generated from, or null to only write files which don't exist. */
+    private BuildManifest m_Manifest;
+
+    /**
+     * Constructor.
+     * @param pr_Generator the generator to run
+     * @param pr_Threads the number of threads to generate on
+     * @param pr_Listener the listener told about each method and the progress made
+     */
+    public MethodGeneratorPool(final AbstractMethodGenerator pr_Generator, final int pr_Threads, final IMethodGenerationListener pr_Listener) {
+        m_Generator = pr_Generator;
+        m_Threads = Math.max(pr_Threads, 1);
+        m_Listener = pr_Listener;
+    }
+
+    /**
+     * @param pr_Manifest what each file was generated from, which is used to write again
+     *                    files generated from something else and is updated with the
+     *                    files written; or null to only write files which don't exist
+     */
+    public void setManifest(final BuildManifest pr_Manifest) {
+        m_Manifest = pr_Manifest;
+    }
+
+    /**
+     * Generates the files for a library of methods.
+     * @param pr_Methods the methods
+     * @param pr_Overwrite whether to overwrite files which already exist
+     * @return the number of methods whose files were written
+     */
+    public int generate(final Iterable<Method> pr_Methods, final boolean pr_Overwrite) {
+
+        final ExecutorService executor = Executors.newFixedThreadPool(m_Threads);
+        try {
+            final CompletionService<Result> results = new ExecutorCompletionService<Result>(executor);
+            int total = 0;
+            for (final Method method : pr_Methods) {
+                results.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        return generate(method, pr_Overwrite);
+                    }
+                });
+                total++;
+            }
+
+            final long start = System.nanoTime();
+            long lastReport = start;
+            int written = 0;
+            for (int completed = 1; completed <= total; completed++) {
+                final Result result = getResult(results);
+                if (result.m_Error != null) {
+                    m_Listener.methodGenerationFailed(result.m_Method, result.m_Error);
+                } else {
+                    m_Listener.methodGenerated(result.m_Method, result.m_Written);
+                    if (result.m_Written) {
+                        written++;
+                    }
+                }
+
+                final long now = System.nanoTime();
+                if (completed == total || TimeUnit.NANOSECONDS.toMillis(now - lastReport) >= PROGRESS_INTERVAL) {
+                    final long elapsed = TimeUnit.NANOSECONDS.toMillis(now - start);
+                    m_Listener.progressMade(completed, total, elapsed * (total - completed) / completed);
+                    lastReport = now;
+                }
+            }
+            return written;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Generates the file for a single method.
+     * @param pr_Method the method
+     * @param pr_Overwrite whether to overwrite the file if it already exists, even if it
+     *                     is up to date
+     * @return the result
+     */
+    private Result generate(final Method pr_Method, final boolean pr_Overwrite) {
+        try {
+            if (m_Manifest == null) {
+                return new Result(pr_Method, m_Generator.generate(pr_Method, pr_Overwrite), null);
+            }
+            final File file = m_Generator.getOutputFile(pr_Method);
+            final String hash = m_Generator.getInputHash(pr_Method);
+            final boolean written = m_Generator.generate(pr_Method, pr_Overwrite || m_Manifest.isStale(file, hash));
+            if (written || file.exists()) {
+                // A file kept without a record is taken to be up to date, so that it is
+                // written again once what it is generated from changes
+                m_Manifest.put(file, hash);
+            }
+            return new Result(pr_Method, written, null);
+        } catch (MethodGenerationException e) {
+            return new Result(pr_Method, false, e);
+        } catch (InvalidPlaceNotationException e) {
+            return new Result(pr_Method, false, e);
+        } catch (IOException e) {
+            return new Result(pr_Method, false, e);
+        }
+    }
+
+    /**
+     * Waits for the next method to be finished, passing on anything unexpected thrown
+     * generating it.
+     * @param pr_Results the methods being generated
+     * @return the result
+     */
+    private static Result getResult(final CompletionService<Result> pr_Results) {
+        try {
+            return pr_Results.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating methods.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * The result of generating the file for a method.
+     */
+    private static class Result {
+
+        private final Method m_Method;
+        private final boolean m_Written;
+        private final Exception m_Error;
+
+        private Result(final Method pr_Method, final boolean pr_Written, final Exception pr_Error) {
+            m_Method = pr_Method;
+            m_Written = pr_Written;
+            m_Error = pr_Error;
+        }
+    }
+
+}
@@ -10,17 +10,22 @@ public class MethodGridFactory extends AbstractMethodGenerator {
         super(pr_OutputDir);
     }
     
+    @Override
+    public File getOutputFile(final Method pr_Method) {
+        return new File(m_OutputDir,
+                        pr_Method.getFileIdentifier() +
+                        ".grid" +
+                        ".txt");
+    }
+    
     public boolean generate(final Method pr_Method, final boolean pr_Overwrite) throws IOException
     {
-        final File outputFile = new File(getOutputDirectory().getAbsolutePath() + 
-                                         File.separator + 
-                                         pr_Method.getFileIdentifier() +
-                                         ".grid" +
-                                         ".txt");
+        final File outputFile = getOutputFile(pr_Method);
         if (!pr_Overwrite && outputFile.exists()) {
             return false;
         }
 
+        getOutputDirectory();
         final FileWriter writer = new FileWriter(outputFile, false);
 
         final Notation notation = new Notation();
@@ -0,0 +1,257 @@
+package linegenerator.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import linegenerator.core.exceptions.MethodDefinitionException;
+
+/**
+ * A library of methods, indexed so that a method can be found by name, stage and type,
+ * by its file identifier or by the way it is referred to in a composition file without
+ * looking through every method.
+ *
+ * Where more than one method matches, the first in the library is found, as it would
+ * be by looking through the library in order.
+ *
+ * A library may also sit on a compiled library (see {@link BinaryMethodLibrary}), in
+ * which case methods are found through the index of the compiled library and only
+ * created as they are asked for. A compiled library is written from valid methods, so
+ * a record which is not a valid method means the file is corrupt and is reported as
+ * an {@link IllegalStateException}.
+ *
+ * @author Tom
+ */
+public class MethodLibrary implements Iterable<Method> {
+
+    /** The methods, in library order (or null if on a compiled library). */
+    private final Method[] m_Methods;
+
+    /** The compiled library the methods are read from (or null if given the methods). */
+    private final BinaryMethodLibrary m_Compiled;
+
+    /** The position of each method, keyed by stage, type and name. */
+    private final HashMap<String, Integer> m_MethodsByKey;
+
+    /** The positions of the methods of each type with a name, keyed by stage and name. */
+    private final HashMap<String, ArrayList<Integer>> m_MethodsByName;
+
+    /** The position of each method, keyed by file identifier. */
+    private final HashMap<String, Integer> m_MethodsByFileIdentifier;
+
+    /**
+     * Constructor.
+     * @param pr_Methods the methods, in library order
+     */
+    public MethodLibrary(final Method[] pr_Methods) {
+        m_Methods = pr_Methods;
+        m_Compiled = null;
+        m_MethodsByKey = new HashMap<String, Integer>();
+        m_MethodsByName = new HashMap<String, ArrayList<Integer>>();
+        m_MethodsByFileIdentifier = new HashMap<String, Integer>();
+        for (int i = 0; i < pr_Methods.length; i++) {
+            final Method method = pr_Methods[i];
+            final String key = getKey(method.getName(), method.getStage(), method.getMethodType());
+            final String nameKey = getKey(method.getName(), method.getStage());
+            if (!m_MethodsByKey.containsKey(key)) {
+                m_MethodsByKey.put(key, i);
+                if (!m_MethodsByName.containsKey(nameKey)) {
+                    m_MethodsByName.put(nameKey, new ArrayList<Integer>());
+                }
+                m_MethodsByName.get(nameKey).add(i);
+            }
+            if (!m_MethodsByFileIdentifier.containsKey(method.getFileIdentifier())) {
+                m_MethodsByFileIdentifier.put(method.getFileIdentifier(), i);
+            }
+        }
+    }
+
+    /**
+     * Constructor, for a compiled library. No method is created until it is asked for.
+     * @param pr_Compiled the compiled library
+     */
+    public MethodLibrary(final BinaryMethodLibrary pr_Compiled) {
+        m_Methods = null;
+        m_Compiled = pr_Compiled;
+        m_MethodsByKey = null;
+        m_MethodsByName = null;
+        m_MethodsByFileIdentifier = null;
+    }
+
+    /**
+     * @return the number of methods in the library
+     */
+    public int size() {
+        return m_Compiled != null ? m_Compiled.size() : m_Methods.length;
+    }
+
+    /**
+     * @param pr_Index the position of the method in the library
+     * @return the method
+     */
+    public Method get(final int pr_Index) {
+        if (m_Compiled == null) {
+            return m_Methods[pr_Index];
+        }
+        try {
+            return m_Compiled.getMethod(pr_Index);
+        } catch (MethodDefinitionException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the methods, in library order
+     */
+    public Method[] toArray() {
+        if (m_Compiled == null) {
+            return m_Methods.clone();
+        }
+        final Method[] methods = new Method[size()];
+        for (int i = 0; i < methods.length; i++) {
+            methods[i] = get(i);
+        }
+        return methods;
+    }
+
+    @Override
+    public Iterator<Method> iterator() {
+        if (m_Compiled == null) {
+            return Collections.unmodifiableList(Arrays.asList(m_Methods)).iterator();
+        }
+        return new Iterator<Method>() {
+
+            private int m_Next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return m_Next < size();
+            }
+
+            @Override
+            public Method next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(m_Next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Finds a method.
+     * @param pr_Name the name of the method
+     * @param pr_Stage the stage of the method
+     * @param pr_MethodType the type of the method
+     * @return the method, or null if it is not in the library
+     */
+    public Method getMethod(final String pr_Name, final Stage pr_Stage, final MethodType pr_MethodType) {
+        final int position = getPosition(pr_Name, pr_Stage, pr_MethodType);
+        return position >= 0 ? get(position) : null;
+    }
+
+    /**
+     * Finds the methods of every type with a name.
+     * @param pr_Name the name of the methods
+     * @param pr_Stage the stage of the methods
+     * @return the methods, in library order
+     */
+    public List<Method> getMethods(final String pr_Name, final Stage pr_Stage) {
+        final ArrayList<Method> methods = new ArrayList<Method>();
+        for (int position : getPositions(pr_Name, pr_Stage)) {
+            methods.add(get(position));
+        }
+        return methods;
+    }
+
+    /**
+     * Finds a method by its file identifier (see {@link Method#getFileIdentifier()}).
+     * @param pr_FileIdentifier the file identifier
+     * @return the method, or null if it is not in the library
+     */
+    public Method getMethodByFileIdentifier(final String pr_FileIdentifier) {
+        if (m_Compiled != null) {
+            final int position = m_Compiled.findByFileIdentifier(pr_FileIdentifier);
+            return position >= 0 ? get(position) : null;
+        }
+        final Integer position = m_MethodsByFileIdentifier.get(pr_FileIdentifier);
+        return position != null ? m_Methods[position] : null;
+    }
+
+    /**
+     * Finds a method by the way it is referred to in a composition file: its name,
+     * followed by the name of its type where the type is shown in the method name
+     * (e.g. "Plain Bob" or "Cambridge Surprise").
+     * @param pr_Reference the reference to the method
+     * @param pr_Stage the stage of the method
+     * @return the method, or null if it is not in the library
+     */
+    public Method getMethodByReference(final String pr_Reference, final Stage pr_Stage) {
+        int first = Integer.MAX_VALUE;
+        for (int position : getPositions(pr_Reference.trim(), pr_Stage)) {
+            if (!get(position).getMethodType().shouldDisplayNameInMethod()) {
+                first = Math.min(first, position);
+            }
+        }
+        for (MethodType type : MethodType.values()) {
+            if (type.shouldDisplayNameInMethod() && pr_Reference.endsWith(type.toString())) {
+                final String name = pr_Reference.substring(0, pr_Reference.indexOf(type.toString())).trim();
+                final int position = getPosition(name, pr_Stage, type);
+                if (position >= 0) {
+                    first = Math.min(first, position);
+                }
+            }
+        }
+        return first < size() ? get(first) : null;
+    }
+
+    /**
+     * @return the position of the first method with a name, stage and type, or -1 if
+     *         there is none
+     */
+    private int getPosition(final String pr_Name, final Stage pr_Stage, final MethodType pr_MethodType) {
+        if (m_Compiled != null) {
+            return m_Compiled.find(pr_Name, pr_Stage.getBells(), pr_MethodType.ordinal());
+        }
+        final Integer position = m_MethodsByKey.get(getKey(pr_Name, pr_Stage, pr_MethodType));
+        return position != null ? position : -1;
+    }
+
+    /**
+     * @return the positions of the first method of each type with a name and stage, in
+     *         library order
+     */
+    private List<Integer> getPositions(final String pr_Name, final Stage pr_Stage) {
+        if (m_Compiled != null) {
+            final ArrayList<Integer> positions = new ArrayList<Integer>();
+            for (MethodType type : MethodType.values()) {
+                final int position = getPosition(pr_Name, pr_Stage, type);
+                if (position >= 0) {
+                    positions.add(position);
+                }
+            }
+            Collections.sort(positions);
+            return positions;
+        }
+        final ArrayList<Integer> positions = m_MethodsByName.get(getKey(pr_Name, pr_Stage));
+        return positions != null ? positions : Collections.<Integer>emptyList();
+    }
+
+    private static String getKey(final String pr_Name, final Stage pr_Stage) {
+        return pr_Stage.getBells() + "|" + pr_Name;
+    }
+
+    private static String getKey(final String pr_Name, final Stage pr_Stage, final MethodType pr_MethodType) {
+        return pr_Stage.getBells() + "|" + pr_MethodType.getCode() + "|" + pr_Name;
+    }
+
+}
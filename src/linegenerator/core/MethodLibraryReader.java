@@ -17,10 +17,57 @@ public abstract class MethodLibraryReader {
 		m_Listeners = new ArrayList<IMethodLibraryReaderListener>();
 	}
 
+	/**
+	 * Reads a library file into an indexed library (see {@link MethodLibrary}).
+	 * @param pr_File the library file
+	 * @return the library, or null if the file could not be read and the error has
+	 *         been passed to the listeners
+	 * @throws MethodDefinitionException if a method definition is invalid
+	 * @throws IOException if the file can't be read
+	 */
+	public MethodLibrary readLibrary(final File pr_File) throws MethodDefinitionException, IOException {
+		final Method[] methods = read(pr_File);
+		return methods != null ? new MethodLibrary(methods) : null;
+	}
+
+	/**
+	 * Creates a reader for a library file, based on its extension: a compiled library
+	 * (see {@link BinaryMethodLibrary}), an XML method collection or otherwise a text
+	 * library.
+	 * @param pr_File the library file
+	 * @return the reader
+	 */
+	public static MethodLibraryReader forFile(final File pr_File) {
+		final String name = pr_File.getName().toLowerCase();
+		if (name.endsWith(BinaryMethodLibrary.FILE_EXTENSION)) {
+			return new BinaryMethodLibraryReader();
+		} else if (name.endsWith(".xml")) {
+			return new XMLMethodLibraryReader();
+		} else {
+			return new TextMethodLibraryReader();
+		}
+	}
+
 	public void addListener(final IMethodLibraryReaderListener pr_Listener) {
 		m_Listeners.add(pr_Listener);
 	}
 
+	public void removeListener(final IMethodLibraryReaderListener pr_Listener) {
+		m_Listeners.remove(pr_Listener);
+	}
+
+	/**
+	 * Passes a method on to the listeners which take methods as they are read.
+	 * @param pr_Method the method read
+	 */
+	public void methodFound(final Method pr_Method) {
+		for (IMethodLibraryReaderListener listener : m_Listeners) {
+			if (listener instanceof IMethodLibraryStreamListener) {
+				((IMethodLibraryStreamListener) listener).methodFound(pr_Method);
+			}
+		}
+	}
+
 	public void errorFound(final String pr_Message) {
 		for (IMethodLibraryReaderListener listener : m_Listeners) {
 			listener.methodLibraryErrorFound(pr_Message);
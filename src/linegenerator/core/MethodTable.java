@@ -0,0 +1,102 @@
+package linegenerator.core;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * The methods used by the compositions in a file, keyed by the label they are given in
+ * the file (null where the file uses a single method without a label). Methods can be
+ * looked up by label and labels by method.
+ *
+ * @author Tom
+ */
+public class MethodTable {
+
+    /** The method with each label. */
+    private final HashMap<String, Method> m_Methods;
+
+    /** The label of each method (the first it was given). */
+    private final HashMap<Method, String> m_Labels;
+
+    /**
+     * Constructor.
+     */
+    public MethodTable() {
+        m_Methods = new HashMap<String, Method>();
+        m_Labels = new HashMap<Method, String>();
+    }
+
+    /**
+     * Labels a method.
+     * @param pr_Label the label
+     * @param pr_Method the method
+     */
+    public void put(final String pr_Label, final Method pr_Method) {
+        final Method replaced = m_Methods.put(pr_Label, pr_Method);
+        if (replaced != null && m_Labels.containsKey(replaced) && Objects.equals(pr_Label, m_Labels.get(replaced))) {
+            m_Labels.remove(replaced);
+        }
+        if (!m_Labels.containsKey(pr_Method)) {
+            m_Labels.put(pr_Method, pr_Label);
+        }
+    }
+
+    public boolean containsKey(final String pr_Label) {
+        return m_Methods.containsKey(pr_Label);
+    }
+
+    /**
+     * @param pr_Label the label
+     * @return the method with the label, or null if there is none
+     */
+    public Method get(final String pr_Label) {
+        return m_Methods.get(pr_Label);
+    }
+
+    /**
+     * @param pr_Method the method
+     * @return whether the method has a label
+     */
+    public boolean containsMethod(final Method pr_Method) {
+        return m_Labels.containsKey(pr_Method);
+    }
+
+    /**
+     * @param pr_Method the method
+     * @return the label of the method, or null if it has none
+     */
+    public String getLabel(final Method pr_Method) {
+        return m_Labels.get(pr_Method);
+    }
+
+    /**
+     * @return the labelled methods
+     */
+    public Collection<Method> getMethods() {
+        return Collections.unmodifiableCollection(m_Methods.values());
+    }
+
+    /**
+     * @return the definition of each labelled method (see {@link Method#getDefinition()})
+     *         preceded by its label and '=', or by '*' for the method without a label,
+     *         in order
+     */
+    public SortedSet<String> getDefinitions() {
+        final TreeSet<String> definitions = new TreeSet<String>();
+        for (Map.Entry<String, Method> method : m_Methods.entrySet()) {
+            final String prefix = method.getKey() != null ? method.getKey() + "=" : "*";
+            definitions.add(prefix + method.getValue().getDefinition());
+        }
+        return definitions;
+    }
+
+    public boolean isEmpty() {
+        return m_Methods.isEmpty();
+    }
+
+}
@@ -14,7 +14,7 @@ public class NeatCompositionWriter extends AbstractCompositionVisitor {
     private boolean m_Overwrite;
     private boolean m_InIgnoreSection;
     
-    public NeatCompositionWriter(final Method[] pr_MethodLibrary,
+    public NeatCompositionWriter(final MethodLibrary pr_MethodLibrary,
                                  final boolean pr_Overwrite) {
         super(pr_MethodLibrary);
         m_Overwrite = pr_Overwrite;
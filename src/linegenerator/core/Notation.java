@@ -2,6 +2,8 @@ package linegenerator.core;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import linegenerator.core.exceptions.InvalidPlaceNotationException;
 
@@ -18,6 +20,13 @@ public class Notation extends ArrayList<String> {
     
     private static final long serialVersionUID = -2756089727457872546L;
     
+    /**
+     * The changes compiled to permutations (see {@link #getChanges(int)}). Replaced as
+     * a whole when recompiled, so threads proving with the same notation always see
+     * a consistent set of changes without locking.
+     */
+    private transient volatile Compiled m_Compiled;
+    
     public Notation()
     {
         // Do nothing
@@ -75,6 +84,138 @@ public class Notation extends ArrayList<String> {
         return entries;
     }
     
+    /**
+     * Gets the changes of the notation compiled to permutations, so that the bell
+     * in position i of the next row is the bell in position {@code change[i]} of the
+     * current row. The changes are compiled once and reused until the notation is
+     * modified.
+     * @param pr_Bells the number of bells the notation is rung on
+     * @return the compiled changes, one per entry in the notation
+     */
+    byte[][] getChanges(final int pr_Bells) {
+        return getCompiled(pr_Bells).m_Changes;
+    }
+    
+    /**
+     * Compiles the notation, unless it is already compiled for the number of bells and
+     * has not been modified since.
+     * @param pr_Bells the number of bells the notation is rung on
+     * @return the compiled notation
+     */
+    private Compiled getCompiled(final int pr_Bells) {
+        Compiled compiled = m_Compiled;
+        if (compiled == null || compiled.m_Bells != pr_Bells || compiled.m_ModCount != modCount) {
+            final int modification = modCount;
+            final byte[][] changes = new byte[size()][];
+            final byte[][] leadRows = new byte[size()][];
+            final byte[] leadHead = Row.rounds(pr_Bells).toArray();
+            for (int i = 0; i < changes.length; i++) {
+                changes[i] = compile(get(i), pr_Bells);
+                leadRows[i] = leadHead.clone();
+                for (int j = 0; j < pr_Bells; j++) {
+                    leadHead[j] = leadRows[i][changes[i][j]];
+                }
+            }
+            compiled = new Compiled(changes, leadRows, new Row(leadHead), pr_Bells, modification);
+            m_Compiled = compiled;
+        }
+        return compiled;
+    }
+    
+    /**
+     * Gets the rows of a lead of the notation started from rounds, i.e. the lead head
+     * followed by the row after each change except the last. Applying one as a
+     * permutation to a lead head gives the corresponding row of that lead.
+     * @param pr_Bells the number of bells the notation is rung on
+     * @return the rows of the lead, one per entry in the notation
+     */
+    byte[][] getLeadRows(final int pr_Bells) {
+        return getCompiled(pr_Bells).m_LeadRows;
+    }
+    
+    /**
+     * Gets the falseness tables of leads of the notation against other leads (see
+     * {@link FalsenessTable}). They are kept with the compiled notation, so are
+     * discarded along with it.
+     * @param pr_Bells the number of bells the notation is rung on
+     * @return the tables, keyed by the notation of the other lead and fixed positions
+     */
+    Map<String, FalsenessTable> getFalsenessTables(final int pr_Bells) {
+        return getCompiled(pr_Bells).m_FalsenessTables;
+    }
+    
+    /**
+     * Gets the row reached by applying every change of the notation to rounds. Applying
+     * it as a permutation to any row gives the row at the end of a lead started there.
+     * @param pr_Bells the number of bells the notation is rung on
+     * @return the lead head
+     */
+    public Row getLeadHead(final int pr_Bells) {
+        return getCompiled(pr_Bells).m_LeadHead;
+    }
+    
+    /**
+     * Compiles a single change to a permutation.
+     * @param pr_Places the places made in the change, or null for a cross
+     * @param pr_Bells the number of bells
+     * @return the permutation
+     */
+    private static byte[] compile(final String pr_Places, final int pr_Bells) {
+
+        /* 
+         * Calculate the external places:
+         * - If the first place in the row is even, add a place at the start
+         * - For even bell methods, if the last place in the row is odd, add a place at the end
+         * - For odd bell methods, if the last place is even, add a place at the end
+         */
+        boolean[] places = null;
+        if (pr_Places != null) {
+            places = new boolean[pr_Bells + 1];
+            for (int i = 0; i < pr_Places.length(); i++) {
+                final int place = Stage.getPositionOfLabel(pr_Places.charAt(i));
+                if (place <= pr_Bells) {
+                    places[place] = true;
+                }
+            }
+            int firstPlace = Stage.getPositionOfLabel(pr_Places.charAt(0));
+            int lastPlace = Stage.getPositionOfLabel(pr_Places.charAt(pr_Places.length() - 1));
+            if ((firstPlace % 2) == 0) {
+                // Add external place at the beginning
+                places[1] = true;
+            } else if ((((pr_Bells % 2) == 0) && ((lastPlace % 2) == 1)) 
+                       || (((pr_Bells % 2) == 1) && ((lastPlace % 2) == 0))) {
+                // Add external place at the end
+                places[pr_Bells] = true;
+            }
+        }
+        
+        /*
+         * Work out where each bell comes from using the places
+         */
+        final byte[] change = new byte[pr_Bells];
+        for (int i = 1; i <= pr_Bells; i++) {
+            
+            if ((places != null) && places[i]) {
+                change[i - 1] = (byte) (i - 1);
+            } else if (i < pr_Bells) {
+                change[i - 1] = (byte) i;
+                change[i] = (byte) (i - 1);
+                i++;
+            } else {
+                change[i - 1] = (byte) (i - 1);
+            }
+        }
+        
+        return change;
+    }
+    
+    @Override
+    public String set(final int pr_Index, final String pr_Places) {
+        // Replacing an entry does not count as a structural modification
+        m_Compiled = null;
+        return super.set(pr_Index, pr_Places);
+    }
+    
     @Override
     public String toString() {
         StringBuilder returnString = new StringBuilder();
@@ -93,4 +234,30 @@ public class Notation extends ArrayList<String> {
         return returnString.toString();
     }
     
+    /**
+     * The changes of a notation compiled for a number of bells.
+     */
+    private static final class Compiled {
+        
+        private final byte[][] m_Changes;
+        private final byte[][] m_LeadRows;
+        private final Row m_LeadHead;
+        private final int m_Bells;
+        private final int m_ModCount;
+        private final ConcurrentHashMap<String, FalsenessTable> m_FalsenessTables;
+        
+        private Compiled(final byte[][] pr_Changes,
+                         final byte[][] pr_LeadRows,
+                         final Row pr_LeadHead,
+                         final int pr_Bells,
+                         final int pr_ModCount) {
+            m_Changes = pr_Changes;
+            m_LeadRows = pr_LeadRows;
+            m_LeadHead = pr_LeadHead;
+            m_Bells = pr_Bells;
+            m_ModCount = pr_ModCount;
+            m_FalsenessTables = new ConcurrentHashMap<String, FalsenessTable>();
+        }
+    }
+    
 }
@@ -0,0 +1,144 @@
+package linegenerator.core;
+
+import java.util.Arrays;
+
+/**
+ * Counts occurrences of rows packed into longs (see {@link Row#pack(byte[], int, int)}),
+ * in an open addressing hash table of primitives so that adding and removing a row
+ * allocates nothing unless the table has to grow.
+ *
+ * Rows are found by linear probing from a multiplicative hash of the packed row. A
+ * packed row of more than one bell can never be -1 (every bell would be the sixteenth),
+ * so that marks an empty slot.
+ *
+ * @author Tom
+ */
+public final class PackedRowTable {
+
+    /** Marks an empty slot. */
+    private static final long EMPTY = -1L;
+
+    /** The fewest slots a table has. */
+    private static final int MIN_CAPACITY = 16;
+
+    /** The most slots a table is created with, however many rows are expected. */
+    private static final int MAX_INITIAL_CAPACITY = 1 << 22;
+
+    /** The packed rows, or {@link #EMPTY}. */
+    private long[] m_Rows;
+
+    /** The number of occurrences of the row in each slot. */
+    private int[] m_Counts;
+
+    /** The number of rows in the table. */
+    private int m_Size;
+
+    /** The shift taking a hash to a slot. */
+    private int m_Shift;
+
+    /**
+     * Constructor.
+     * @param pr_ExpectedRows the number of distinct rows expected, so the table can be
+     *                        made big enough at the start
+     */
+    public PackedRowTable(final int pr_ExpectedRows) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < MAX_INITIAL_CAPACITY && capacity < 2L * pr_ExpectedRows) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * @return the number of distinct rows in the table
+     */
+    public int size() {
+        return m_Size;
+    }
+
+    /**
+     * Records an occurrence of a row.
+     * @param pr_Row the packed row
+     * @return the number of occurrences of the row, including this one
+     */
+    public int add(final long pr_Row) {
+        int slot = getSlot(pr_Row);
+        while (m_Rows[slot] != EMPTY) {
+            if (m_Rows[slot] == pr_Row) {
+                return ++m_Counts[slot];
+            }
+            slot = (slot + 1) & (m_Rows.length - 1);
+        }
+        m_Rows[slot] = pr_Row;
+        m_Counts[slot] = 1;
+        if (++m_Size * 2 > m_Rows.length) {
+            grow();
+        }
+        return 1;
+    }
+
+    /**
+     * Removes an occurrence of a row, if it has one.
+     * @param pr_Row the packed row
+     */
+    public void remove(final long pr_Row) {
+        final int mask = m_Rows.length - 1;
+        int slot = getSlot(pr_Row);
+        while (m_Rows[slot] != pr_Row) {
+            if (m_Rows[slot] == EMPTY) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (--m_Counts[slot] > 0) {
+            return;
+        }
+
+        // Shift back any rows which probed past the emptied slot, so none is cut off
+        // from its hash slot by the gap
+        m_Size--;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (m_Rows[next] != EMPTY) {
+            final int home = getSlot(m_Rows[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                m_Rows[gap] = m_Rows[next];
+                m_Counts[gap] = m_Counts[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        m_Rows[gap] = EMPTY;
+        m_Counts[gap] = 0;
+    }
+
+    private int getSlot(final long pr_Row) {
+        return (int) ((pr_Row * 0x9E3779B97F4A7C15L) >>> m_Shift);
+    }
+
+    private void allocate(final int pr_Capacity) {
+        m_Rows = new long[pr_Capacity];
+        m_Counts = new int[pr_Capacity];
+        Arrays.fill(m_Rows, EMPTY);
+        m_Shift = 64 - Integer.numberOfTrailingZeros(pr_Capacity);
+        m_Size = 0;
+    }
+
+    private void grow() {
+        final long[] rows = m_Rows;
+        final int[] counts = m_Counts;
+        allocate(rows.length * 2);
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i] != EMPTY) {
+                int slot = getSlot(rows[i]);
+                while (m_Rows[slot] != EMPTY) {
+                    slot = (slot + 1) & (m_Rows.length - 1);
+                }
+                m_Rows[slot] = rows[i];
+                m_Counts[slot] = counts[i];
+                m_Size++;
+            }
+        }
+    }
+
+}
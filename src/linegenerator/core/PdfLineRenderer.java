@@ -0,0 +1,38 @@
+package linegenerator.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import linegenerator.core.exceptions.MethodGenerationException;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.pdf.PdfWriter;
+
+/**
+ * Writes the line of a method to a PDF file of its own.
+ *
+ * @author Tom
+ */
+public class PdfLineRenderer extends AbstractLineRenderer {
+
+    @Override
+    public String getFileExtension() {
+        return ".pdf";
+    }
+
+    @Override
+    void render(final LineFactory pr_Factory, final LineFactory.Page pr_Page, final File pr_File)
+        throws IOException, MethodGenerationException {
+        try {
+            final Document document = pr_Factory.createDocument(pr_Page.getPageSize());
+            final PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(pr_File));
+            pr_Factory.drawPage(pr_Page, document, writer);
+            document.close();
+        } catch (DocumentException e) {
+            throw new MethodGenerationException("Unable to create PDF file: " + e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package linegenerator.core;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import linegenerator.core.exceptions.MethodGenerationException;
+
+/**
+ * Writes the line of a method to a PNG image, on a white background.
+ *
+ * @author Tom
+ */
+public class PngLineRenderer extends AbstractLineRenderer {
+
+    /** The default number of pixels to a point: 288 pixels to the inch. */
+    public static final float DEFAULT_SCALE = 4f;
+
+    /** The number of pixels to a point. */
+    private final float m_Scale;
+
+    /**
+     * Constructor.
+     * @param pr_Scale the number of pixels to a point
+     */
+    public PngLineRenderer(final float pr_Scale) {
+        m_Scale = pr_Scale;
+    }
+
+    @Override
+    public String getFileExtension() {
+        return ".png";
+    }
+
+    @Override
+    public String getSettings() {
+        return super.getSettings() + " " + m_Scale;
+    }
+
+    @Override
+    void render(final LineFactory pr_Factory, final LineFactory.Page pr_Page, final File pr_File)
+        throws IOException, MethodGenerationException {
+
+        final BufferedImage image = new BufferedImage((int) Math.ceil(pr_Page.getPageSize().getWidth() * m_Scale),
+                                                      (int) Math.ceil(pr_Page.getPageSize().getHeight() * m_Scale),
+                                                      BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        g.scale(m_Scale, m_Scale);
+
+        final LineCanvas canvas = new Graphics2DCanvas(g);
+        try {
+            pr_Factory.drawText(pr_Page, canvas);
+            pr_Factory.drawLine(pr_Page, canvas);
+        } finally {
+            canvas.dispose();
+        }
+
+        if (!ImageIO.write(image, "png", pr_File)) {
+            throw new MethodGenerationException("No PNG writer available.");
+        }
+    }
+
+}
@@ -0,0 +1,382 @@
+package linegenerator.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import linegenerator.core.exceptions.CompositionDefinitionException;
+import linegenerator.core.exceptions.FalseGridException;
+
+/**
+ * The results of proving compositions, kept in a file between runs so that a
+ * composition is only proved again once it, or a method it refers to, has changed.
+ *
+ * Each result is found by a hash of everything the proof depends on: the text the
+ * composition was read from along with the methods it was read with (see
+ * {@link AbstractComposition#getSource()}), how it is to be proved and the definition
+ * of every method it may refer to (see {@link Method#getDefinition()}), with the label
+ * of each labelled method. The result holds what proving the composition
+ * records on it: whether it is true (or the error found proving it), its number of
+ * changes, its first change and its course ends. Compositions which weren't read from
+ * a file, or which threw an unexpected error, are never kept. Only the results used or
+ * added since the cache was read are written back, so results for compositions which
+ * have changed or gone are dropped rather than kept forever.
+ *
+ * The cache may be used by several threads proving compositions at once.
+ *
+ * The file is laid out as:
+ * <pre>
+ * int     magic number
+ * int     version
+ * int     number of results (n)
+ * ...     n results, each: 20 byte hash, byte outcome (see {@link Entry}), error
+ *         message, int changes, first change, int plain leads added, short number of
+ *         course ends followed by each course end and boolean whether it is complete
+ * </pre>
+ * Strings are written as a short length (-1 for none) followed by UTF-8 bytes.
+ *
+ * @author Tom
+ */
+public class ProofCache {
+
+    /** Identifies a proof cache. */
+    private static final int MAGIC = 0x4C475043;
+
+    /** The version of the file format; change it whenever proving gives different results. */
+    private static final int VERSION = 2;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The results, keyed by the hash of what they depend on. */
+    private final ConcurrentHashMap<ByteBuffer, Entry> m_Entries;
+
+    /** The keys of the results used or added since the cache was read. */
+    private final Set<ByteBuffer> m_Used;
+
+    /** The number of compositions given the result of an earlier proof. */
+    private final AtomicInteger m_Restored;
+
+    /**
+     * Constructor, for an empty cache.
+     */
+    public ProofCache() {
+        m_Entries = new ConcurrentHashMap<ByteBuffer, Entry>();
+        m_Used = Collections.newSetFromMap(new ConcurrentHashMap<ByteBuffer, Boolean>());
+        m_Restored = new AtomicInteger();
+    }
+
+    /**
+     * Reads a cache from a file. A file which doesn't exist, or was written by a
+     * different version, gives an empty cache.
+     * @param pr_File the file
+     * @return the cache
+     * @throws IOException if the file can't be read
+     */
+    public static ProofCache read(final File pr_File) throws IOException {
+        final ProofCache cache = new ProofCache();
+        if (!pr_File.exists()) {
+            return cache;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(pr_File)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a proof cache: " + pr_File);
+            }
+            if (input.readInt() != VERSION) {
+                return cache;
+            }
+            final int size = input.readInt();
+            for (int i = 0; i < size; i++) {
+                final byte[] key = new byte[20];
+                input.readFully(key);
+                cache.m_Entries.put(ByteBuffer.wrap(key), Entry.read(input));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Proof cache is incomplete: " + pr_File);
+        }
+        return cache;
+    }
+
+    /**
+     * Writes the results used or added since the cache was read to a file. Nothing must
+     * be added to the cache while it is written.
+     * @param pr_File the file
+     * @throws IOException if the file can't be written
+     */
+    public void write(final File pr_File) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(pr_File)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(m_Used.size());
+            for (Map.Entry<ByteBuffer, Entry> entry : m_Entries.entrySet()) {
+                if (m_Used.contains(entry.getKey())) {
+                    output.write(entry.getKey().array());
+                    entry.getValue().write(output);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of results in the cache
+     */
+    public int size() {
+        return m_Entries.size();
+    }
+
+    /**
+     * @return the number of compositions given the result of an earlier proof
+     */
+    public int getRestored() {
+        return m_Restored.get();
+    }
+
+    /**
+     * Gives a composition the result of an earlier proof, if it hasn't changed since.
+     * @param pu_Composition the composition, not yet proved
+     * @return whether the composition was given a result; if not, it must be proved
+     */
+    public boolean restore(final AbstractComposition pu_Composition) {
+        final ByteBuffer key = getKey(pu_Composition);
+        final Entry entry = key != null ? m_Entries.get(key) : null;
+        if (entry == null) {
+            return false;
+        }
+        pu_Composition.restoreProof(entry);
+        m_Used.add(key);
+        m_Restored.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Keeps the result of proving a composition.
+     * @param pr_Composition the composition, which has been proved
+     */
+    public void add(final AbstractComposition pr_Composition) {
+        final ByteBuffer key = getKey(pr_Composition);
+        if (key != null) {
+            m_Entries.put(key, new Entry(pr_Composition));
+            m_Used.add(key);
+        }
+    }
+
+    /**
+     * Calculates the hash of everything the proof of a composition depends on.
+     * @param pr_Composition the composition
+     * @return the hash, or null if the composition wasn't read from a file
+     */
+    private static ByteBuffer getKey(final AbstractComposition pr_Composition) {
+
+        if (pr_Composition.getSource() == null) {
+            return null;
+        }
+
+        // The methods are sorted, so their order doesn't change the hash; the labelled
+        // methods are hashed with their labels, so swapping two labels does
+        final TreeSet<String> definitions = new TreeSet<String>();
+        for (Method method : pr_Composition.getMethods()) {
+            definitions.add(method.getDefinition());
+        }
+        final SortedSet<String> labelledDefinitions = pr_Composition.m_MethodTable.getDefinitions();
+
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(pr_Composition.getSource().getBytes(UTF8));
+        digest.update((byte) 0);
+        digest.update((pr_Composition.m_PadPlainLeads + "|" + pr_Composition.m_IncrementalProofLimit).getBytes(UTF8));
+        for (String definition : definitions) {
+            digest.update((byte) 0);
+            digest.update(definition.getBytes(UTF8));
+        }
+        digest.update((byte) 1);
+        for (String definition : labelledDefinitions) {
+            digest.update((byte) 0);
+            digest.update(definition.getBytes(UTF8));
+        }
+        return ByteBuffer.wrap(digest.digest());
+    }
+
+    private static void writeString(final DataOutputStream pu_Output, final String pr_String) throws IOException {
+        if (pr_String == null) {
+            pu_Output.writeShort(-1);
+        } else {
+            final byte[] bytes = pr_String.getBytes(UTF8);
+            pu_Output.writeShort(bytes.length);
+            pu_Output.write(bytes);
+        }
+    }
+
+    private static String readString(final DataInputStream pr_Input) throws IOException {
+        final int length = pr_Input.readShort();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        pr_Input.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * The result of proving a composition.
+     */
+    public static class Entry {
+
+        /** The composition is true. */
+        private static final byte TRUE = 0;
+
+        /** The composition is not true, but no error was found. */
+        private static final byte FALSE = 1;
+
+        /** The composition could not be proved (see {@link CompositionDefinitionException}). */
+        private static final byte DEFINITION_ERROR = 2;
+
+        /** The composition is false (see {@link FalseGridException}). */
+        private static final byte FALSE_GRID = 3;
+
+        private final byte m_Outcome;
+        private final String m_ErrorMessage;
+        private final int m_Changes;
+        private final String m_FirstChange;
+        private final int m_AddedPlainLeads;
+        private final String[] m_CourseEnds;
+        private final boolean[] m_CourseEndsComplete;
+
+        /**
+         * Constructor.
+         * @param pr_Composition the composition, which has been proved
+         */
+        private Entry(final AbstractComposition pr_Composition) {
+            if (pr_Composition.m_ProofError instanceof CompositionDefinitionException) {
+                m_Outcome = DEFINITION_ERROR;
+            } else if (pr_Composition.m_ProofError instanceof FalseGridException) {
+                m_Outcome = FALSE_GRID;
+            } else {
+                m_Outcome = Boolean.TRUE.equals(pr_Composition.m_IsTrue) ? TRUE : FALSE;
+            }
+            m_ErrorMessage = pr_Composition.m_ProofError != null ? pr_Composition.m_ProofError.getMessage() : null;
+            m_Changes = pr_Composition.getChanges();
+            m_FirstChange = pr_Composition.getFirstChange();
+            m_AddedPlainLeads = pr_Composition.getAddedPlainLeads();
+            m_CourseEnds = new String[pr_Composition.getNumCourseEnds()];
+            m_CourseEndsComplete = new boolean[m_CourseEnds.length];
+            for (int i = 0; i < m_CourseEnds.length; i++) {
+                m_CourseEnds[i] = pr_Composition.getCourseEnd(i);
+                m_CourseEndsComplete[i] = pr_Composition.isCourseEndComplete(i);
+            }
+        }
+
+        private Entry(final byte pr_Outcome,
+                      final String pr_ErrorMessage,
+                      final int pr_Changes,
+                      final String pr_FirstChange,
+                      final int pr_AddedPlainLeads,
+                      final String[] pr_CourseEnds,
+                      final boolean[] pr_CourseEndsComplete) {
+            m_Outcome = pr_Outcome;
+            m_ErrorMessage = pr_ErrorMessage;
+            m_Changes = pr_Changes;
+            m_FirstChange = pr_FirstChange;
+            m_AddedPlainLeads = pr_AddedPlainLeads;
+            m_CourseEnds = pr_CourseEnds;
+            m_CourseEndsComplete = pr_CourseEndsComplete;
+        }
+
+        private static Entry read(final DataInputStream pr_Input) throws IOException {
+            final byte outcome = pr_Input.readByte();
+            final String errorMessage = readString(pr_Input);
+            final int changes = pr_Input.readInt();
+            final String firstChange = readString(pr_Input);
+            final int addedPlainLeads = pr_Input.readInt();
+            final String[] courseEnds = new String[pr_Input.readShort()];
+            final boolean[] courseEndsComplete = new boolean[courseEnds.length];
+            for (int i = 0; i < courseEnds.length; i++) {
+                courseEnds[i] = readString(pr_Input);
+                courseEndsComplete[i] = pr_Input.readBoolean();
+            }
+            return new Entry(outcome, errorMessage, changes, firstChange, addedPlainLeads, courseEnds, courseEndsComplete);
+        }
+
+        private void write(final DataOutputStream pu_Output) throws IOException {
+            pu_Output.writeByte(m_Outcome);
+            writeString(pu_Output, m_ErrorMessage);
+            pu_Output.writeInt(m_Changes);
+            writeString(pu_Output, m_FirstChange);
+            pu_Output.writeInt(m_AddedPlainLeads);
+            pu_Output.writeShort(m_CourseEnds.length);
+            for (int i = 0; i < m_CourseEnds.length; i++) {
+                writeString(pu_Output, m_CourseEnds[i]);
+                pu_Output.writeBoolean(m_CourseEndsComplete[i]);
+            }
+        }
+
+        /**
+         * @return whether the composition was proved true
+         */
+        public boolean isTrue() {
+            return m_Outcome == TRUE;
+        }
+
+        /**
+         * @return the error found proving the composition, or null if there was none
+         */
+        public Exception getError() {
+            switch (m_Outcome) {
+            case DEFINITION_ERROR:
+                return new CompositionDefinitionException(m_ErrorMessage);
+            case FALSE_GRID:
+                return new FalseGridException(m_ErrorMessage);
+            default:
+                return null;
+            }
+        }
+
+        public int getChanges() {
+            return m_Changes;
+        }
+
+        public String getFirstChange() {
+            return m_FirstChange;
+        }
+
+        /**
+         * @return the number of plain leads the proof added to bring the composition
+         *         round
+         */
+        public int getAddedPlainLeads() {
+            return m_AddedPlainLeads;
+        }
+
+        public int getNumCourseEnds() {
+            return m_CourseEnds.length;
+        }
+
+        public String getCourseEnd(final int pr_Row) {
+            return m_CourseEnds[pr_Row];
+        }
+
+        public boolean isCourseEndComplete(final int pr_Row) {
+            return m_CourseEndsComplete[pr_Row];
+        }
+    }
+
+}
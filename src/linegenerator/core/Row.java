@@ -0,0 +1,217 @@
+package linegenerator.core;
+
+import java.util.Arrays;
+
+/**
+ * Represents a single row of bells as a permutation.
+ *
+ * Bells are held zero-based in a byte array, so rounds on n bells is
+ * {0, 1, ..., n - 1}. Rows are immutable.
+ *
+ * @author Tom
+ */
+public final class Row implements Comparable<Row> {
+
+    /** The bell in each position of the row (zero-based). */
+    private final byte[] m_Bells;
+
+    /** Cached hash code (zero until calculated). */
+    private int m_HashCode;
+
+    /**
+     * Constructor (the array is not copied).
+     * @param pr_Bells the bell in each position of the row
+     */
+    Row(final byte[] pr_Bells) {
+        m_Bells = pr_Bells;
+    }
+
+    /**
+     * Constructor.
+     * @param pr_Row the row as a string of bell labels
+     */
+    public Row(final String pr_Row) {
+        m_Bells = new byte[pr_Row.length()];
+        for (int i = 0; i < m_Bells.length; i++) {
+            m_Bells[i] = (byte) (Stage.getPositionOfLabel(pr_Row.charAt(i)) - 1);
+        }
+    }
+
+    /**
+     * @param pr_Bells the number of bells
+     * @return rounds on the specified number of bells
+     */
+    public static Row rounds(final int pr_Bells) {
+        final byte[] bells = new byte[pr_Bells];
+        for (int i = 0; i < pr_Bells; i++) {
+            bells[i] = (byte) i;
+        }
+        return new Row(bells);
+    }
+
+    /**
+     * @return the number of bells in the row
+     */
+    public int getBells() {
+        return m_Bells.length;
+    }
+
+    /**
+     * @param pr_Position the position in the row (zero-based)
+     * @return the bell in that position (zero-based)
+     */
+    public int getBell(final int pr_Position) {
+        return m_Bells[pr_Position];
+    }
+
+    /**
+     * @param pr_Bell the bell to find (zero-based)
+     * @return the position of the bell in the row (zero-based), or -1 if not found
+     */
+    public int getPosition(final int pr_Bell) {
+        for (int i = 0; i < m_Bells.length; i++) {
+            if (m_Bells[i] == pr_Bell) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Applies a permutation to this row, so that the bell in position i of the new row
+     * is the bell in position {@code pr_Permutation[i]} of this row.
+     * @param pr_Permutation the permutation to apply
+     * @return the permuted row
+     */
+    public Row permute(final Row pr_Permutation) {
+        final byte[] bells = new byte[m_Bells.length];
+        for (int i = 0; i < bells.length; i++) {
+            bells[i] = m_Bells[pr_Permutation.m_Bells[i]];
+        }
+        return new Row(bells);
+    }
+
+    /**
+     * @return the permutation which takes this row back to rounds
+     */
+    public Row inverse() {
+        final byte[] bells = new byte[m_Bells.length];
+        for (int i = 0; i < bells.length; i++) {
+            bells[m_Bells[i]] = (byte) i;
+        }
+        return new Row(bells);
+    }
+
+    /**
+     * @return whether the row is rounds
+     */
+    public boolean isRounds() {
+        for (int i = 0; i < m_Bells.length; i++) {
+            if (m_Bells[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a copy of the bells of the row
+     */
+    byte[] toArray() {
+        return m_Bells.clone();
+    }
+
+    /**
+     * Copies the bells of the row into an array.
+     * @param pu_Bells the array to copy into
+     * @param pr_Offset the offset in the array at which to start
+     */
+    void copyTo(final byte[] pu_Bells, final int pr_Offset) {
+        System.arraycopy(m_Bells, 0, pu_Bells, pr_Offset, m_Bells.length);
+    }
+
+    /**
+     * Converts part of an array to a string of bell labels.
+     * @param pr_Bells the array containing the row
+     * @param pr_Offset the offset of the row in the array
+     * @param pr_Length the number of bells in the row
+     * @return the row as a string
+     */
+    static String toString(final byte[] pr_Bells, final int pr_Offset, final int pr_Length) {
+        final char[] labels = new char[pr_Length];
+        for (int i = 0; i < pr_Length; i++) {
+            labels[i] = Stage.getLabelCharAtPosition(pr_Bells[pr_Offset + i] + 1);
+        }
+        return new String(labels);
+    }
+
+    /**
+     * Calculates the rank of a row within the extent, i.e. its index when all the rows
+     * on the stage are listed in lexical order of bells.
+     * @param pr_Bells the array containing the row
+     * @param pr_Offset the offset of the row in the array
+     * @param pr_Length the number of bells in the row
+     * @return the rank, between 0 and one less than the number of rows in the extent
+     */
+    static int rank(final byte[] pr_Bells, final int pr_Offset, final int pr_Length) {
+        int rank = 0;
+        int used = 0;
+        for (int i = 0; i < pr_Length; i++) {
+            final int bell = pr_Bells[pr_Offset + i];
+            rank = rank * (pr_Length - i) + bell - Integer.bitCount(used & ((1 << bell) - 1));
+            used |= 1 << bell;
+        }
+        return rank;
+    }
+
+    /**
+     * Packs a row of up to sixteen bells into a long, four bits per bell.
+     * @param pr_Bells the array containing the row
+     * @param pr_Offset the offset of the row in the array
+     * @param pr_Length the number of bells in the row
+     * @return the packed row
+     */
+    static long pack(final byte[] pr_Bells, final int pr_Offset, final int pr_Length) {
+        long packed = 0;
+        for (int i = 0; i < pr_Length; i++) {
+            packed = (packed << 4) | pr_Bells[pr_Offset + i];
+        }
+        return packed;
+    }
+
+    @Override
+    public boolean equals(final Object pr_Object) {
+        if (pr_Object == this) {
+            return true;
+        } else if (!(pr_Object instanceof Row)) {
+            return false;
+        } else {
+            return Arrays.equals(m_Bells, ((Row) pr_Object).m_Bells);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        if (m_HashCode == 0) {
+            m_HashCode = Arrays.hashCode(m_Bells);
+        }
+        return m_HashCode;
+    }
+
+    @Override
+    public int compareTo(final Row pr_Other) {
+        final int length = Math.min(m_Bells.length, pr_Other.m_Bells.length);
+        for (int i = 0; i < length; i++) {
+            if (m_Bells[i] != pr_Other.m_Bells[i]) {
+                return m_Bells[i] - pr_Other.m_Bells[i];
+            }
+        }
+        return m_Bells.length - pr_Other.m_Bells.length;
+    }
+
+    @Override
+    public String toString() {
+        return toString(m_Bells, 0, m_Bells.length);
+    }
+
+}
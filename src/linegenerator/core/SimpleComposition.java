@@ -2,6 +2,7 @@ package linegenerator.core;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 
 import linegenerator.core.exceptions.CompositionDefinitionException;
 import linegenerator.core.exceptions.FalseGridException;
@@ -10,8 +11,14 @@ public class SimpleComposition extends AbstractComposition {
 
     private ArrayList<String> m_Calls;
     private ArrayList<Integer> m_PlainLeadCounts;
+    
+    /** The plain leads added by the proof to bring the composition round, shown as an extra row. */
+    private int m_AddedPlainLeads;
+    
+    /** The first change as given, before the proof fills it in. */
+    private String m_GivenFirstChange;
 
-    public SimpleComposition(final HashMap<String, Method> pr_MethodLibrary, final int pr_Changes) {
+    public SimpleComposition(final MethodTable pr_MethodLibrary, final int pr_Changes) {
         super(pr_MethodLibrary, pr_Changes);
         m_Calls = new ArrayList<String>();
         m_PlainLeadCounts = new ArrayList<Integer>();
@@ -40,23 +47,31 @@ public class SimpleComposition extends AbstractComposition {
 
     @Override
     public int getNumRows() {
-        return m_Calls.size();
+        return m_AddedPlainLeads > 0 ? m_Calls.size() + 1 : m_Calls.size();
     }
 
     public void addCall(final String pr_Call) {
         m_Calls.add(pr_Call);
+        invalidateProof();
     }
 
     public String getCall(final int pr_Row) {
-        return m_Calls.get(pr_Row);
+        return pr_Row == m_Calls.size() ? LeadType.PLAIN.toString() : m_Calls.get(pr_Row);
     }
 
     public void addPlainLeadCount(final Integer pr_Count) {
         m_PlainLeadCounts.add(pr_Count);
+        invalidateProof();
     }
 
     public int getPlainLeadCount(final int pr_Row) {
-        return m_PlainLeadCounts.get(pr_Row);
+        return pr_Row == m_Calls.size() ? m_AddedPlainLeads : m_PlainLeadCounts.get(pr_Row);
+    }
+    
+    @Override
+    public void setFirstChange(final String pr_FirstChange) {
+        super.setFirstChange(pr_FirstChange);
+        m_GivenFirstChange = pr_FirstChange;
     }
     
     @Override
@@ -71,6 +86,7 @@ public class SimpleComposition extends AbstractComposition {
         m_CourseEnds.clear();
         m_CourseEndsComplete.clear();
         m_Changes = 0;
+        m_AddedPlainLeads = 0;
         if (m_FirstChange == null) {
             m_FirstChange = m_FirstMethod.getStage().getFirstChange();
         }
@@ -95,6 +111,14 @@ public class SimpleComposition extends AbstractComposition {
             grid = new Grid(m_FirstMethod.getStage());
         }
         
+        final HashSet<Method> methods = new HashSet<Method>(methodChanges);
+        methods.add(m_FirstMethod);
+        long maxLeads = 1 + getMaxFinishingLeads(methods);
+        for (int plainLeadCount : plainLeadCounts) {
+            maxLeads += plainLeadCount;
+        }
+        startIncrementalProof(grid, maxLeads, methods);
+        
         Notation leadNotation = null;
         Method method = m_FirstMethod;
         int notationIndex = m_FirstMethod.getPlaceNotation().length - 1;
@@ -105,6 +129,7 @@ public class SimpleComposition extends AbstractComposition {
                 leadNotation = method.getLeadNotation(LeadType.PLAIN, notationIndex);
                 notationIndex = (notationIndex + 1) % method.getPlaceNotation().length;
                 grid.add(leadNotation, startOffset);
+                grid.checkTruth();
                 startOffset = 0;
             }
             
@@ -120,6 +145,7 @@ public class SimpleComposition extends AbstractComposition {
             
             notationIndex = (notationIndex + 1) % method.getPlaceNotation().length;
             courseEnd = grid.add(leadNotation, startOffset);
+            grid.checkTruth();
             startOffset = 0;
             addCourseEnd = i < m_Calls.size();
             if (addCourseEnd) {
@@ -135,8 +161,7 @@ public class SimpleComposition extends AbstractComposition {
 	        if (!grid.containsSufficientRounds()) {
 	            int numExtraLeads = finishFinalCourse(method, notationIndex, grid, -1, addCourseEnd);
 	            if (numExtraLeads > 0) {
-	                m_Calls.add(LeadType.PLAIN.toString());
-	                m_PlainLeadCounts.add(numExtraLeads);
+	                m_AddedPlainLeads = numExtraLeads;
 	            }
 	        } else if (!grid.getLastChange().contains(roundsChange)) {
 	            for (int i = grid.size() - 1; i >= 0; i--) {
@@ -161,6 +186,17 @@ public class SimpleComposition extends AbstractComposition {
         return grid;
     }
     
+    @Override
+    void restoreProof(final ProofCache.Entry pr_Proof) {
+        super.restoreProof(pr_Proof);
+        m_AddedPlainLeads = pr_Proof.getAddedPlainLeads();
+    }
+    
+    @Override
+    int getAddedPlainLeads() {
+        return m_AddedPlainLeads;
+    }
+    
     protected void applyFootnotes(final ArrayList<LeadType> pu_Calls,
                                   final ArrayList<Integer> pu_PlainLeadCounts,
                                   final ArrayList<Method> pu_MethodChanges)
@@ -209,8 +245,8 @@ public class SimpleComposition extends AbstractComposition {
     @Override
     public String getRowAsString(final int pr_Row) {
         StringBuilder returnString = new StringBuilder();
-        if (m_Calls.get(pr_Row) != null) {
-            returnString.append(m_Calls.get(pr_Row).toString());
+        if (getCall(pr_Row) != null) {
+            returnString.append(getCall(pr_Row));
         }
         if (pr_Row < m_CourseEnds.size()) {
             returnString.append("\t");
@@ -229,7 +265,7 @@ public class SimpleComposition extends AbstractComposition {
             }
         } else {
             returnString.append("\t");
-            returnString.append(m_PlainLeadCounts.get(pr_Row));
+            returnString.append(getPlainLeadCount(pr_Row));
         }
         returnString.append("\n");
         return returnString.toString();
@@ -238,10 +274,42 @@ public class SimpleComposition extends AbstractComposition {
     @Override
     public String getCompositionAsString() {
         StringBuilder returnString = new StringBuilder();
-        for (int i = 0; i < m_Calls.size(); i++) {
+        for (int i = 0; i < getNumRows(); i++) {
             returnString.append(getRowAsString(i));
         }
         return returnString.toString();
     }
     
+    /**
+     * Compositions are equal when they were given the same rows, methods, first change
+     * and footnotes. Proving a composition doesn't change what it is equal to, so it can
+     * be kept in a hash based collection before it is proved.
+     */
+    @Override
+    public boolean equals(final Object pr_Object) {
+        
+        if (pr_Object == null) {
+            return false;
+        } else if (!(pr_Object instanceof SimpleComposition)) {
+            return false;
+        } else {
+            SimpleComposition composition = (SimpleComposition) pr_Object;
+            return composition.m_Calls.equals(m_Calls) &&
+                   composition.m_PlainLeadCounts.equals(m_PlainLeadCounts) &&
+                   composition.m_MethodChanges.equals(m_MethodChanges) &&
+                   (composition.m_FirstMethod == null ? m_FirstMethod == null : composition.m_FirstMethod.equals(m_FirstMethod)) &&
+                   (composition.m_GivenFirstChange == null ? m_GivenFirstChange == null : composition.m_GivenFirstChange.equals(m_GivenFirstChange)) &&
+                   composition.m_Footnotes.equals(m_Footnotes) &&
+                   composition.m_Substitutions.equals(m_Substitutions) &&
+                   composition.m_GlobalSubstitutions.equals(m_GlobalSubstitutions) &&
+                   composition.m_OverriddenCalls.equals(m_OverriddenCalls);
+        }
+        
+    }
+    
+    @Override
+    public int hashCode() {
+        return (m_Calls.hashCode() * 31 + m_PlainLeadCounts.hashCode()) * 31 + (m_FirstMethod == null ? 0 : m_FirstMethod.hashCode());
+    }
+    
 }
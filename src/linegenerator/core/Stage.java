@@ -79,7 +79,11 @@ public enum Stage implements Comparable<Stage> {
     public static String getLabelAtPosition(final int pr_Position) {
         return "" + LABELS.charAt(pr_Position - 1);
     }
-    
+
+    public static char getLabelCharAtPosition(final int pr_Position) {
+        return LABELS.charAt(pr_Position - 1);
+    }
+
     /**
      * @return the first change on this stage
      */
@@ -100,12 +104,25 @@ public enum Stage implements Comparable<Stage> {
     }
 	
 	/**
-	 * @return the factorial of the stage
+	 * @return the factorial of the stage: the number of changes in the extent, which
+	 *         needs a long from thirteen bells upwards
 	 */
-	public final int getMaxChanges() {
+	public final long getMaxChanges() {
 		return factorial(m_Bells);
 	}
 	
+	/**
+	 * Calculates the number of extents a length covers, and so how many times each
+	 * row may occur in a touch of that length.
+	 * @param pr_Changes the number of changes
+	 * @return the number of extents, at least one
+	 */
+	public final int getExtents(final long pr_Changes) {
+		final long maxChanges = getMaxChanges();
+		final long extents = pr_Changes / maxChanges + (pr_Changes % maxChanges > 0 ? 1 : 0);
+		return (int) Math.max(1, Math.min(extents, Integer.MAX_VALUE));
+	}
+	
 	/** {@inheritDoc} */
 	@Override
 	public final String toString() {
@@ -137,12 +154,12 @@ public enum Stage implements Comparable<Stage> {
 	 * @param pr_N the number to calculate the factorial of
 	 * @return the factorial of the specified number
 	 */
-	private int factorial(final int pr_N) {
-		if (pr_N == 1) {
-			return 1;
-		} else {
-			return pr_N * factorial(pr_N - 1);
+	private long factorial(final int pr_N) {
+		long factorial = 1;
+		for (int i = 2; i <= pr_N; i++) {
+			factorial *= i;
 		}
+		return factorial;
 	}
 	
 	/**
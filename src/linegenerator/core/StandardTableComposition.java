@@ -3,13 +3,14 @@ package linegenerator.core;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 
 import linegenerator.core.exceptions.CompositionDefinitionException;
 import linegenerator.core.exceptions.FalseGridException;
 
 public class StandardTableComposition extends AbstractTableComposition {
 
-    public StandardTableComposition(final HashMap<String, Method> pr_MethodLibrary, final int pr_Changes) {
+    public StandardTableComposition(final MethodTable pr_MethodLibrary, final int pr_Changes) {
         super(pr_MethodLibrary, pr_Changes);
         m_Rows = new ArrayList<TableCompositionRow>();
     }
@@ -112,13 +113,30 @@ public class StandardTableComposition extends AbstractTableComposition {
         }
         
         final ArrayList<Method> methods = new ArrayList<Method>();
+        int numCalls = 0;
         for (TableCompositionRow row : rows) {
             if (!row.isExpandedRow()) {
                 for (Method method : row.getMethods()) {
                     methods.add(method);
                 }
             }
+            for (int callPtr = 0; callPtr < row.size(); callPtr++) {
+                if (row.getCalls()[callPtr] != null) {
+                    numCalls++;
+                }
+            }
+        }
+        
+        // Once the last method is reached, each call is found within a course of it
+        final HashSet<Method> distinctMethods = new HashSet<Method>(methods);
+        distinctMethods.add(m_FirstMethod);
+        long courseLeads = 0;
+        for (Method method : distinctMethods) {
+            courseLeads = Math.max(courseLeads, method.getStage().getBells() * method.getPlaceNotation().length);
         }
+        startIncrementalProof(grid,
+                              1 + 2 * methods.size() + numCalls * (courseLeads + 1) + getMaxFinishingLeads(distinctMethods),
+                              distinctMethods);
         
         for (int rowPtr = 0; rowPtr < rows.size(); rowPtr++) {
             TableCompositionRow row = rows.get(rowPtr);
@@ -152,6 +170,7 @@ public class StandardTableComposition extends AbstractTableComposition {
                             grid.add(methods.get(methodPointer).getLeadNotation(LeadType.PLAIN, notationIndex), startOffset);
                             currentPosition = m_PlainLeadTransitions.get(methods.get(methodPointer)).get(notationIndex).get(currentPosition);
                         }
+                        grid.checkTruth();
                         
                         lastChange = grid.getLastChange();
                         if (currentPosition.equals(homePosition)) {
@@ -0,0 +1,164 @@
+package linegenerator.core;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.font.LineMetrics;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Draws a method line as the elements of an SVG document. Text is measured with AWT,
+ * in the font it is drawn in.
+ *
+ * @author Tom
+ */
+public class SvgCanvas extends LineCanvas {
+
+    /** The number of decimal places coordinates are written with. */
+    private static final int PRECISION = 3;
+
+    private final StringBuilder m_Elements;
+    private final Graphics2D m_Metrics;
+    private Color m_Color;
+    private float m_StrokeWidth;
+    private Font m_Font;
+
+    /**
+     * Constructor.
+     */
+    public SvgCanvas() {
+        m_Elements = new StringBuilder();
+        m_Metrics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+        m_Color = Color.BLACK;
+        m_StrokeWidth = 1f;
+        m_Font = null;
+    }
+
+    /**
+     * @return the elements drawn so far
+     */
+    public String getElements() {
+        return m_Elements.toString();
+    }
+
+    @Override
+    public void setColor(final Color pr_Color) {
+        m_Color = pr_Color;
+    }
+
+    @Override
+    public void setStroke(final float pr_Width) {
+        m_StrokeWidth = pr_Width;
+    }
+
+    @Override
+    public void setFont(final Font pr_Font) {
+        m_Font = pr_Font;
+        m_Metrics.setFont(pr_Font);
+    }
+
+    @Override
+    public void draw(final Shape pr_Shape) {
+        m_Elements.append("<path d=\"").append(getPathData(pr_Shape))
+                  .append("\" fill=\"none\" stroke=\"").append(getColor())
+                  .append("\" stroke-width=\"").append(format(m_StrokeWidth))
+                  .append("\" stroke-linecap=\"round\" stroke-linejoin=\"round\"/>\n");
+    }
+
+    @Override
+    public void fill(final Shape pr_Shape) {
+        m_Elements.append("<path d=\"").append(getPathData(pr_Shape))
+                  .append("\" fill=\"").append(getColor()).append("\"/>\n");
+    }
+
+    @Override
+    public void drawString(final String pr_Text, final float pr_X, final float pr_Y) {
+        m_Elements.append("<text x=\"").append(format(pr_X))
+                  .append("\" y=\"").append(format(pr_Y))
+                  .append("\" font-family=\"").append(escape(m_Font.getFamily()))
+                  .append("\" font-size=\"").append(format(m_Font.getSize2D()));
+        if (m_Font.isBold()) {
+            m_Elements.append("\" font-weight=\"bold");
+        }
+        if (m_Font.isItalic()) {
+            m_Elements.append("\" font-style=\"italic");
+        }
+        m_Elements.append("\" fill=\"").append(getColor()).append("\">")
+                  .append(escape(pr_Text)).append("</text>\n");
+    }
+
+    @Override
+    public Rectangle2D getStringBounds(final String pr_Text) {
+        return m_Metrics.getFontMetrics().getStringBounds(pr_Text, m_Metrics);
+    }
+
+    @Override
+    public LineMetrics getLineMetrics(final String pr_Text) {
+        return m_Metrics.getFontMetrics().getLineMetrics(pr_Text, m_Metrics);
+    }
+
+    @Override
+    public void dispose() {
+        m_Metrics.dispose();
+    }
+
+    private String getColor() {
+        return "rgb(" + m_Color.getRed() + "," + m_Color.getGreen() + "," + m_Color.getBlue() + ")";
+    }
+
+    private static String getPathData(final Shape pr_Shape) {
+        final StringBuilder data = new StringBuilder();
+        final double[] coordinates = new double[6];
+        for (PathIterator i = pr_Shape.getPathIterator(null); !i.isDone(); i.next()) {
+            switch (i.currentSegment(coordinates)) {
+            case PathIterator.SEG_MOVETO:
+                appendSegment(data, 'M', coordinates, 2);
+                break;
+            case PathIterator.SEG_LINETO:
+                appendSegment(data, 'L', coordinates, 2);
+                break;
+            case PathIterator.SEG_QUADTO:
+                appendSegment(data, 'Q', coordinates, 4);
+                break;
+            case PathIterator.SEG_CUBICTO:
+                appendSegment(data, 'C', coordinates, 6);
+                break;
+            case PathIterator.SEG_CLOSE:
+                data.append('Z');
+                break;
+            default:
+                break;
+            }
+        }
+        return data.toString();
+    }
+
+    private static void appendSegment(final StringBuilder pr_Data, final char pr_Command, final double[] pr_Coordinates, final int pr_Count) {
+        pr_Data.append(pr_Command);
+        for (int i = 0; i < pr_Count; i++) {
+            if (i > 0) {
+                pr_Data.append(' ');
+            }
+            pr_Data.append(format(pr_Coordinates[i]));
+        }
+    }
+
+    private static String format(final double pr_Value) {
+        final BigDecimal value = new BigDecimal(pr_Value).setScale(PRECISION, RoundingMode.HALF_UP).stripTrailingZeros();
+        return value.signum() == 0 ? "0" : value.toPlainString();
+    }
+
+    /**
+     * @param pr_Text text
+     * @return the text with the characters special to XML escaped
+     */
+    static String escape(final String pr_Text) {
+        return pr_Text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+}
@@ -0,0 +1,50 @@
+package linegenerator.core;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import linegenerator.core.exceptions.MethodGenerationException;
+
+/**
+ * Writes the line of a method to an SVG image, sized in points.
+ *
+ * @author Tom
+ */
+public class SvgLineRenderer extends AbstractLineRenderer {
+
+    @Override
+    public String getFileExtension() {
+        return ".svg";
+    }
+
+    @Override
+    void render(final LineFactory pr_Factory, final LineFactory.Page pr_Page, final File pr_File)
+        throws IOException, MethodGenerationException {
+
+        final SvgCanvas canvas = new SvgCanvas();
+        try {
+            pr_Factory.drawText(pr_Page, canvas);
+            pr_Factory.drawLine(pr_Page, canvas);
+        } finally {
+            canvas.dispose();
+        }
+
+        final float width = pr_Page.getPageSize().getWidth();
+        final float height = pr_Page.getPageSize().getHeight();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(pr_File), StandardCharsets.UTF_8))) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\"");
+            writer.write(" width=\"" + width + "pt\" height=\"" + height + "pt\"");
+            writer.write(" viewBox=\"0 0 " + width + " " + height + "\">\n");
+            writer.write("<title>" + SvgCanvas.escape(pr_Page.getMethod().toString()) + "</title>\n");
+            writer.write(canvas.getElements());
+            writer.write("</svg>\n");
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package linegenerator.core;
+
+/**
+ * Counts how many times each row occurs in a touch, so that a repeated row is
+ * found in constant time as it is added.
+ * 
+ * On stages small enough for the extent to be indexed directly the counts are
+ * held in an array indexed by the rank of each row within the extent (see
+ * {@link Row#rank(byte[], int, int)}). On higher stages, or where a row may occur
+ * more times than a byte will count, they are held in an open addressing hash
+ * table of rows packed into longs (see {@link PackedRowTable}), so that proving
+ * allocates nothing beyond the table however high the stage.
+ * 
+ * @author Tom
+ */
+public class TruthChecker {
+
+    /** The highest stage for which the counts are indexed by rank. */
+    public static final int MAX_INDEXED_BELLS = 9;
+    
+    /** The number of rows the hash table is sized for unless told otherwise. */
+    private static final int DEFAULT_EXPECTED_ROWS = 1024;
+    
+    /** The number of bells in each row. */
+    private final int m_Bells;
+    
+    /** The number of times each row may occur. */
+    private final int m_MaxOccurrences;
+    
+    /** The number of occurrences of each row, indexed by rank (or null if hashed). */
+    private final byte[] m_Counts;
+    
+    /** The number of occurrences of each row, keyed by packed row (or null if indexed). */
+    private final PackedRowTable m_HashedCounts;
+    
+    /**
+     * Constructor.
+     * @param pr_Bells the number of bells in each row
+     * @param pr_MaxOccurrences the number of times each row may occur
+     */
+    public TruthChecker(final int pr_Bells, final int pr_MaxOccurrences) {
+        this(pr_Bells, pr_MaxOccurrences, DEFAULT_EXPECTED_ROWS);
+    }
+    
+    /**
+     * Constructor.
+     * @param pr_Bells the number of bells in each row
+     * @param pr_MaxOccurrences the number of times each row may occur
+     * @param pr_ExpectedRows the number of rows expected, to size the hash table on
+     *                        higher stages
+     */
+    public TruthChecker(final int pr_Bells, final int pr_MaxOccurrences, final int pr_ExpectedRows) {
+        m_Bells = pr_Bells;
+        m_MaxOccurrences = pr_MaxOccurrences;
+        if (pr_Bells <= MAX_INDEXED_BELLS && pr_MaxOccurrences < Byte.MAX_VALUE) {
+            m_Counts = new byte[(int) Stage.getStage("" + pr_Bells).getMaxChanges()];
+            m_HashedCounts = null;
+        } else {
+            m_Counts = null;
+            m_HashedCounts = new PackedRowTable(pr_ExpectedRows);
+        }
+    }
+    
+    /**
+     * @return the number of times each row may occur
+     */
+    public int getMaxOccurrences() {
+        return m_MaxOccurrences;
+    }
+    
+    /**
+     * Records an occurrence of a row.
+     * @param pr_Rows the array holding the row
+     * @param pr_Offset the offset of the row in the array
+     * @return false if the row now occurs more often than allowed
+     */
+    public boolean add(final byte[] pr_Rows, final int pr_Offset) {
+        if (m_Counts != null) {
+            return ++m_Counts[Row.rank(pr_Rows, pr_Offset, m_Bells)] <= m_MaxOccurrences;
+        } else {
+            return m_HashedCounts.add(Row.pack(pr_Rows, pr_Offset, m_Bells)) <= m_MaxOccurrences;
+        }
+    }
+    
+    /**
+     * Removes an occurrence of a row previously recorded by {@link #add(byte[], int)}.
+     * @param pr_Rows the array holding the row
+     * @param pr_Offset the offset of the row in the array
+     */
+    public void remove(final byte[] pr_Rows, final int pr_Offset) {
+        if (m_Counts != null) {
+            m_Counts[Row.rank(pr_Rows, pr_Offset, m_Bells)]--;
+        } else {
+            m_HashedCounts.remove(Row.pack(pr_Rows, pr_Offset, m_Bells));
+        }
+    }
+    
+}
@@ -1,107 +1,173 @@
 package linegenerator.core;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import linegenerator.core.exceptions.InvalidPlaceNotationException;
 import linegenerator.core.exceptions.MethodDefinitionException;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
+/**
+ * Reads a method collection in the CCCBR XML format.
+ *
+ * The file is read as a stream of XML events rather than parsed into a document, so
+ * each method is passed to the listeners (see {@link IMethodLibraryStreamListener}) as
+ * soon as its definition has been read and only the method being read is held. Use
+ * {@link #stream(File)} to read a large collection in constant memory;
+ * {@link #read(File)} collects every method and sorts them by stage.
+ *
+ * @author Tom
+ */
 public class XMLMethodLibraryReader extends MethodLibraryReader {
 
 	@Override
 	public Method[] read(File pr_File) throws MethodDefinitionException,
 			IOException {
 
-		Document doc;
+		final HashMap<Stage, ArrayList<Method>> methods = new HashMap<>();
+		final IMethodLibraryStreamListener collector = new IMethodLibraryStreamListener() {
+			@Override
+			public void methodFound(final Method pr_Method) {
+				if (!methods.containsKey(pr_Method.getStage())) {
+					methods.put(pr_Method.getStage(), new ArrayList<Method>());
+				}
+				methods.get(pr_Method.getStage()).add(pr_Method);
+			}
+			@Override
+			public void methodLibraryErrorFound(final String pr_Message) {
+				// Passed to the other listeners
+			}
+			@Override
+			public void methodLibraryWarningFound(final String pr_Message) {
+				// Passed to the other listeners
+			}
+		};
+
+		addListener(collector);
 		try {
-			DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-			doc = dBuilder.parse(pr_File);
-			doc.getDocumentElement().normalize();
-		} catch (SAXException | ParserConfigurationException e) {
-			errorFound("Unable to parse method XML file: " + e.getLocalizedMessage());
-			return null;
+			if (!stream(pr_File)) {
+				return null;
+			}
+		} finally {
+			removeListener(collector);
 		}
-		
-		final HashMap<Stage, ArrayList<Method>> methods = new HashMap<>();
-		
-		final NodeList nodes = doc.getElementsByTagName("methodSet");
-		for (int i = 0; i < nodes.getLength(); i++) {
-
-			NodeList methodSet = nodes.item(i).getChildNodes();
-			Stage stage = null;
-			MethodType collectionMethodType = null;
-			
-			for (int j = 0; j < methodSet.getLength(); j++) {
-				
-				Node methodSetNode = methodSet.item(j);
-				
-				if (methodSetNode.getNodeName().equals("properties")) {
-
-					NodeList properties = methodSetNode.getChildNodes();
-					
-					for (int l = 0; l < properties.getLength(); l++) {
-						if (properties.item(l).getNodeName().equals("stage")) {
-							stage = Stage.getStage(properties.item(l).getTextContent());
-						} else if (properties.item(l).getNodeName().equals("classification")) {
-							collectionMethodType = getMethodTypeFromString(properties.item(l));
-						}
+
+        final ArrayList<Method> readMethods = new ArrayList<Method>();
+        for (int i = Stage.UNUS.getBells(); i < Stage.SEXTUPLES.getBells(); i++) {
+        	if (methods.containsKey(Stage.getStage(""+i))) {
+        		Collections.sort(methods.get(Stage.getStage(""+i)));
+        		readMethods.addAll(methods.get(Stage.getStage(""+i)));
+        	}
+        }
+		return readMethods.toArray(new Method[readMethods.size()]);
+	}
+
+	/**
+	 * Reads the methods in the file, passing each to the listeners in the order they
+	 * appear in the file.
+	 * @param pr_File the file
+	 * @return whether the file was read; if not, the error has been passed to the
+	 *         listeners
+	 * @throws IOException if the file can't be read
+	 */
+	public boolean stream(final File pr_File) throws IOException {
+		try (InputStream input = new BufferedInputStream(new FileInputStream(pr_File))) {
+			final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(input);
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("methodSet")) {
+						readMethodSet(reader);
 					}
-					
-				} else if (methodSetNode.getNodeName().equals("method")) {
-					
-					if (stage == null) {
-						errorFound("No stage found before method");
-						break;
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			errorFound("Unable to parse method XML file: " + e.getLocalizedMessage());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the methods in a method set. The properties of the set must come before
+	 * its methods.
+	 * @param pr_Reader the reader, positioned at the start of the set
+	 * @throws XMLStreamException if the file can't be parsed
+	 */
+	private void readMethodSet(final XMLStreamReader pr_Reader) throws XMLStreamException {
+
+		Stage stage = null;
+		MethodType collectionMethodType = null;
+		boolean skip = false;
+
+		while (nextChild(pr_Reader)) {
+
+			if (skip) {
+				skipElement(pr_Reader);
+
+			} else if (pr_Reader.getLocalName().equals("properties")) {
+
+				while (nextChild(pr_Reader)) {
+					if (pr_Reader.getLocalName().equals("stage")) {
+						stage = Stage.getStage(readText(pr_Reader));
+					} else if (pr_Reader.getLocalName().equals("classification")) {
+						collectionMethodType = readMethodType(pr_Reader);
+					} else {
+						skipElement(pr_Reader);
 					}
-					
-					String name = null;
-					String notation = null;
-					String leadEnd = null;
-					MethodType methodType = null;
-					NodeList methodNode = methodSetNode.getChildNodes();
-					for (int l = 0; l < methodNode.getLength(); l++) {
-						if (methodNode.item(l).getNodeName().equals("name")) {
-							name = methodNode.item(l).getTextContent();
-						} else if (methodNode.item(l).getNodeName().equals("classification")) {
-							methodType = getMethodTypeFromString(methodNode.item(l));
-						} else if (methodNode.item(l).getNodeName().equals("notation")) {
-							notation = methodNode.item(l).getTextContent();
-							notation = notation.replaceAll("\\-", "x");
-							String[] notations = notation.split(",");
-							if (notations.length < 2) {
-								notations = new String[] { notations[0], "x" };
-							}
-							if (notations[0].length() < notations[1].length()) {
-								notation = "+" + notations[1];
-								notation += new StringBuilder(notations[1]).reverse().toString();
-								leadEnd = notations[0];
-							} else {
-								notation = "&" + notations[0];
-								leadEnd = notations[1];
-							}
+				}
+
+			} else if (pr_Reader.getLocalName().equals("method")) {
+
+				if (stage == null) {
+					errorFound("No stage found before method");
+					skipElement(pr_Reader);
+					skip = true;
+					continue;
+				}
+
+				String name = null;
+				String notation = null;
+				String leadEnd = null;
+				MethodType methodType = null;
+				while (nextChild(pr_Reader)) {
+					if (pr_Reader.getLocalName().equals("name")) {
+						name = readText(pr_Reader);
+					} else if (pr_Reader.getLocalName().equals("classification")) {
+						methodType = readMethodType(pr_Reader);
+					} else if (pr_Reader.getLocalName().equals("notation")) {
+						notation = readText(pr_Reader);
+						notation = notation.replaceAll("\\-", "x");
+						String[] notations = notation.split(",");
+						if (notations.length < 2) {
+							notations = new String[] { notations[0], "x" };
 						}
+						if (notations[0].length() < notations[1].length()) {
+							notation = "+" + notations[1];
+							notation += new StringBuilder(notations[1]).reverse().toString();
+							leadEnd = notations[0];
+						} else {
+							notation = "&" + notations[0];
+							leadEnd = notations[1];
+						}
+					} else {
+						skipElement(pr_Reader);
 					}
-					
-					if (!methods.containsKey(stage)) {
-						methods.put(stage, new ArrayList<Method>());
-					}
-					
-					try {
-						methods.get(stage).add(
-								new Method(name,
+				}
+
+				try {
+					methodFound(new Method(name,
 										   methodType == null ? collectionMethodType : methodType,
 										   stage,
 										   notation,
@@ -110,29 +176,88 @@ public class XMLMethodLibraryReader extends MethodLibraryReader {
 										   null,
 										   0,
 										   leadEnd == null ? 1 : Stage.getPositionOfLabel(leadEnd.charAt(leadEnd.length() - 1))));
-					} catch (InvalidPlaceNotationException e) {
-						errorFound("Error in place notation: " + e.getLocalizedMessage());
-						break;
-					}
-					
+				} catch (InvalidPlaceNotationException e) {
+					errorFound("Error in place notation: " + e.getLocalizedMessage());
+					skip = true;
 				}
+
+			} else {
+				skipElement(pr_Reader);
 			}
-			
 		}
+	}
 
-        final ArrayList<Method> readMethods = new ArrayList<Method>();
-        for (int i = Stage.UNUS.getBells(); i < Stage.SEXTUPLES.getBells(); i++) {
-        	if (methods.containsKey(Stage.getStage(""+i))) {
-        		Collections.sort(methods.get(Stage.getStage(""+i)));
-        		readMethods.addAll(methods.get(Stage.getStage(""+i)));
-        	}
-        }
-		return readMethods.toArray(new Method[readMethods.size()]);
+	/**
+	 * Moves to the next child of the current element.
+	 * @param pr_Reader the reader, positioned within an element
+	 * @return true if positioned at the start of the next child, false if positioned
+	 *         at the end of the element
+	 * @throws XMLStreamException if the file can't be parsed
+	 */
+	private static boolean nextChild(final XMLStreamReader pr_Reader) throws XMLStreamException {
+		while (pr_Reader.hasNext()) {
+			switch (pr_Reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				return true;
+			case XMLStreamConstants.END_ELEMENT:
+				return false;
+			default:
+				break;
+			}
+		}
+		return false;
 	}
 
-	private MethodType getMethodTypeFromString(final Node node) {
-		Node little;
-		switch (node.getTextContent()) {
+	/**
+	 * Moves to the end of the current element, ignoring its content.
+	 * @param pr_Reader the reader, positioned at the start of the element
+	 * @throws XMLStreamException if the file can't be parsed
+	 */
+	private static void skipElement(final XMLStreamReader pr_Reader) throws XMLStreamException {
+		while (nextChild(pr_Reader)) {
+			skipElement(pr_Reader);
+		}
+	}
+
+	/**
+	 * Reads the text of the current element, including that of any elements within it,
+	 * and moves to its end.
+	 * @param pr_Reader the reader, positioned at the start of the element
+	 * @return the text
+	 * @throws XMLStreamException if the file can't be parsed
+	 */
+	private static String readText(final XMLStreamReader pr_Reader) throws XMLStreamException {
+		final StringBuilder text = new StringBuilder();
+		int depth = 1;
+		while (depth > 0 && pr_Reader.hasNext()) {
+			switch (pr_Reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				depth++;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				depth--;
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				text.append(pr_Reader.getText());
+				break;
+			default:
+				break;
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Reads a classification element.
+	 * @param pr_Reader the reader, positioned at the start of the element
+	 * @return the method type
+	 * @throws XMLStreamException if the file can't be parsed
+	 */
+	private MethodType readMethodType(final XMLStreamReader pr_Reader) throws XMLStreamException {
+		final boolean isLittle = "true".equals(pr_Reader.getAttributeValue(null, "little"));
+		switch (readText(pr_Reader)) {
 		case "Place":
 			return MethodType.PLACE;
 		case "Bob":
@@ -144,15 +269,13 @@ public class XMLMethodLibraryReader extends MethodLibraryReader {
 		case "Delight":
 			return MethodType.DELIGHT;
 		case "Surprise":
-			little = node.getAttributes().getNamedItem("little");
-			if (little != null && little.getTextContent().equals("true")) {
+			if (isLittle) {
 				return MethodType.LITTLESURPRISE;
 			} else {
 				return MethodType.SURPRISE;
 			}
 		case "Alliance":
-			little = node.getAttributes().getNamedItem("little");
-			if (little != null && little.getTextContent().equals("true")) {
+			if (isLittle) {
 				return MethodType.LITTLEALLIANCE;
 			} else {
 				return MethodType.ALLIANCE;
@@ -165,5 +288,5 @@ public class XMLMethodLibraryReader extends MethodLibraryReader {
 			return MethodType.PRINCIPLE;
 		}
 	}
-	
+
 }